@@ -0,0 +1,155 @@
+package datastructures.concrete;
+
+import datastructures.interfaces.IList;
+import misc.exceptions.EmptyContainerException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An IList that stores its elements in a resizable array.
+ *
+ * Unlike DoubleLinkedList, get and set take constant time and there is no
+ * node object per element, which makes it the better choice for long lists
+ * that are built once and then read, such as the words of a webpage. Inserting
+ * or deleting anywhere but the end takes linear time.
+ */
+public class ArrayBackedList<T> implements IList<T> {
+    private static final int DEFAULT_CAPACITY = 10;
+
+    private T[] elements;
+    private int size;
+
+    public ArrayBackedList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty list with room for the given number of elements before it
+     * has to grow.
+     *
+     * @throws IllegalArgumentException if capacity < 0
+     */
+    public ArrayBackedList(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        this.elements = makeArrayOfT(capacity);
+        this.size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] makeArrayOfT(int size) {
+        return (T[]) (new Object[size]);
+    }
+
+    @Override
+    public void add(T item) {
+        this.ensureCapacity(this.size + 1);
+        this.elements[this.size] = item;
+        this.size++;
+    }
+
+    @Override
+    public T remove() {
+        if (this.size == 0) {
+            throw new EmptyContainerException();
+        }
+        this.size--;
+        T item = this.elements[this.size];
+        this.elements[this.size] = null;
+        return item;
+    }
+
+    @Override
+    public T get(int index) {
+        this.checkIndex(index, this.size);
+        return this.elements[index];
+    }
+
+    @Override
+    public void set(int index, T item) {
+        this.checkIndex(index, this.size);
+        this.elements[index] = item;
+    }
+
+    @Override
+    public void insert(int index, T item) {
+        this.checkIndex(index, this.size + 1);
+        this.ensureCapacity(this.size + 1);
+        System.arraycopy(this.elements, index, this.elements, index + 1, this.size - index);
+        this.elements[index] = item;
+        this.size++;
+    }
+
+    @Override
+    public T delete(int index) {
+        this.checkIndex(index, this.size);
+        T item = this.elements[index];
+        System.arraycopy(this.elements, index + 1, this.elements, index, this.size - index - 1);
+        this.size--;
+        this.elements[this.size] = null;
+        return item;
+    }
+
+    @Override
+    public int indexOf(T item) {
+        for (int i = 0; i < this.size; i++) {
+            T other = this.elements[i];
+            if (item == null ? other == null : item.equals(other)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean contains(T other) {
+        return this.indexOf(other) != -1;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new ArrayBackedListIterator();
+    }
+
+    private void checkIndex(int index, int limit) {
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.elements.length) {
+            T[] larger = makeArrayOfT(Math.max(capacity, this.elements.length * 2));
+            System.arraycopy(this.elements, 0, larger, 0, this.size);
+            this.elements = larger;
+        }
+    }
+
+    private class ArrayBackedListIterator implements Iterator<T> {
+        private int next;
+
+        public ArrayBackedListIterator() {
+            this.next = 0;
+        }
+
+        public boolean hasNext() {
+            return this.next < ArrayBackedList.this.size;
+        }
+
+        public T next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T item = ArrayBackedList.this.elements[this.next];
+            this.next++;
+            return item;
+        }
+    }
+}
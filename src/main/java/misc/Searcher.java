@@ -1,9 +1,6 @@
 package misc;
 
-import datastructures.concrete.ArrayHeap;
-import datastructures.concrete.DoubleLinkedList;
 import datastructures.interfaces.IList;
-import datastructures.interfaces.IPriorityQueue;
 
 public class Searcher {
     /**
@@ -39,24 +36,10 @@ public class Searcher {
         if (input.size() < k) {
             k = input.size();
         }
-        IPriorityQueue<T> heap = new ArrayHeap<T>();
-        IList<T> result = new DoubleLinkedList<T>();
-        int count = 0;
-        if (k == 0) {
-            return result;
-        }
+        TopKCollector<T> collector = new TopKCollector<T>(k);
         for (T item : input) {
-            if (count < k) {
-                count++;
-                heap.insert(item);
-            } else if (item.compareTo(heap.peekMin()) > 0) {
-                heap.removeMin();
-                heap.insert(item);
-            }
-        }
-        while (!heap.isEmpty()) {
-            result.add(heap.removeMin());
+            collector.offer(item);
         }
-        return result;
+        return collector.drainSorted();
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package misc;
+
+import datastructures.concrete.ArrayHeap;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.IPriorityQueue;
+
+/**
+ * Keeps track of the k "biggest" items offered to it so far.
+ *
+ * Internally, this is a min-heap that never holds more than k items: the
+ * smallest item kept is always at the top, so deciding whether a new item
+ * belongs in the top k only requires one comparison. Callers that can
+ * cheaply bound how big an item could possibly be can use peekMin() to skip
+ * building items that would be rejected anyway.
+ */
+public class TopKCollector<T extends Comparable<T>> {
+    private IPriorityQueue<T> heap;
+    private int k;
+
+    /**
+     * Constructs a new, empty collector.
+     *
+     * @throws IllegalArgumentException  if k < 0
+     */
+    public TopKCollector(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.heap = new ArrayHeap<T>();
+        this.k = k;
+    }
+
+    /**
+     * Offers the given item to this collector. Returns 'true' if the item is now
+     * one of the top k, and 'false' if it was rejected.
+     *
+     * @throws IllegalArgumentException  if the item is null
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        if (this.heap.size() < this.k) {
+            this.heap.insert(item);
+            return true;
+        } else if (this.k > 0 && item.compareTo(this.heap.peekMin()) > 0) {
+            this.heap.removeMin();
+            this.heap.insert(item);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns 'true' if this collector already holds k items, meaning any new item
+     * must beat peekMin() to be kept.
+     */
+    public boolean isFull() {
+        return this.heap.size() == this.k;
+    }
+
+    /**
+     * Returns, but does not remove, the smallest item kept so far.
+     *
+     * @throws misc.exceptions.EmptyContainerException  if no item has been kept
+     */
+    public T peekMin() {
+        return this.heap.peekMin();
+    }
+
+    /**
+     * Returns the number of items kept so far.
+     */
+    public int size() {
+        return this.heap.size();
+    }
+
+    /**
+     * Removes every item from this collector and returns them in sorted order,
+     * smallest first.
+     */
+    public IList<T> drainSorted() {
+        IList<T> result = new DoubleLinkedList<T>();
+        while (!this.heap.isEmpty()) {
+            result.add(this.heap.removeMin());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,218 @@
+package search;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.interfaces.ISet;
+import search.misc.exceptions.DataExtractionException;
+import search.models.Webpage;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Loads every webpage in a folder using several threads.
+ *
+ * The calling thread walks the folder and puts the path of every page into a
+ * bounded queue, which a pool of worker threads takes them from. Each worker
+ * loads its pages and hands them straight to a consumer: load() adds them to
+ * the set it returns, while forEach(...) lets the caller index each page and
+ * then drop it, so the corpus never has to fit in memory. Since the queue is
+ * bounded, the walk never runs far ahead of the workers.
+ *
+ * While loading, the number of pages loaded so far and how fast they are being
+ * loaded is printed every PROGRESS_INTERVAL_MILLIS.
+ *
+ * If loading or consuming any page fails, the remaining pages are skipped and
+ * the first exception thrown is rethrown. An Error, such as a StackOverflowError
+ * from a deeply nested page, is rethrown wrapped in a DataExtractionException.
+ */
+public class CorpusLoader {
+    public static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+    // How many paths per worker may wait in the queue
+    private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+
+    // Put in the queue once per worker, after every real path, to tell it to stop
+    private static final Path END = Paths.get("");
+
+    private int threads;
+    private int queueCapacity;
+    private Function<URI, Webpage> loader;
+    private PrintStream progress;
+
+    /**
+     * Creates a loader that loads pages using Webpage.load.
+     *
+     * @param threads  The number of threads that load pages.
+     * @throws IllegalArgumentException if threads < 1
+     */
+    public CorpusLoader(int threads) {
+        this(threads, threads * QUEUE_CAPACITY_PER_THREAD, Webpage::load, System.out);
+    }
+
+    /**
+     * @param threads        The number of threads that load pages.
+     * @param queueCapacity  The number of paths that may wait to be loaded.
+     * @param loader         Loads the page at the given URI.
+     * @param progress       Where to print progress, or null to not print it.
+     * @throws IllegalArgumentException if threads < 1 or queueCapacity < 1
+     */
+    public CorpusLoader(int threads, int queueCapacity, Function<URI, Webpage> loader, PrintStream progress) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Need at least one thread and room for one path");
+        }
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.loader = loader;
+        this.progress = progress;
+    }
+
+    /**
+     * Loads every .htm and .html file in the given folder and its subfolders.
+     *
+     * @throws DataExtractionException if the folder could not be read
+     */
+    public ISet<Webpage> load(Path root) {
+        ISet<Webpage> webpages = new ChainedHashSet<>();
+        this.forEach(root, page -> {
+            synchronized (webpages) {
+                webpages.add(page);
+            }
+        });
+        return webpages;
+    }
+
+    /**
+     * Loads every .htm and .html file in the given folder and its subfolders, and
+     * passes each page to the given consumer as soon as it is loaded. The consumer
+     * is called from several threads at once, so it must be thread-safe.
+     *
+     * @throws DataExtractionException if the folder could not be read
+     */
+    public void forEach(Path root, Consumer<Webpage> consumer) {
+        Run run = new Run(consumer);
+        Thread[] workers = new Thread[this.threads];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(run::work, "corpus-loader-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        try {
+            try (Stream<Path> paths = Files.walk(root)) {
+                Iterator<Path> iter = paths.iterator();
+                while (iter.hasNext()) {
+                    Path path = iter.next();
+                    if (Files.isRegularFile(path) && isWebpage(path)) {
+                        run.queue.put(path);
+                    }
+                }
+            } catch (IOException ex) {
+                run.fail(new DataExtractionException("Could not find given root folder", ex));
+            } catch (RuntimeException ex) {
+                run.fail(ex);
+            } finally {
+                for (int i = 0; i < workers.length; i++) {
+                    run.queue.put(END);
+                }
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException ex) {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            Thread.currentThread().interrupt();
+            throw new DataExtractionException("Interrupted while loading pages", ex);
+        }
+
+        RuntimeException failure = run.failure.get();
+        if (failure != null) {
+            throw failure;
+        }
+        run.report(true);
+    }
+
+    private static boolean isWebpage(Path path) {
+        String name = path.toString();
+        return name.endsWith(".htm") || name.endsWith(".html");
+    }
+
+    /**
+     * The state shared by the threads of one call to forEach(...).
+     */
+    private class Run {
+        private final BlockingQueue<Path> queue = new ArrayBlockingQueue<>(CorpusLoader.this.queueCapacity);
+        private final Consumer<Webpage> consumer;
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        private final long start = System.currentTimeMillis();
+        private final AtomicLong loaded = new AtomicLong();
+        private final AtomicLong lastReport = new AtomicLong(this.start);
+
+        public Run(Consumer<Webpage> consumer) {
+            this.consumer = consumer;
+        }
+
+        public void work() {
+            try {
+                for (Path path = this.queue.take(); path != END; path = this.queue.take()) {
+                    // After a failure, keep taking paths so the walk can finish
+                    if (this.failure.get() != null) {
+                        continue;
+                    }
+                    try {
+                        this.consumer.accept(CorpusLoader.this.loader.apply(path.toUri()));
+                    } catch (RuntimeException ex) {
+                        this.fail(ex);
+                        continue;
+                    } catch (Error ex) {
+                        // If this worker died instead, the walk could block forever on the full queue
+                        this.fail(new DataExtractionException("Could not load " + path, ex));
+                        continue;
+                    }
+                    this.loaded.incrementAndGet();
+                    this.report(false);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public void fail(RuntimeException ex) {
+            this.failure.compareAndSet(null, ex);
+        }
+
+        /**
+         * Prints progress if 'done' is true, or if it was last printed at least
+         * PROGRESS_INTERVAL_MILLIS ago.
+         */
+        public void report(boolean done) {
+            if (CorpusLoader.this.progress == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long last = this.lastReport.get();
+            if (!done && (now - last < PROGRESS_INTERVAL_MILLIS || !this.lastReport.compareAndSet(last, now))) {
+                return;
+            }
+            long loaded = this.loaded.get();
+            double seconds = Math.max(now - this.start, 1) / 1000.0;
+            CorpusLoader.this.progress.println(String.format(
+                    "%s %d pages (%.1f pages/sec, %d threads)",
+                    done ? "Loaded" : "Loading...", loaded, loaded / seconds, CorpusLoader.this.threads));
+        }
+    }
+}
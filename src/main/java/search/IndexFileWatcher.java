@@ -0,0 +1,118 @@
+package search;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Watches the saved index of a data folder, and publishes a new engine to a
+ * SearchEngineHolder whenever that file is replaced or deleted, so the website
+ * picks up a new corpus without restarting.
+ *
+ * Replacing the file, for example with an index built on another machine,
+ * makes us map the new one. Deleting it makes SearchEngine.open(...) reindex
+ * the data folder, which is how to pick up changes to its webpages. Either way,
+ * the new engine is built on a background thread by the given builder while the
+ * current one keeps serving requests; see SearchEngineHolder.rebuildInBackground(...).
+ */
+public class IndexFileWatcher {
+    private SearchEngineHolder engines;
+    private Path path;
+    private long checkIntervalMillis;
+    private Supplier<SearchEngine> builder;
+
+    private Thread thread;
+    private volatile boolean running;
+    // Notified by stop(), to wake the background thread between checks
+    private final Object wakeLock = new Object();
+
+    /**
+     * @param engines              Where to publish every new engine.
+     * @param path                 The saved index to watch.
+     * @param checkIntervalMillis  How often to check whether the file changed.
+     * @param builder              Builds a new engine, typically using SearchEngine.open(...).
+     */
+    public IndexFileWatcher(SearchEngineHolder engines, Path path, long checkIntervalMillis,
+                            Supplier<SearchEngine> builder) {
+        this.engines = engines;
+        this.path = path;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.builder = builder;
+    }
+
+    /**
+     * Starts watching the file. Only changes made from now on cause a rebuild.
+     *
+     * @throws IllegalStateException  if this watcher was already started
+     */
+    public synchronized void start() {
+        if (this.thread != null) {
+            throw new IllegalStateException("The watcher was already started");
+        }
+        this.running = true;
+        FileTime initial = this.lastModified();
+        this.thread = new Thread(() -> this.run(initial), "index-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops watching the file, waiting for any rebuild in progress to be published.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (this.thread == null) {
+            return;
+        }
+        synchronized (this.wakeLock) {
+            this.running = false;
+            this.wakeLock.notifyAll();
+        }
+        this.thread.join();
+        this.thread = null;
+    }
+
+    private void run(FileTime seen) {
+        while (this.running) {
+            try {
+                synchronized (this.wakeLock) {
+                    if (this.running) {
+                        this.wakeLock.wait(this.checkIntervalMillis);
+                    }
+                }
+            } catch (InterruptedException ex) {
+                return;
+            }
+            FileTime current = this.lastModified();
+            if (!this.running || Objects.equals(seen, current)) {
+                continue;
+            }
+
+            // We remember the file as it was before rebuilding, so a change made
+            // while we rebuild is picked up by the next check. That includes the
+            // builder writing the file itself, after which we map it once more.
+            seen = current;
+            System.out.println("Saved index changed, rebuilding...");
+            try {
+                this.engines.rebuildInBackground(this.builder).join();
+            } catch (CompletionException ex) {
+                // Already reported, and the current engine keeps serving requests
+            }
+        }
+    }
+
+    /**
+     * Returns when the watched file was last modified, or null if it doesn't exist
+     * or can't be read.
+     */
+    private FileTime lastModified() {
+        try {
+            return Files.getLastModifiedTime(this.path);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package search;
 
+import search.analyzers.ScoringModel;
+import search.index.IndexMode;
+import search.index.PostingsFormat;
+
 public class Main {
     // The dataset to index and search.
     // MUST be the name of one of the folders in the 'data' folder.
@@ -13,16 +17,52 @@ public class Main {
     // and know what ports are, feel free to change this if it's convenient.
     public static final int PORT = 8080;
 
+    // The number of threads used to answer a single search query. The index is split
+    // into this many partitions, which are scored in parallel.
+    public static final int QUERY_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Which posting list layouts to build. IMPACT_ORDERED answers short queries
+    // faster, but keeps a second, on-heap copy of every posting list and takes
+    // longer to start up, so it is opt-in.
+    public static final IndexMode INDEX_MODE = IndexMode.DOCUMENT_ORDERED;
+
+    // How to store the posting lists used to score queries. The COMPRESSED formats
+    // use far less memory, but pages with nearly identical scores may swap places.
+    // Run WeightAgreementReport to see how often.
+    public static final PostingsFormat POSTINGS_FORMAT = PostingsFormat.ARRAYS;
+
+    // How to rank results. BM25 needs no vector lengths at query time, and its
+    // weights are built when the engine starts, since they are not saved with the index.
+    public static final ScoringModel SCORING_MODEL = ScoringModel.TF_IDF;
+
+    // How often to check whether the saved index of DATA_FOLDER_NAME was replaced
+    // or deleted. Either one makes the server switch to a new index without
+    // restarting: see IndexFileWatcher.
+    public static final long INDEX_CHECK_INTERVAL_MILLIS = 10000;
+
     public static void main(String[] args) {
         System.out.println("Indexing web pages...");
-        SearchEngine engine = new SearchEngine(DATA_FOLDER_NAME);
+        SearchEngineHolder engines = new SearchEngineHolder(openEngine());
+        new IndexFileWatcher(
+                engines,
+                SearchEngine.getIndexPath(DATA_FOLDER_NAME),
+                INDEX_CHECK_INTERVAL_MILLIS,
+                Main::openEngine).start();
 
         System.out.println("Setting up web server...");
-        Webapp app = new Webapp(engine, SITE_TITLE, PORT);
+        Webapp app = new Webapp(engines, SITE_TITLE, PORT);
 
         System.out.println(String.format(
                 "Ready! Opening 'http://localhost:%d' in your web browser now.",
                 PORT));
         app.launch();
     }
+
+    private static SearchEngine openEngine() {
+        return SearchEngine.open(DATA_FOLDER_NAME, new SearchEngine.Options()
+                .queryThreads(QUERY_THREADS)
+                .indexMode(INDEX_MODE)
+                .postingsFormat(POSTINGS_FORMAT)
+                .scoringModel(SCORING_MODEL));
+    }
 }
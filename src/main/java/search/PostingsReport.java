@@ -0,0 +1,66 @@
+package search;
+
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.ISet;
+import search.analyzers.TfIdfAnalyzer;
+import search.index.CompressedInvertedIndex;
+import search.index.DocumentRegistry;
+import search.index.MemoryInvertedIndex;
+import search.index.PostingList;
+import search.index.PostingsFormat;
+import search.models.Webpage;
+
+import java.io.File;
+
+/**
+ * Prints how many bytes each posting takes up, with and without compression,
+ * for every dataset in the 'data' folder.
+ *
+ * Uncompressed postings always take 12 bytes: an int document id and a double
+ * weight. See CompressedPostingList for the compressed formats, and
+ * WeightAgreementReport for how much their weights change the results.
+ */
+public class PostingsReport {
+    private static final int UNCOMPRESSED_BYTES_PER_POSTING = Integer.BYTES + Double.BYTES;
+
+    public static void main(String[] args) {
+        File[] datasets = new File("data").listFiles(File::isDirectory);
+        if (datasets == null) {
+            System.err.println("Could not find the 'data' folder");
+            return;
+        }
+
+        System.out.print(String.format("%-24s %12s %12s", "Dataset", "Postings", "Uncompressed"));
+        for (PostingsFormat format : PostingsFormat.values()) {
+            if (format != PostingsFormat.ARRAYS) {
+                System.out.print(String.format(" %18s", format));
+            }
+        }
+        System.out.println();
+
+        for (File dataset : datasets) {
+            ISet<Webpage> webpages = SearchEngine.loadWebpages(dataset.getName());
+            if (webpages.isEmpty()) {
+                continue;
+            }
+            DocumentRegistry registry = new DocumentRegistry(webpages);
+            TfIdfAnalyzer analyzer = new TfIdfAnalyzer(webpages, registry, SearchEngine.INDEX_THREADS);
+            MemoryInvertedIndex exact = new MemoryInvertedIndex(analyzer, registry.size());
+
+            long postings = 0;
+            for (KVPair<String, PostingList> entry : exact) {
+                postings += entry.getValue().size();
+            }
+            System.out.print(String.format("%-24s %12d %12.2f",
+                    dataset.getName(), postings, (double) UNCOMPRESSED_BYTES_PER_POSTING));
+            for (PostingsFormat format : PostingsFormat.values()) {
+                if (format != PostingsFormat.ARRAYS) {
+                    CompressedInvertedIndex index = new CompressedInvertedIndex(exact, format);
+                    double compressed = postings == 0 ? 0.0 : (double) index.postingBytes() / postings;
+                    System.out.print(String.format(" %18.2f", compressed));
+                }
+            }
+            System.out.println();
+        }
+    }
+}
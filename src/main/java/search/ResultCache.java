@@ -0,0 +1,143 @@
+package search;
+
+import datastructures.interfaces.IList;
+import search.models.Result;
+import search.models.SearchCursor;
+import search.models.SearchQuery;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of search results.
+ *
+ * Results are keyed by the query's terms and phrases, the number of results
+ * requested and the cursor they start after. The cache holds at most 'maxEntries'
+ * queries and at most 'maxResults' Result objects in total; whenever adding
+ * an entry would exceed either limit, the least recently used entries are
+ * evicted first.
+ *
+ * There is no way to invalidate the cache: every SearchEngine has caches of its
+ * own and never changes the index it serves, so a new index always comes with
+ * new, empty caches.
+ *
+ * This class is safe to use from multiple threads at once.
+ */
+public class ResultCache {
+    private int maxEntries;
+    private int maxResults;
+
+    // A LinkedHashMap in access order iterates from the least to the most recently used entry.
+    private LinkedHashMap<String, IList<Result>> entries;
+    private int resultCount;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs a new, empty cache.
+     *
+     * @param maxEntries  The maximum number of queries to remember.
+     * @param maxResults  The maximum number of Result objects held across all queries.
+     * @throws IllegalArgumentException  if either limit is negative
+     */
+    public ResultCache(int maxEntries, int maxResults) {
+        if (maxEntries < 0 || maxResults < 0) {
+            throw new IllegalArgumentException("Cache limits must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.maxResults = maxResults;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.resultCount = 0;
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Returns the cached results for the given query and k, or null if there are none.
+     *
+     * The returned list is shared with other callers and must not be modified.
+     */
+    public IList<Result> get(SearchQuery query, int k) {
+        return this.get(query, k, null);
+    }
+
+    /**
+     * Returns the cached results for the given query, k and cursor, or null if there
+     * are none. A null cursor refers to the first page of results.
+     *
+     * The returned list is shared with other callers and must not be modified.
+     */
+    public synchronized IList<Result> get(SearchQuery query, int k, SearchCursor after) {
+        IList<Result> results = this.entries.get(makeKey(query, k, after));
+        if (results == null) {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return results;
+    }
+
+    /**
+     * Stores the results of the given query, evicting older entries as necessary.
+     * Result lists larger than the whole cache are not stored.
+     *
+     * The cache keeps a reference to the given list, so it must not be modified afterwards.
+     */
+    public void put(SearchQuery query, int k, IList<Result> results) {
+        this.put(query, k, null, results);
+    }
+
+    /**
+     * Stores the results of the given query, starting after the given cursor.
+     */
+    public synchronized void put(SearchQuery query, int k, SearchCursor after, IList<Result> results) {
+        if (results.size() > this.maxResults || this.maxEntries == 0) {
+            return;
+        }
+        IList<Result> previous = this.entries.put(makeKey(query, k, after), results);
+        if (previous != null) {
+            this.resultCount -= previous.size();
+        }
+        this.resultCount += results.size();
+
+        Iterator<Map.Entry<String, IList<Result>>> iter = this.entries.entrySet().iterator();
+        while (this.entries.size() > this.maxEntries || this.resultCount > this.maxResults) {
+            IList<Result> evicted = iter.next().getValue();
+            iter.remove();
+            this.resultCount -= evicted.size();
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found cached results.
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find cached results.
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the number of queries currently cached.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the total number of Result objects currently cached.
+     */
+    public synchronized int resultCount() {
+        return this.resultCount;
+    }
+
+    private static String makeKey(SearchQuery query, int k, SearchCursor after) {
+        return k + ":" + after + ":" + query;
+    }
+}
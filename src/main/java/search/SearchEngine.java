@@ -1,124 +1,677 @@
 package search;
 
-import datastructures.concrete.ChainedHashSet;
 import datastructures.concrete.DoubleLinkedList;
 import datastructures.interfaces.IList;
 import datastructures.interfaces.ISet;
-import misc.Searcher;
+import search.analyzers.Bm25Scorer;
 import search.analyzers.PageRankAnalyzer;
+import search.analyzers.PreparedQuery;
+import search.analyzers.Scorer;
+import search.analyzers.ScoringModel;
 import search.analyzers.TfIdfAnalyzer;
-import search.analyzers.EnhancedQueryAnalyzer;
-import search.misc.Bridge;
-import search.misc.exceptions.DataExtractionException;
+import search.index.CompressedInvertedIndex;
+import search.index.DocumentRegistry;
+import search.index.IndexFile;
+import search.index.IndexMode;
+import search.index.IndexWriter;
+import search.index.InvertedIndex;
+import search.index.MemoryPositionalIndex;
+import search.index.PhraseMatches;
+import search.index.PositionalIndex;
+import search.index.PostingsFormat;
+import search.index.QueryEvaluator;
+import search.index.ScoredDocument;
+import search.index.SpimiIndexBuilder;
+import search.misc.exceptions.IndexFormatException;
+import search.models.Phrase;
 import search.models.Result;
+import search.models.ResultPage;
+import search.models.SearchCursor;
+import search.models.SearchQuery;
 import search.models.Webpage;
-import search.models.WebpageSummary;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class SearchEngine {
     public static final double PAGE_RANK_DECAY = 0.85;
     public static final double PAGE_RANK_EPSILON = 0.0001;
     public static final int PAGE_RANK_ITERATION_LIMIT = 200;
 
-    private ISet<WebpageSummary> pages;
+    // The number of threads used to load and parse webpages when indexing a data folder
+    public static final int LOAD_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // The number of threads used to compute TF-IDF vectors when indexing webpages
+    public static final int INDEX_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // About how many bytes of postings open(...) buffers while indexing a data
+    // folder before writing them to a temporary file. See SpimiIndexBuilder.
+    public static final long INDEX_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    public static final int RESULT_CACHE_MAX_QUERIES = 1000;
+    public static final int RESULT_CACHE_MAX_RESULTS = 50000;
+
+    private DocumentRegistry registry;
     private TfIdfAnalyzer tfIdfAnalyzer;
     private PageRankAnalyzer pageRankAnalyzer;
+    private InvertedIndex invertedIndex;
+    private PositionalIndex positionalIndex;
+
+    // The index this engine serves, or null if it indexed webpages itself. We
+    // hold a reference to it until this engine is closed. See IndexFile.retain().
+    private IndexFile index;
+
+    // The query-independent part of every page's score, indexed by document id.
+    // See computeStaticRanks() for details.
+    private double[] staticRanks;
+
+    // What we need to answer queries with each scoring model, indexed by the
+    // model's ordinal. See getRanking(...).
+    private AtomicReferenceArray<Ranking> rankings;
+
+    // How this engine was configured, so withIndex(...) can configure the next one the same way
+    private Options options;
+    private volatile ScoringModel scoringModel;
+    private volatile boolean closed;
 
+    /**
+     * Indexes every webpage in the given data folder, using the default options.
+     */
     public SearchEngine(String dataFolderName) {
-        long start = System.currentTimeMillis();
-        ISet<Webpage> webpages = this.collectWebpages(Paths.get("data", dataFolderName));
-        long end = System.currentTimeMillis() - start;
-        System.out.println("Done loading pages (" + (end / 1000.0) + " sec)");
+        this(dataFolderName, new Options());
+    }
+
+    /**
+     * Indexes every webpage in the given data folder.
+     */
+    public SearchEngine(String dataFolderName, Options options) {
+        this(loadWebpages(dataFolderName), options);
+    }
+
+    /**
+     * Indexes the given webpages, using the default options.
+     */
+    public SearchEngine(ISet<Webpage> webpages) {
+        this(webpages, new Options());
+    }
 
-        this.pages = this.extractWebpageSummaries(webpages);
+    /**
+     * Indexes the given webpages.
+     */
+    public SearchEngine(ISet<Webpage> webpages, Options options) {
+        this.registry = new DocumentRegistry(webpages);
         System.out.println("Done extracting");
 
-        start = System.currentTimeMillis();
-        this.tfIdfAnalyzer = new TfIdfAnalyzer(webpages);
+        long start = System.currentTimeMillis();
+        this.tfIdfAnalyzer = new TfIdfAnalyzer(webpages, this.registry, INDEX_THREADS);
         this.pageRankAnalyzer = new PageRankAnalyzer(
                 webpages,
+                this.registry,
                 PAGE_RANK_DECAY,
                 PAGE_RANK_EPSILON,
                 PAGE_RANK_ITERATION_LIMIT);
-        end = System.currentTimeMillis() - start;
+        this.invertedIndex = this.tfIdfAnalyzer.getIndex();
+        this.positionalIndex = new MemoryPositionalIndex(webpages, this.registry);
+        this.prepareForQueries(options);
+        long end = System.currentTimeMillis() - start;
+        System.out.println("Done indexing (" + (end / 1000.0) + " sec)");
+    }
+
+    /**
+     * Serves queries out of an index built earlier and saved using toIndexFile().
+     * With any postings format but PostingsFormat.ARRAYS, the mapped postings are
+     * copied onto the heap in compressed form.
+     *
+     * @throws IllegalStateException  if the index was already closed
+     */
+    public SearchEngine(IndexFile index, Options options) {
+        this.index = index.retain();
+        try {
+            this.registry = index.getRegistry();
+            this.invertedIndex = index.getInvertedIndex();
+            this.positionalIndex = index.getPositionalIndex();
+            this.tfIdfAnalyzer = new TfIdfAnalyzer(this.registry, index.getCorpusSize(), this.invertedIndex);
+            this.pageRankAnalyzer = new PageRankAnalyzer(this.registry, index.getPageRanks());
+            this.prepareForQueries(options);
+        } catch (RuntimeException ex) {
+            index.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the search engine for the given data folder.
+     *
+     * If the folder was indexed before, the saved index is memory-mapped, which is
+     * much faster than indexing again. Otherwise, or if the saved index can't be used,
+     * we index every webpage in the folder using buildIndex(...), and then map the
+     * result. Delete the saved index to pick up changes to the folder's webpages.
+     *
+     * If the index can't be built and saved, for example because the disk is full
+     * or read-only, we index every webpage in memory instead, the way the
+     * constructors do, but only if the options allow it: see Options.inMemoryFallback(...).
+     *
+     * @throws UncheckedIOException  if the index could not be built, saved or mapped
+     * @throws IndexFormatException  if the index just built could not be read back
+     */
+    public static SearchEngine open(String dataFolderName, Options options) {
+        Path indexPath = getIndexPath(dataFolderName);
+        if (Files.exists(indexPath)) {
+            try (IndexFile index = IndexFile.read(indexPath)) {
+                long start = System.currentTimeMillis();
+                SearchEngine engine = new SearchEngine(index, options);
+                long end = System.currentTimeMillis() - start;
+                System.out.println("Done loading index (" + (end / 1000.0) + " sec)");
+                return engine;
+            } catch (IOException | IndexFormatException ex) {
+                System.err.println("Could not load saved index, reindexing: " + ex.getMessage());
+            }
+        }
+
+        try {
+            buildIndex(dataFolderName, indexPath);
+            try (IndexFile index = IndexFile.read(indexPath)) {
+                return new SearchEngine(index, options);
+            }
+        } catch (IOException ex) {
+            if (!options.isInMemoryFallback()) {
+                throw new UncheckedIOException("Could not save the index of " + dataFolderName, ex);
+            }
+            System.err.println("Could not save index, indexing in memory instead: " + ex.getMessage());
+        } catch (IndexFormatException ex) {
+            if (!options.isInMemoryFallback()) {
+                throw ex;
+            }
+            System.err.println("Could not read saved index, indexing in memory instead: " + ex.getMessage());
+        }
+        return new SearchEngine(dataFolderName, options);
+    }
+
+    /**
+     * Indexes every webpage in the given data folder, and saves the index at the
+     * given path, replacing any existing file.
+     *
+     * Unlike the constructors, this never holds every page in memory at once:
+     * pages are indexed as soon as they are loaded, and only about
+     * INDEX_MEMORY_BUDGET bytes of postings are buffered before they are written
+     * to a temporary file next to the index. See SpimiIndexBuilder.
+     */
+    public static void buildIndex(String dataFolderName, Path indexPath) throws IOException {
+        long start = System.currentTimeMillis();
+        Path tempFolder = indexPath.toAbsolutePath().getParent();
+        Files.createDirectories(tempFolder);
+        try (SpimiIndexBuilder builder = new SpimiIndexBuilder(tempFolder, INDEX_MEMORY_BUDGET)) {
+            try {
+                new CorpusLoader(LOAD_THREADS).forEach(Paths.get("data", dataFolderName), builder::add);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            IndexFile index = builder.finish(PAGE_RANK_DECAY, PAGE_RANK_EPSILON, PAGE_RANK_ITERATION_LIMIT);
+            System.out.println("Done extracting (merged " + builder.getRunCount() + " runs)");
+            index.write(indexPath);
+        }
+        long end = System.currentTimeMillis() - start;
         System.out.println("Done indexing (" + (end / 1000.0) + " sec)");
     }
 
+    /**
+     * Returns where open(...) saves the index of the given data folder.
+     */
+    public static Path getIndexPath(String dataFolderName) {
+        return Paths.get("data", dataFolderName + ".index");
+    }
+
+    /**
+     * Returns everything this engine computed while indexing, so it can be saved
+     * and loaded again later. The saved weights are always exact, even if this
+     * engine scores queries using compressed postings.
+     *
+     * @throws IllegalStateException  if this engine was closed
+     */
+    public IndexFile toIndexFile() {
+        this.checkOpen();
+        double[] pageRanks = new double[this.registry.size()];
+        for (int docId = 0; docId < pageRanks.length; docId++) {
+            pageRanks[docId] = this.pageRankAnalyzer.computePageRank(docId);
+        }
+        return new IndexFile(
+                this.registry,
+                this.tfIdfAnalyzer.getCorpusSize(),
+                this.invertedIndex,
+                this.positionalIndex,
+                pageRanks);
+    }
+
+    /**
+     * Returns a writer that applies changes to the pages indexed by this engine.
+     * Changes are not visible to this engine: see refresh(...).
+     */
+    public IndexWriter newIndexWriter() {
+        // The writer holds its own reference to the index, so it keeps working
+        // after this engine is closed.
+        this.checkOpen();
+        IndexFile base = this.index;
+        if (base == null) {
+            base = this.toIndexFile();
+        }
+        return new IndexWriter(base, PAGE_RANK_DECAY);
+    }
+
+    /**
+     * Applies every change buffered by the given writer, and returns a new engine
+     * serving the result, configured the same way as this one. This engine keeps
+     * serving the index it was built with.
+     */
+    public SearchEngine refresh(IndexWriter writer) {
+        return this.withIndex(writer.refresh());
+    }
+
+    /**
+     * Returns a new engine serving the given index, configured the same way as this one.
+     */
+    public SearchEngine withIndex(IndexFile index) {
+        return new SearchEngine(index, new Options(this.options).scoringModel(this.scoringModel));
+    }
+
+    /**
+     * Returns how this engine ranks results unless a query asks otherwise.
+     */
+    public ScoringModel getScoringModel() {
+        return this.scoringModel;
+    }
+
+    /**
+     * Sets how this engine ranks results unless a query asks otherwise. Setting a
+     * model other than TF_IDF for the first time builds that model's weights.
+     */
+    public void setScoringModel(ScoringModel model) {
+        this.getRanking(model);
+        this.scoringModel = model;
+    }
+
+    /**
+     * Returns the scorer this engine ranks results with when using the given model.
+     */
+    public Scorer getScorer(ScoringModel model) {
+        return this.getRanking(model).scorer;
+    }
+
+    /**
+     * Releases the threads this engine uses to answer queries, and drops its
+     * reference to the index it serves, which unmaps the index file once nothing
+     * else refers to it. This engine must not be used afterwards: searching
+     * throws an IllegalStateException. Closing an engine again has no effect.
+     *
+     * See SearchEngineHolder for closing an engine once no request is using it anymore.
+     */
+    public void close() {
+        synchronized (this.rankings) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+        }
+        for (int i = 0; i < this.rankings.length(); i++) {
+            Ranking ranking = this.rankings.get(i);
+            if (ranking != null) {
+                ranking.evaluator.close();
+            }
+        }
+        if (this.index != null) {
+            this.index.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("The search engine was closed");
+        }
+    }
+
+    private void prepareForQueries(Options options) {
+        // Copy the options, so changing them later doesn't affect this engine
+        this.options = new Options(options);
+        this.staticRanks = this.computeStaticRanks();
+        this.rankings = new AtomicReferenceArray<>(ScoringModel.values().length);
+        this.setScoringModel(options.getScoringModel());
+    }
+
+    /**
+     * Returns what we need to answer queries using the given model, building it
+     * if no query has used that model yet.
+     *
+     * @throws IllegalStateException  if this engine was closed
+     */
+    private Ranking getRanking(ScoringModel model) {
+        this.checkOpen();
+        Ranking ranking = this.rankings.get(model.ordinal());
+        if (ranking != null) {
+            return ranking;
+        }
+        synchronized (this.rankings) {
+            // Never build a new ranking once close() has closed the existing ones
+            this.checkOpen();
+            ranking = this.rankings.get(model.ordinal());
+            if (ranking == null) {
+                ranking = new Ranking(this.createScorer(model));
+                this.rankings.set(model.ordinal(), ranking);
+            }
+            return ranking;
+        }
+    }
+
+    private Scorer createScorer(ScoringModel model) {
+        switch (model) {
+            case TF_IDF:
+                return this.tfIdfAnalyzer;
+            case BM25:
+                return new Bm25Scorer(this.positionalIndex, this.registry.size());
+            default:
+                throw new IllegalArgumentException("Unknown scoring model " + model);
+        }
+    }
+
     public double computeScore(IList<String> query, URI uri) {
-        double tfIdf = this.tfIdfAnalyzer.computeRelevance(query, uri);
-        double pageRank = this.pageRankAnalyzer.computePageRank(uri);
-
-        if (pageRank <= 0.0) {
-            throw new IllegalStateException(String.format(
-                    "Page '%s' had a page rank of '%f'; all page ranks should be positive and non-zero.",
-                    uri, pageRank));
-        }
-
-        // We are combining these two scores in a fairly arbitrary way.
-        // The correct thing to do is to apply machine learning and develop
-        // a classifier that combines these two scores.
-        //
-        // Figuring out the best way to do this is something of a black art
-        // and is a part of the "secret sauce" of commercial web engines.
-        //
-        // However, in the interests of simplicity, we opted not to do that
-        // and just experimented with formulas until we found that seemed to
-        // work well.
-        //
-        // The intuition here is that the pageRank for any given page tends
-        // to be skewed -- popular pages tend to have abnormally high
-        // ranks, other pages have very small ones. So, we take the square
-        // root to "normalize" these extremes, then multiply it against
-        // the tfIdf score to scale it accordingly.
-        //
-        // That's the underlying justification for why we chose this formula,
-        // but it's still a pretty ad-hoc approach. Feel free to adjust or
-        // change this formula: we will be grading your TfIdfAnalyzer and
-        // PageRankAnalyzer classes separately, but not this method.
-        return tfIdf * Math.sqrt(pageRank);
+        Scorer scorer = this.getScorer(this.scoringModel);
+        return this.computeScore(scorer, scorer.prepareQuery(query), this.registry.getId(uri));
+    }
+
+    private double computeScore(Scorer scorer, PreparedQuery query, int docId) {
+        double relevance = scorer.computeRelevance(query, docId);
+        return relevance * this.staticRanks[docId];
     }
 
+    /**
+     * Computes the query-independent part of each page's score, indexed by document id.
+     *
+     * @throws IllegalStateException if any page has a non-positive page rank
+     */
+    private double[] computeStaticRanks() {
+        double[] ranks = new double[this.registry.size()];
+        for (int docId = 0; docId < ranks.length; docId++) {
+            double pageRank = this.pageRankAnalyzer.computePageRank(docId);
+
+            if (pageRank <= 0.0) {
+                throw new IllegalStateException(String.format(
+                        "Page '%s' had a page rank of '%f'; all page ranks should be positive and non-zero.",
+                        this.registry.getUri(docId), pageRank));
+            }
+
+            // We are combining the tfIdf and page rank scores in a fairly arbitrary way.
+            // The correct thing to do is to apply machine learning and develop
+            // a classifier that combines these two scores.
+            //
+            // Figuring out the best way to do this is something of a black art
+            // and is a part of the "secret sauce" of commercial web engines.
+            //
+            // However, in the interests of simplicity, we opted not to do that
+            // and just experimented with formulas until we found that seemed to
+            // work well.
+            //
+            // The intuition here is that the pageRank for any given page tends
+            // to be skewed -- popular pages tend to have abnormally high
+            // ranks, other pages have very small ones. So, we take the square
+            // root to "normalize" these extremes, then multiply it against
+            // the tfIdf score to scale it accordingly.
+            //
+            // Since the square root does not depend on the query, we compute
+            // it once here instead of once per page per query.
+            ranks[docId] = Math.sqrt(pageRank);
+        }
+        return ranks;
+    }
+
+    /**
+     * Returns the k highest-scoring pages for the given query, best result first.
+     *
+     * Only pages containing at least one of the query's words are scored: we
+     * find them using the inverted index instead of looping over every page.
+     *
+     * Recent results are cached, so repeated queries do not need to be scored
+     * again. The returned list may be shared with other callers and must not be modified.
+     */
     public IList<Result> getTopKResults(IList<String> query, int k) {
-        IList<Result> results = new DoubleLinkedList<>();
+        return this.getTopKResults(new SearchQuery(query), k);
+    }
+
+    /**
+     * Returns the k highest-scoring pages for the given query, best result first.
+     *
+     * If the query contains phrases, only pages containing every phrase are
+     * returned, and pages are ranked higher the more often the phrases occur.
+     * See QueryEvaluator for the exact formula.
+     */
+    public IList<Result> getTopKResults(SearchQuery query, int k) {
+        return this.getTopKResults(query, k, this.scoringModel);
+    }
+
+    /**
+     * Same as getTopKResults(query, k), but ranks results using the given model
+     * instead of this engine's scoring model.
+     */
+    public IList<Result> getTopKResults(SearchQuery query, int k, ScoringModel model) {
+        return this.getResults(this.getRanking(model), query, k, null);
+    }
+
+    /**
+     * Returns one page of results for the given query.
+     *
+     * Only pageSize + 1 candidates are ever kept while scoring, no matter how far
+     * down the ranking the page is, so deep pages cost about as much as the first one.
+     *
+     * @param after     The cursor returned with the previous page, or null for the first page.
+     * @param pageSize  The maximum number of results on the page.
+     */
+    public ResultPage getResultsPage(IList<String> query, SearchCursor after, int pageSize) {
+        return this.getResultsPage(new SearchQuery(query), after, pageSize);
+    }
+
+    /**
+     * Returns one page of results for the given query, which may contain phrases.
+     *
+     * @param after     The cursor returned with the previous page, or null for the first page.
+     * @param pageSize  The maximum number of results on the page.
+     */
+    public ResultPage getResultsPage(SearchQuery query, SearchCursor after, int pageSize) {
+        return this.getResultsPage(query, after, pageSize, this.scoringModel);
+    }
+
+    /**
+     * Same as getResultsPage(query, after, pageSize), but ranks results using the
+     * given model instead of this engine's scoring model. Every page of a query
+     * must be fetched using the same model.
+     */
+    public ResultPage getResultsPage(SearchQuery query, SearchCursor after, int pageSize, ScoringModel model) {
+        // We fetch one extra result so we know whether there is a next page.
+        IList<Result> results = this.getResults(this.getRanking(model), query, pageSize + 1, after);
 
-        for (WebpageSummary summary: this.pages) {
-            double score = this.computeScore(query, summary.getUri());
-            results.add(new Result(summary, score));
+        IList<Result> page = new DoubleLinkedList<>();
+        SearchCursor next = null;
+        for (Result result : results) {
+            if (page.size() < pageSize) {
+                page.add(result);
+                next = SearchCursor.after(result);
+            }
         }
+        if (results.size() <= pageSize) {
+            next = null;
+        }
+        return new ResultPage(page, next);
+    }
 
-        IList<Result> topK = Searcher.topKSort(k, results);
+    private IList<Result> getResults(Ranking ranking, SearchQuery query, int k, SearchCursor after) {
+        IList<Result> cached = ranking.resultCache.get(query, k, after);
+        if (cached != null) {
+            return cached;
+        }
 
-        IList<Result> reversed = new DoubleLinkedList<>();
-        for (Result res : topK) {
-            reversed.insert(0, res);
+        PreparedQuery prepared = ranking.scorer.prepareQuery(query.getTerms());
+        IList<PhraseMatches> phrases = new DoubleLinkedList<>();
+        for (Phrase phrase : query.getPhrases()) {
+            phrases.add(this.positionalIndex.findMatches(phrase));
+        }
+        ScoredDocument afterDocument = null;
+        if (after != null) {
+            afterDocument = new ScoredDocument(after.getDocumentId(), after.getScore());
         }
 
-        return reversed;
+        IList<Result> results = new DoubleLinkedList<>();
+        for (ScoredDocument document : ranking.evaluator.evaluate(prepared, phrases, k, afterDocument)) {
+            int docId = document.getDocumentId();
+            results.add(new Result(this.registry.getSummary(docId), document.getScore(), docId));
+        }
+        ranking.resultCache.put(query, k, after, results);
+        return results;
     }
 
-    private ISet<Webpage> collectWebpages(Path root) {
-        try {
-            return Files.walk(root)
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().endsWith(".htm") || path.toString().endsWith(".html"))
-                    .map(Path::toUri)
-                    .map(Webpage::load)
-                    .collect(Bridge.toISet());
-        } catch (IOException ex) {
-            throw new DataExtractionException("Could not find given root folder", ex);
+    /**
+     * Returns the cache holding recent results ranked using this engine's scoring model.
+     */
+    public ResultCache getResultCache() {
+        return this.getRanking(this.scoringModel).resultCache;
+    }
+
+    /**
+     * Loads every webpage in the given folder under 'data', using LOAD_THREADS threads.
+     */
+    static ISet<Webpage> loadWebpages(String dataFolderName) {
+        long start = System.currentTimeMillis();
+        ISet<Webpage> webpages = new CorpusLoader(LOAD_THREADS).load(Paths.get("data", dataFolderName));
+        long end = System.currentTimeMillis() - start;
+        System.out.println("Done loading pages (" + (end / 1000.0) + " sec)");
+        return webpages;
+    }
+
+    /**
+     * A scorer, along with the evaluator and result cache used to answer queries with it.
+     */
+    private class Ranking {
+        private final Scorer scorer;
+        private final QueryEvaluator evaluator;
+        private final ResultCache resultCache;
+
+        public Ranking(Scorer scorer) {
+            // We keep the exact TF-IDF index around for toIndexFile(), and for
+            // computeScore() when this engine was loaded from a file.
+            Options options = SearchEngine.this.options;
+            InvertedIndex queryIndex = scorer.getIndex();
+            if (options.getPostingsFormat() != PostingsFormat.ARRAYS) {
+                queryIndex = new CompressedInvertedIndex(queryIndex, options.getPostingsFormat());
+            }
+            this.scorer = scorer;
+            this.evaluator = new QueryEvaluator(
+                    queryIndex, SearchEngine.this.staticRanks, options.getQueryThreads(), options.getIndexMode());
+            this.resultCache = new ResultCache(RESULT_CACHE_MAX_QUERIES, RESULT_CACHE_MAX_RESULTS);
         }
     }
 
-    private ISet<WebpageSummary> extractWebpageSummaries(ISet<Webpage> webpages) {
-        ISet<WebpageSummary> output = new ChainedHashSet<>();
-        for (Webpage page : webpages) {
-            output.add(page.getSummary());
+    /**
+     * How a SearchEngine answers queries. Every setter returns these options, so
+     * they can be chained:
+     *
+     *     new SearchEngine.Options().queryThreads(4).indexMode(IndexMode.IMPACT_ORDERED)
+     *
+     * The defaults are one query thread, document-ordered postings stored as
+     * plain arrays, TF-IDF scoring, and no in-memory fallback in open(...).
+     */
+    public static class Options {
+        private int queryThreads;
+        private IndexMode indexMode;
+        private PostingsFormat postingsFormat;
+        private ScoringModel scoringModel;
+        private boolean inMemoryFallback;
+
+        public Options() {
+            this.queryThreads = 1;
+            this.indexMode = IndexMode.DOCUMENT_ORDERED;
+            this.postingsFormat = PostingsFormat.ARRAYS;
+            this.scoringModel = ScoringModel.TF_IDF;
+            this.inMemoryFallback = false;
+        }
+
+        /**
+         * Returns a copy of the given options.
+         */
+        public Options(Options other) {
+            this.queryThreads = other.queryThreads;
+            this.indexMode = other.indexMode;
+            this.postingsFormat = other.postingsFormat;
+            this.scoringModel = other.scoringModel;
+            this.inMemoryFallback = other.inMemoryFallback;
+        }
+
+        /**
+         * Sets the number of threads used to score each query. The index is split
+         * into this many partitions, which are scored in parallel.
+         *
+         * @throws IllegalArgumentException  if queryThreads < 1
+         */
+        public Options queryThreads(int queryThreads) {
+            if (queryThreads < 1) {
+                throw new IllegalArgumentException("Need at least one query thread");
+            }
+            this.queryThreads = queryThreads;
+            return this;
+        }
+
+        /**
+         * Sets which posting list layouts to build. See IndexMode.
+         */
+        public Options indexMode(IndexMode indexMode) {
+            this.indexMode = indexMode;
+            return this;
+        }
+
+        /**
+         * Sets how to store the posting lists used to score queries. See
+         * PostingsFormat. A saved index is the same whatever the format.
+         */
+        public Options postingsFormat(PostingsFormat postingsFormat) {
+            this.postingsFormat = postingsFormat;
+            return this;
+        }
+
+        /**
+         * Sets how to rank results unless a query asks otherwise. See setScoringModel(...).
+         */
+        public Options scoringModel(ScoringModel scoringModel) {
+            this.scoringModel = scoringModel;
+            return this;
+        }
+
+        /**
+         * Sets whether open(...) may index every webpage in memory if it can't
+         * build and save the index. That needs enough memory to hold every page at
+         * once, so it is never done unless asked for.
+         */
+        public Options inMemoryFallback(boolean inMemoryFallback) {
+            this.inMemoryFallback = inMemoryFallback;
+            return this;
+        }
+
+        public int getQueryThreads() {
+            return this.queryThreads;
+        }
+
+        public IndexMode getIndexMode() {
+            return this.indexMode;
+        }
+
+        public PostingsFormat getPostingsFormat() {
+            return this.postingsFormat;
+        }
+
+        public ScoringModel getScoringModel() {
+            return this.scoringModel;
+        }
+
+        public boolean isInMemoryFallback() {
+            return this.inMemoryFallback;
         }
-        return output;
     }
 }
@@ -0,0 +1,150 @@
+package search;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Holds the SearchEngine currently serving requests, and lets us replace it with
+ * a new one without stopping the server.
+ *
+ * Every request acquires a lease on the current engine and closes it when done.
+ * Publishing a new engine takes effect immediately for new requests, while
+ * requests that already hold a lease finish on the old one. Each engine is
+ * reference counted: the holder keeps one reference to the current engine and
+ * every lease keeps another, so an old engine is closed as soon as it has been
+ * replaced and its last lease has been closed.
+ *
+ * Result cursors hold document ids, which change between indexes, so a cursor
+ * created before a swap may skip or repeat some results when used after it.
+ */
+public class SearchEngineHolder {
+    private AtomicReference<Snapshot> current;
+
+    public SearchEngineHolder(SearchEngine engine) {
+        this.current = new AtomicReference<>(new Snapshot(engine));
+    }
+
+    /**
+     * Returns a lease on the current engine. The engine stays open until the lease
+     * is closed, even if a new engine is published in the meantime.
+     */
+    public Lease acquire() {
+        while (true) {
+            Snapshot snapshot = this.current.get();
+            if (snapshot.retain()) {
+                return new Lease(snapshot);
+            }
+            // That engine was replaced and closed after we read it; the new one
+            // must be published by now.
+        }
+    }
+
+    /**
+     * Makes the given engine serve every request from now on. The old engine is
+     * closed once every lease on it has been closed.
+     */
+    public void publish(SearchEngine engine) {
+        Snapshot old = this.current.getAndSet(new Snapshot(engine));
+        old.release();
+    }
+
+    /**
+     * Builds a new engine on a background thread, and publishes it once it is
+     * ready. The current engine keeps serving requests in the meantime, and also
+     * afterwards if building fails.
+     *
+     * @return a future completed with the new engine once it is published, or
+     *         completed exceptionally if building it failed
+     */
+    public CompletableFuture<SearchEngine> rebuildInBackground(Supplier<SearchEngine> builder) {
+        CompletableFuture<SearchEngine> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                SearchEngine engine = builder.get();
+                this.publish(engine);
+                future.complete(engine);
+            } catch (RuntimeException ex) {
+                System.err.println("Could not build new index, keeping the old one: " + ex.getMessage());
+                future.completeExceptionally(ex);
+            }
+        }, "index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    /**
+     * An engine along with the number of references to it.
+     */
+    private static class Snapshot {
+        private SearchEngine engine;
+        // Starts at 1 for the holder's reference. Once it drops to 0 the engine is
+        // closed, and it never goes up again.
+        private AtomicInteger references = new AtomicInteger(1);
+
+        public Snapshot(SearchEngine engine) {
+            this.engine = engine;
+        }
+
+        /**
+         * Adds a reference, unless the engine was already closed. Returns 'true' if
+         * a reference was added.
+         */
+        public boolean retain() {
+            while (true) {
+                int count = this.references.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (this.references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        public void release() {
+            if (this.references.decrementAndGet() == 0) {
+                this.engine.close();
+            }
+        }
+    }
+
+    /**
+     * A reference to the engine that was current when it was acquired. Close it
+     * as soon as the engine is no longer needed, preferably using try-with-resources.
+     */
+    public static class Lease implements AutoCloseable {
+        private Snapshot snapshot;
+        private boolean closed;
+
+        private Lease(Snapshot snapshot) {
+            this.snapshot = snapshot;
+            this.closed = false;
+        }
+
+        /**
+         * Returns the leased engine.
+         *
+         * @throws IllegalStateException  if this lease was closed
+         */
+        public SearchEngine getEngine() {
+            if (this.closed) {
+                throw new IllegalStateException("The lease was closed");
+            }
+            return this.snapshot.engine;
+        }
+
+        /**
+         * Releases this lease. Closing a lease more than once has no effect.
+         */
+        @Override
+        public void close() {
+            if (!this.closed) {
+                this.closed = true;
+                this.snapshot.release();
+            }
+        }
+    }
+}
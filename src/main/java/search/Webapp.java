@@ -1,8 +1,8 @@
 package search;
 
-import datastructures.interfaces.IList;
-import search.misc.WordTokenizer;
-import search.models.Result;
+import search.models.ResultPage;
+import search.models.SearchCursor;
+import search.models.SearchQuery;
 import spark.ModelAndView;
 import spark.Request;
 import spark.Response;
@@ -11,6 +11,8 @@ import spark.template.mustache.MustacheTemplateEngine;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,20 +31,29 @@ public class Webapp {
      */
     private static final String TEMPLATE_FILES = "webapp/templates";
 
+    /**
+     * The most cursors we keep in the 'history' parameter of a search link. Each
+     * one is about 25 characters, so this keeps links far below the server's limit
+     * on the size of a request, however deep someone pages.
+     */
+    private static final int MAX_HISTORY = 50;
+
     private final String siteName;
-    private final SearchEngine engine;
+    private final SearchEngineHolder engines;
     private final Service http;
     private final int port;
 
     /**
-     * Creates a new instance of this class.
+     * Creates a new instance of this class that answers every query using whichever
+     * engine is current in the given holder, so the engine can be replaced while
+     * the website is running.
      *
-     * @param engine    The SearchEngine we will be using to answer user queries
+     * @param engines   Holds the SearchEngine we will be using to answer user queries
      * @param siteName  The name of our website
      * @param port      The port to serve our website on.
      */
-    public Webapp(SearchEngine engine, String siteName, int port) {
-        this.engine = engine;
+    public Webapp(SearchEngineHolder engines, String siteName, int port) {
+        this.engines = engines;
         this.siteName = siteName;
         this.port = port;
 
@@ -74,25 +85,82 @@ public class Webapp {
 
     /**
      * Handles all incoming user queries.
+     *
+     * Results are paginated using cursors: the 'after' parameter holds the cursor
+     * of the page being shown, and 'history' holds the cursors of the pages before
+     * it (separated by commas), so we can link back to the previous page. Only the
+     * last MAX_HISTORY cursors are kept; going back further than that leads to the
+     * first page.
      */
     private String handleSearch(Request req, Response res) {
         // Get search query
         String query = req.queryParams("query");
         int numResults = Integer.parseInt(req.queryParamOrDefault("num_results", "20"));
-
-        // Perform core search
-        IList<String> queryTerms = WordTokenizer.extract(query);
-        IList<Result> results = this.engine.getTopKResults(queryTerms, numResults);
+        String afterParam = req.queryParamOrDefault("after", "");
+        String history = req.queryParamOrDefault("history", "");
+        SearchCursor after = afterParam.isEmpty() ? null : SearchCursor.parse(afterParam);
+
+        // Perform core search. The engine may be replaced while we do, but the
+        // lease keeps the one we started with open until we're done.
+        SearchQuery searchQuery = SearchQuery.parse(query);
+        ResultPage page;
+        try (SearchEngineHolder.Lease lease = this.engines.acquire()) {
+            page = lease.getEngine().getResultsPage(searchQuery, after, numResults);
+        }
 
         // Render results
         Map<String, Object> model = new HashMap<>();
         model.put("siteTitle", this.siteName);
-        model.put("results", results);
+        model.put("results", page.getResults());
         model.put("initialQuery", query);
 
+        if (page.hasNext()) {
+            String nextHistory = history.isEmpty() && afterParam.isEmpty() ? "" : history + "," + afterParam;
+            nextHistory = trimHistory(nextHistory);
+            model.put("nextLink", this.makeSearchLink(
+                    query, numResults, page.getNextCursor().toString(), nextHistory));
+        }
+        if (after != null) {
+            int split = history.lastIndexOf(',');
+            String prevAfter = history.substring(split + 1);
+            String prevHistory = split == -1 ? "" : history.substring(0, split);
+            model.put("prevLink", this.makeSearchLink(query, numResults, prevAfter, prevHistory));
+        }
+
         return this.render("search.mustache", model);
     }
 
+    /**
+     * Returns the last MAX_HISTORY cursors of the given history.
+     */
+    private static String trimHistory(String history) {
+        int start = history.length();
+        for (int i = 0; i < MAX_HISTORY; i++) {
+            start = history.lastIndexOf(',', start - 1);
+            if (start == -1) {
+                return history;
+            }
+        }
+        return history.substring(start + 1);
+    }
+
+    private String makeSearchLink(String query, int numResults, String after, String history) {
+        try {
+            StringBuilder link = new StringBuilder("/search?query=");
+            link.append(URLEncoder.encode(query, "UTF-8"));
+            link.append("&num_results=").append(numResults);
+            if (!after.isEmpty()) {
+                link.append("&after=").append(URLEncoder.encode(after, "UTF-8"));
+            }
+            if (!history.isEmpty()) {
+                link.append("&history=").append(URLEncoder.encode(history, "UTF-8"));
+            }
+            return link.toString();
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException("UTF-8 should always be supported", ex);
+        }
+    }
+
     /**
      * Handles fatal errors that causes the webapp to crash before
      * it even has a chance to run.
@@ -0,0 +1,120 @@
+package search;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import search.index.CompressedInvertedIndex;
+import search.index.IndexFile;
+import search.index.PostingList;
+import search.index.PostingsFormat;
+import search.models.Result;
+
+import java.net.URI;
+import java.util.Random;
+
+/**
+ * Measures how closely the top-k results scored with each compressed
+ * PostingsFormat agree with the results scored using exact weights, along
+ * with how much memory each format uses per posting.
+ *
+ * Queries are made of one to three random terms from the dataset's vocabulary.
+ * For each format we print the average fraction of the exact top k that also
+ * appear in the format's top k, and the fraction of queries whose top k is
+ * identical, in the same order.
+ *
+ * Usage: WeightAgreementReport [dataset] [k] [number of queries]
+ */
+public class WeightAgreementReport {
+    private static final int DEFAULT_K = 10;
+    private static final int DEFAULT_QUERIES = 1000;
+    private static final long SEED = 42;
+
+    public static void main(String[] args) {
+        String dataset = args.length > 0 ? args[0] : Main.DATA_FOLDER_NAME;
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_K;
+        int numQueries = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_QUERIES;
+
+        IndexFile index = new SearchEngine(dataset).toIndexFile();
+        SearchEngine exact = new SearchEngine(index, new SearchEngine.Options());
+        IList<IList<String>> queries = makeQueries(index, numQueries, new Random(SEED));
+
+        long postings = 0;
+        for (KVPair<String, PostingList> entry : index.getInvertedIndex()) {
+            postings += entry.getValue().size();
+        }
+
+        System.out.println(String.format("%-20s %14s %14s %14s",
+                "Format", "Bytes/posting", "Overlap@" + k, "Identical@" + k));
+        System.out.println(String.format("%-20s %14.2f %14.4f %14.4f",
+                PostingsFormat.ARRAYS, (double) (Integer.BYTES + Double.BYTES), 1.0, 1.0));
+        for (PostingsFormat format : PostingsFormat.values()) {
+            if (format == PostingsFormat.ARRAYS) {
+                continue;
+            }
+            long bytes = new CompressedInvertedIndex(index.getInvertedIndex(), format).postingBytes();
+            SearchEngine approximate = new SearchEngine(index, new SearchEngine.Options().postingsFormat(format));
+            double[] agreement = measureAgreement(exact, approximate, queries, k);
+            System.out.println(String.format("%-20s %14.2f %14.4f %14.4f",
+                    format, postings == 0 ? 0.0 : (double) bytes / postings, agreement[0], agreement[1]));
+        }
+    }
+
+    /**
+     * Returns two numbers: the average fraction of the expected engine's top k
+     * results that are also in the actual engine's top k, and the fraction of
+     * queries for which both engines return exactly the same results in the same order.
+     */
+    public static double[] measureAgreement(SearchEngine expected, SearchEngine actual,
+                                            IList<IList<String>> queries, int k) {
+        double totalOverlap = 0.0;
+        int identical = 0;
+        for (IList<String> query : queries) {
+            IList<Result> expectedResults = expected.getTopKResults(query, k);
+            IList<Result> actualResults = actual.getTopKResults(query, k);
+
+            ISet<URI> actualUris = new ChainedHashSet<>();
+            for (Result result : actualResults) {
+                actualUris.add(result.getUri());
+            }
+            int shared = 0;
+            boolean sameOrder = expectedResults.size() == actualResults.size();
+            for (int i = 0; i < expectedResults.size(); i++) {
+                URI uri = expectedResults.get(i).getUri();
+                if (actualUris.contains(uri)) {
+                    shared++;
+                }
+                if (sameOrder && !uri.equals(actualResults.get(i).getUri())) {
+                    sameOrder = false;
+                }
+            }
+            totalOverlap += expectedResults.isEmpty() ? 1.0 : (double) shared / expectedResults.size();
+            if (sameOrder) {
+                identical++;
+            }
+        }
+        int count = Math.max(queries.size(), 1);
+        return new double[] {totalOverlap / count, (double) identical / count};
+    }
+
+    private static IList<IList<String>> makeQueries(IndexFile index, int numQueries, Random rand) {
+        String[] terms = new String[index.getInvertedIndex().termCount()];
+        int count = 0;
+        for (KVPair<String, PostingList> entry : index.getInvertedIndex()) {
+            terms[count] = entry.getKey();
+            count++;
+        }
+
+        IList<IList<String>> queries = new DoubleLinkedList<>();
+        for (int i = 0; i < numQueries && count > 0; i++) {
+            IList<String> query = new DoubleLinkedList<>();
+            int numTerms = 1 + rand.nextInt(3);
+            for (int j = 0; j < numTerms; j++) {
+                query.add(terms[rand.nextInt(count)]);
+            }
+            queries.add(query);
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,177 @@
+package search.analyzers;
+
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.IList;
+import search.index.ArrayPostingList;
+import search.index.InvertedIndex;
+import search.index.MemoryInvertedIndex;
+import search.index.PositionalIndex;
+import search.index.PositionalPostingList;
+import search.index.PostingList;
+import search.index.TermDictionary;
+
+import java.util.Arrays;
+
+/**
+ * Scores documents using Okapi BM25:
+ *
+ *     score(q, d) = sum over words t of q: idf(t) * tf(t, d) * (k1 + 1) / (tf(t, d) + K(d))
+ *
+ *     idf(t) = ln(1 + (N - df(t) + 0.5) / (df(t) + 0.5))
+ *     K(d)   = k1 * (1 - b + b * length(d) / averageLength)
+ *
+ * where N is the number of documents, df(t) the number of documents containing
+ * t, and tf(t, d) the number of times t occurs in d. A word that occurs more
+ * than once in the query counts once per occurrence.
+ *
+ * Everything but idf(t) depends only on the document, so it is computed while
+ * indexing: K(d) is computed once per document, and then the rest of each term's
+ * contribution is stored as the weight of its posting. The query's weights are
+ * the idf of each of its words. Unlike TF-IDF cosine similarity, no vector
+ * lengths are involved: every document norm is 1, as is every query's norm.
+ *
+ * Every posting's weight is less than k1 + 1 however often its word occurs, so
+ * the upper bounds MaxScore uses stay close to the actual scores, which lets it
+ * skip more documents.
+ */
+public class Bm25Scorer implements Scorer {
+    public static final double DEFAULT_K1 = 1.2;
+    public static final double DEFAULT_B = 0.75;
+
+    private InvertedIndex index;
+    private int documentCount;
+
+    // lengthNorms[id] is K(id), as defined above
+    private double[] lengthNorms;
+
+    /**
+     * Builds the BM25 weights of every document in the given positional index,
+     * using DEFAULT_K1 and DEFAULT_B.
+     *
+     * @param documentCount  The number of documents; every document id must be in
+     *                       the range [0, documentCount).
+     */
+    public Bm25Scorer(PositionalIndex positions, int documentCount) {
+        this(positions, documentCount, DEFAULT_K1, DEFAULT_B);
+    }
+
+    /**
+     * Builds the BM25 weights of every document in the given positional index.
+     *
+     * @param documentCount  The number of documents; every document id must be in
+     *                       the range [0, documentCount).
+     * @param k1             How quickly repeating a word stops making a document
+     *                       more relevant; must not be negative.
+     * @param b              How much long documents are penalized, from 0 to 1.
+     * @throws IllegalArgumentException if k1 < 0, or b is not between 0 and 1
+     */
+    public Bm25Scorer(PositionalIndex positions, int documentCount, double k1, double b) {
+        if (k1 < 0 || b < 0 || b > 1) {
+            throw new IllegalArgumentException("Need k1 >= 0 and 0 <= b <= 1");
+        }
+        this.documentCount = documentCount;
+
+        String[] terms = new String[positions.termCount()];
+        int count = 0;
+        for (KVPair<String, PositionalPostingList> entry : positions) {
+            terms[count] = entry.getKey();
+            count++;
+        }
+        terms = Arrays.copyOf(terms, count);
+        Arrays.sort(terms);
+
+        // Every word of a document is at exactly one position, so a document's
+        // length is the sum of the frequencies of its terms.
+        PositionalPostingList[] lists = new PositionalPostingList[terms.length];
+        int[] documentFrequencies = new int[terms.length];
+        long[] postingsOffsets = new long[terms.length];
+        long[] lengths = new long[documentCount];
+        long totalLength = 0;
+        for (int t = 0; t < terms.length; t++) {
+            lists[t] = positions.getPostings(terms[t]);
+            for (int i = 0; i < lists[t].size(); i++) {
+                lengths[lists[t].getDocumentId(i)] += lists[t].getFrequency(i);
+                totalLength += lists[t].getFrequency(i);
+            }
+            documentFrequencies[t] = lists[t].size();
+            postingsOffsets[t] = t;
+        }
+
+        double averageLength = documentCount == 0 ? 0.0 : (double) totalLength / documentCount;
+        this.lengthNorms = new double[documentCount];
+        for (int id = 0; id < documentCount; id++) {
+            double relativeLength = averageLength == 0.0 ? 0.0 : lengths[id] / averageLength;
+            this.lengthNorms[id] = k1 * (1 - b + b * relativeLength);
+        }
+
+        PostingList[] postings = new PostingList[terms.length];
+        for (int t = 0; t < terms.length; t++) {
+            ArrayPostingList weights = new ArrayPostingList();
+            for (int i = 0; i < lists[t].size(); i++) {
+                int id = lists[t].getDocumentId(i);
+                double termFrequency = lists[t].getFrequency(i);
+                weights.add(id, termFrequency * (k1 + 1) / (termFrequency + this.lengthNorms[id]));
+            }
+            postings[t] = weights;
+        }
+
+        double[] norms = new double[documentCount];
+        Arrays.fill(norms, 1.0);
+        this.index = new MemoryInvertedIndex(
+                new TermDictionary(terms, documentFrequencies, postingsOffsets), postings, norms);
+    }
+
+    @Override
+    public InvertedIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Returns K(d) of the document with the given id, as defined above.
+     */
+    public double getLengthNorm(int docId) {
+        return this.lengthNorms[docId];
+    }
+
+    /**
+     * Returns the idf of the given word, or 0 if no document contains it.
+     */
+    public double computeIdf(String word) {
+        double documentFrequency = this.index.getPostings(word).size();
+        if (documentFrequency == 0) {
+            return 0.0;
+        }
+        return Math.log(1 + (this.documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    @Override
+    public PreparedQuery prepareQuery(IList<String> query) {
+        TermCounter counter = new TermCounter();
+        for (String word : query) {
+            counter.add(word);
+        }
+        String[] terms = new String[counter.size()];
+        double[] weights = new double[counter.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = counter.getTerm(i);
+            weights[i] = this.computeIdf(terms[i]) * counter.getCount(i);
+        }
+        return new PreparedQuery(terms, weights, 1.0);
+    }
+
+    /**
+     * Returns the BM25 score of the document with the given id.
+     */
+    @Override
+    public Double computeRelevance(PreparedQuery query, int docId) {
+        double sum = 0.0;
+        for (int i = 0; i < query.size(); i++) {
+            PostingList list = this.index.getPostings(query.getTerm(i));
+            int position = list.advance(0, docId);
+            if (position < list.size() && list.getDocumentId(position) == docId) {
+                sum += query.getWeight(i) * list.getWeight(position);
+            }
+        }
+        return sum / query.getNorm();
+    }
+}
@@ -1,9 +1,7 @@
 package search.analyzers;
 
-import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.ISet;
-import datastructures.concrete.dictionaries.ChainedHashDictionary;
-import datastructures.concrete.ChainedHashSet;
+import search.index.DocumentRegistry;
 import search.models.Webpage;
 
 import java.net.URI;
@@ -14,8 +12,8 @@ import java.net.URI;
  * See the spec for more details.
  */
 public class PageRankAnalyzer {
-    private IDictionary<URI, Double> pageRanks;
-    private ISet<URI> pages;
+    private double[] pageRanks;
+    private DocumentRegistry registry;
 
     /**
      * Computes a graph representing the internet and computes the page rank of all
@@ -30,15 +28,21 @@ public class PageRankAnalyzer {
      *                  page rank never converges.
      */
     public PageRankAnalyzer(ISet<Webpage> webpages, double decay, double epsilon, int limit) {
-        // Implementation note: We have commented these method calls out so your
-        // search engine doesn't immediately crash when you try running it for the
-        // first time.
-        //
-        // You should uncomment these lines when you're ready to begin working
-        // on this class.
+        this(webpages, new DocumentRegistry(webpages), decay, epsilon, limit);
+    }
+
+    /**
+     * Same as above, except the graph's vertices are the document ids assigned by the
+     * given registry.
+     *
+     * @param registry  The registry that assigned each of the webpages its document id.
+     */
+    public PageRankAnalyzer(ISet<Webpage> webpages, DocumentRegistry registry,
+                            double decay, double epsilon, int limit) {
+        this.registry = registry;
 
         // Step 1: Make a graph representing the 'internet'
-        IDictionary<URI, ISet<URI>> graph = this.makeGraph(webpages);
+        int[][] graph = this.makeGraph(webpages);
 
         // Step 2: Use this graph to compute the page rank for each webpage
         this.pageRanks = this.makePageRanks(graph, decay, limit, epsilon);
@@ -47,9 +51,34 @@ public class PageRankAnalyzer {
         // page ranks, we no longer need it!
     }
 
+    /**
+     * Computes the page ranks of a graph built elsewhere, such as by a
+     * SpimiIndexBuilder, which never holds every webpage in memory at once.
+     *
+     * @param graph  graph[id] holds the ids of every page the page with the given
+     *               id links to, each at most once and never the page itself.
+     */
+    public PageRankAnalyzer(DocumentRegistry registry, int[][] graph,
+                            double decay, double epsilon, int limit) {
+        this.registry = registry;
+        this.pageRanks = this.makePageRanks(graph, decay, limit, epsilon);
+    }
+
+    /**
+     * Restores an analyzer whose page ranks were computed earlier, such as the
+     * ones saved in an IndexFile.
+     *
+     * @param pageRanks  The page rank of every document, indexed by id.
+     */
+    public PageRankAnalyzer(DocumentRegistry registry, double[] pageRanks) {
+        this.registry = registry;
+        this.pageRanks = pageRanks;
+    }
+
     /**
      * This method converts a set of webpages into an unweighted, directed graph,
-     * in adjacency list form.
+     * in adjacency list form: graph[id] contains the ids of every page that the
+     * page with the given id links to.
      *
      * You may assume that each webpage can be uniquely identified by its URI.
      *
@@ -58,23 +87,32 @@ public class PageRankAnalyzer {
      * links from your graph: we want the final graph we build to be
      * entirely "self-contained".
      */
-    private IDictionary<URI, ISet<URI>> makeGraph(ISet<Webpage> webpages) {
-        
-        this.pages = new ChainedHashSet<URI>();
-        for (Webpage page : webpages) {
-            this.pages.add(page.getUri());
-        }
-        
-        IDictionary<URI, ISet<URI>> graph = new ChainedHashDictionary<>();
-        
+    private int[][] makeGraph(ISet<Webpage> webpages) {
+        int[][] graph = new int[this.registry.size()][];
+
+        // lastLinkedFrom[target] == source + 1 iff source already links to target;
+        // this lets us drop duplicate links without building a set per page.
+        int[] lastLinkedFrom = new int[this.registry.size()];
+        int[] buffer = new int[this.registry.size()];
+
         for (Webpage page : webpages) {
-            ISet<URI> links = new ChainedHashSet<URI>();
+            int source = this.registry.getId(page.getUri());
+            int count = 0;
             for (URI link : page.getLinks()) {
-                if (!page.getUri().equals(link) && pages.contains(link)) {
-                    links.add(link);
+                if (this.registry.contains(link)) {
+                    int target = this.registry.getId(link);
+                    if (target != source && lastLinkedFrom[target] != source + 1) {
+                        lastLinkedFrom[target] = source + 1;
+                        buffer[count] = target;
+                        count++;
+                    }
                 }
             }
-            graph.put(page.getUri(), links);
+            int[] links = new int[count];
+            for (int i = 0; i < count; i++) {
+                links[i] = buffer[i];
+            }
+            graph[source] = links;
         }
         return graph;
     }
@@ -83,8 +121,6 @@ public class PageRankAnalyzer {
     /**
      * Computes the page ranks for all webpages in the graph.
      *
-     * Precondition: assumes 'this.graphs' has previously been initialized.
-     *
      * @param decay     Represents the "decay" factor when computing page rank (see spec).
      * @param epsilon   When the difference in page ranks is less then or equal to this number,
      *                  stop iterating.
@@ -92,43 +128,41 @@ public class PageRankAnalyzer {
      *                  is meant as a safety valve to prevent us from infinite looping in case our
      *                  page rank never converges.
      */
-    private IDictionary<URI, Double> makePageRanks(IDictionary<URI, ISet<URI>> graph,
-                                                    double decay,
-                                                    int limit,
-                                                    double epsilon) {
+    private double[] makePageRanks(int[][] graph,
+                                   double decay,
+                                   int limit,
+                                   double epsilon) {
         // Step 1: The initialize step should go here
-        IDictionary<URI, Double> oldRank = new ChainedHashDictionary<URI, Double>();
-        IDictionary<URI, Double> result = new ChainedHashDictionary<URI, Double>();
-        double size = graph.size();
+        int size = graph.length;
+        double[] oldRank = new double[size];
+        double[] result = new double[size];
         double surf = (1 - decay) / size;
-        double rank = 1 / size;
+        double rank = 1.0 / size;
         
         // initialize ranks
-        for (URI page : pages) {
-            oldRank.put(page, rank);
-            result.put(page, surf);
+        for (int page = 0; page < size; page++) {
+            oldRank[page] = rank;
+            result[page] = surf;
         }
         for (int i = 0; i < limit; i++) {
             boolean end = true;
             
             // Step 2: The update step should go here            
             
-            for (URI page : pages) {
-                double old = oldRank.get(page); 
+            // Pages with no links distribute their viewers to all pages. Rather than
+            // doing that once per such page, we total their contribution and hand it
+            // out in a single pass at the end.
+            double dangling = 0.0;
+            for (int page = 0; page < size; page++) {
+                double old = oldRank[page];
+                int[] links = graph[page];
                   
-                // If page has no links, distribute some viewers to all pages
-                if (graph.get(page).isEmpty()) {
-                    for (URI link : pages) {
-                        rank = result.get(link);
-                        rank += decay * old/ size;
-                        result.put(link, rank);
-                    }
+                if (links.length == 0) {
+                    dangling += decay * old / size;
                 } else {
                     // Distribute some viewers to links
-                    for (URI link : graph.get(page)) {
-                        rank = result.get(link);
-                        rank += decay * old / graph.get(page).size();
-                        result.put(link, rank);
+                    for (int link : links) {
+                        result[link] += decay * old / links.length;
                     }
                 }
             }
@@ -138,8 +172,9 @@ public class PageRankAnalyzer {
             // Return early if we've converged.
             
             // check for convergence
-            for (URI page : pages) {
-                if (Math.abs(oldRank.get(page) - result.get(page)) > epsilon) {
+            for (int page = 0; page < size; page++) {
+                result[page] += dangling;
+                if (Math.abs(oldRank[page] - result[page]) > epsilon) {
                     end = false;
                 }
             }
@@ -148,9 +183,9 @@ public class PageRankAnalyzer {
             if (end) {
                 return oldRank;
             }
-            for (URI page : pages) {
-                oldRank.put(page, result.get(page));
-                result.put(page, surf);
+            for (int page = 0; page < size; page++) {
+                oldRank[page] = result[page];
+                result[page] = surf;
             }
         }
         return oldRank;
@@ -164,6 +199,15 @@ public class PageRankAnalyzer {
      */
     public double computePageRank(URI pageUri) {
         // Implementation note: this method should be very simple: just one line!
-        return pageRanks.get(pageUri);
+        return this.computePageRank(this.registry.getId(pageUri));
+    }
+
+    /**
+     * Returns the page rank of the page with the given document id.
+     *
+     * Precondition: the given id must belong to one of the webpages given to the constructor.
+     */
+    public double computePageRank(int docId) {
+        return this.pageRanks[docId];
     }
-}
\ No newline at end of file
+}
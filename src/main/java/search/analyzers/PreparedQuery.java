@@ -0,0 +1,186 @@
+package search.analyzers;
+
+import search.index.TermDictionary;
+
+import java.util.Arrays;
+
+/**
+ * The vector of a search query, computed once by a Scorer so it can be compared
+ * against as many documents as we like.
+ *
+ * Each unique query word appears exactly once, together with its weight.
+ * Words that do not appear in any document have a weight of 0.
+ */
+public class PreparedQuery {
+    private String[] terms;
+    private double[] weights;
+    private double norm;
+
+    // The indexes of the words, sorted by word
+    private int[] sortedIndexes;
+
+    // The words' term ids in the last dictionary getTermIds(...) was called with.
+    // Queries are scored by several threads at once, so this is replaced as a
+    // whole rather than updated.
+    private volatile TermIds termIds;
+
+    /**
+     * Constructs a new prepared query.
+     *
+     * @param terms    The unique words of the query.
+     * @param weights  The weight of each word, in the same order.
+     * @throws IllegalArgumentException  if the two arrays have different lengths
+     */
+    public PreparedQuery(String[] terms, double[] weights) {
+        this(terms, weights, vectorLength(weights));
+    }
+
+    /**
+     * Constructs a new prepared query whose scores are divided by the given norm
+     * instead of by the length of its vector. Scorers whose scores do not depend
+     * on the length of the query's vector, such as Bm25Scorer, pass 1.
+     *
+     * @param terms    The unique words of the query.
+     * @param weights  The weight of each word, in the same order.
+     * @param norm     What to divide every score by.
+     * @throws IllegalArgumentException  if the two arrays have different lengths
+     */
+    public PreparedQuery(String[] terms, double[] weights, double norm) {
+        if (terms.length != weights.length) {
+            throw new IllegalArgumentException("Every term needs exactly one weight");
+        }
+        this.terms = terms;
+        this.weights = weights;
+        this.norm = norm;
+        this.sortedIndexes = sortByTerm(terms);
+    }
+
+    /**
+     * Returns the indexes of the given words, sorted by word. Queries only have a
+     * few words, so a plain insertion sort is enough.
+     */
+    private static int[] sortByTerm(String[] terms) {
+        int[] indexes = new int[terms.length];
+        for (int i = 0; i < indexes.length; i++) {
+            int j = i;
+            while (j > 0 && terms[indexes[j - 1]].compareTo(terms[i]) > 0) {
+                indexes[j] = indexes[j - 1];
+                j--;
+            }
+            indexes[j] = i;
+        }
+        return indexes;
+    }
+
+    private static double vectorLength(double[] weights) {
+        double sum = 0.0;
+        for (double weight : weights) {
+            sum += weight * weight;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Returns the number of unique words in the query.
+     */
+    public int size() {
+        return this.terms.length;
+    }
+
+    /**
+     * Returns the word at the given index.
+     *
+     * @throws IndexOutOfBoundsException if index < 0 or index >= this.size()
+     */
+    public String getTerm(int index) {
+        return this.terms[index];
+    }
+
+    /**
+     * Returns the weight of the word at the given index.
+     *
+     * @throws IndexOutOfBoundsException if index < 0 or index >= this.size()
+     */
+    public double getWeight(int index) {
+        return this.weights[index];
+    }
+
+    /**
+     * Returns the index of the word that comes i-th in alphabetical order, as
+     * sorted by String.compareTo.
+     *
+     * @throws IndexOutOfBoundsException if i < 0 or i >= this.size()
+     */
+    int getSortedIndex(int i) {
+        return this.sortedIndexes[i];
+    }
+
+    /**
+     * Returns the ids of this query's words in the given dictionary, in increasing
+     * order, leaving out words the dictionary does not contain. They are looked up
+     * and sorted the first time this is called with that dictionary, so a Scorer
+     * can merge them with any number of documents without doing either again.
+     */
+    TermIds getTermIds(TermDictionary dictionary) {
+        TermIds ids = this.termIds;
+        if (ids == null || ids.dictionary != dictionary) {
+            ids = new TermIds(dictionary, this);
+            this.termIds = ids;
+        }
+        return ids;
+    }
+
+    /**
+     * The ids of a query's words in one dictionary, sorted in increasing order,
+     * along with the index of each word in the query.
+     */
+    static class TermIds {
+        private final TermDictionary dictionary;
+        private final int[] ids;
+        private final int[] indexes;
+
+        private TermIds(TermDictionary dictionary, PreparedQuery query) {
+            int[] ids = new int[query.size()];
+            int[] indexes = new int[query.size()];
+            int count = 0;
+            for (int i = 0; i < query.size(); i++) {
+                int index = query.getSortedIndex(i);
+                int id = dictionary.find(query.getTerm(index));
+                if (id == -1) {
+                    continue;
+                }
+                // A dictionary's ids follow the order of its terms, so visiting
+                // the words in order gives increasing ids.
+                ids[count] = id;
+                indexes[count] = index;
+                count++;
+            }
+            this.dictionary = dictionary;
+            this.ids = Arrays.copyOf(ids, count);
+            this.indexes = Arrays.copyOf(indexes, count);
+        }
+
+        public int size() {
+            return this.ids.length;
+        }
+
+        public int getId(int i) {
+            return this.ids[i];
+        }
+
+        /**
+         * Returns the index in the query of the word with the i-th smallest id.
+         */
+        public int getIndex(int i) {
+            return this.indexes[i];
+        }
+    }
+
+    /**
+     * Returns what every score is divided by: the length of the query's TF-IDF
+     * vector, unless another norm was given to the constructor.
+     */
+    public double getNorm() {
+        return this.norm;
+    }
+}
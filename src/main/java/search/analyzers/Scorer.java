@@ -0,0 +1,39 @@
+package search.analyzers;
+
+import datastructures.interfaces.IList;
+import search.index.InvertedIndex;
+
+/**
+ * A relevance model: decides how well each document matches a query.
+ *
+ * Every scorer scores a document as
+ *
+ *     (query . document) / (query.getNorm() * index.getDocumentNorm(document))
+ *
+ * where the dot product multiplies each query word's weight, as given by
+ * prepareQuery, by the weight of that word's posting for the document in
+ * getIndex(). This is what lets QueryEvaluator answer queries for any scorer,
+ * using MaxScore and every other optimization it has.
+ *
+ * TfIdfAnalyzer implements cosine similarity between TF-IDF vectors, and
+ * Bm25Scorer implements Okapi BM25.
+ */
+public interface Scorer {
+    /**
+     * Returns the index whose postings hold the weight of each word in each
+     * document, and whose document norms divide each document's scores.
+     */
+    public InvertedIndex getIndex();
+
+    /**
+     * Computes the weights of the given query's words.
+     */
+    public PreparedQuery prepareQuery(IList<String> query);
+
+    /**
+     * Returns how well the document with the given id matches the given query.
+     *
+     * Precondition: the given id must belong to a document in getIndex().
+     */
+    public Double computeRelevance(PreparedQuery query, int docId);
+}
@@ -0,0 +1,16 @@
+package search.analyzers;
+
+/**
+ * Selects which Scorer a SearchEngine ranks results with.
+ */
+public enum ScoringModel {
+    /**
+     * Cosine similarity between TF-IDF vectors; see TfIdfAnalyzer.
+     */
+    TF_IDF,
+
+    /**
+     * Okapi BM25; see Bm25Scorer.
+     */
+    BM25
+}
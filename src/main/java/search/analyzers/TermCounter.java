@@ -0,0 +1,149 @@
+package search.analyzers;
+
+import java.util.Arrays;
+
+/**
+ * Counts how many times each term occurs, for one document at a time.
+ *
+ * This is an open-addressing hash table from terms to counts that remembers the
+ * order terms were first added in. Counting a term takes a single lookup, and
+ * clear() only resets the slots that were used, so a single counter can be
+ * reused for every document without allocating anything once it is big enough.
+ *
+ * A counter is not thread-safe: give each thread its own.
+ */
+class TermCounter {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // keys[slot] is the term in that slot, or null if it is empty. The capacity
+    // is a power of two, and at most half the slots are used.
+    private String[] keys;
+    private int[] counts;
+
+    // slots[i] is the slot of the i-th distinct term added since the last clear
+    private int[] slots;
+    private int size;
+    private int total;
+
+    public TermCounter() {
+        this.keys = new String[INITIAL_CAPACITY];
+        this.counts = new int[INITIAL_CAPACITY];
+        this.slots = new int[INITIAL_CAPACITY / 2];
+        this.size = 0;
+        this.total = 0;
+    }
+
+    /**
+     * Forgets every term counted so far.
+     */
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.keys[this.slots[i]] = null;
+        }
+        this.size = 0;
+        this.total = 0;
+    }
+
+    /**
+     * Adds one to the count of the given term.
+     */
+    public void add(String term) {
+        this.add(term, 1);
+    }
+
+    /**
+     * Adds the given amount to the count of the given term.
+     *
+     * @throws IllegalArgumentException if count < 1
+     */
+    public void add(String term, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be positive");
+        }
+        int mask = this.keys.length - 1;
+        int slot = spread(term.hashCode()) & mask;
+        while (this.keys[slot] != null) {
+            if (this.keys[slot].equals(term)) {
+                this.counts[slot] += count;
+                this.total += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.keys[slot] = term;
+        this.counts[slot] = count;
+        this.slots[this.size] = slot;
+        this.size++;
+        this.total += count;
+        if (this.size * 2 >= this.keys.length) {
+            this.resize();
+        }
+    }
+
+    /**
+     * Returns the number of distinct terms counted.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of terms counted, including repeats.
+     */
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Returns the i-th distinct term, in the order they were first added.
+     *
+     * @throws IndexOutOfBoundsException if i < 0 or i >= this.size()
+     */
+    public String getTerm(int i) {
+        return this.keys[this.slot(i)];
+    }
+
+    /**
+     * Returns how many times the i-th distinct term was added.
+     *
+     * @throws IndexOutOfBoundsException if i < 0 or i >= this.size()
+     */
+    public int getCount(int i) {
+        return this.counts[this.slot(i)];
+    }
+
+    private int slot(int i) {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.slots[i];
+    }
+
+    private void resize() {
+        String[] oldKeys = this.keys;
+        int[] oldCounts = this.counts;
+        this.keys = new String[oldKeys.length * 2];
+        this.counts = new int[oldKeys.length * 2];
+        this.slots = Arrays.copyOf(this.slots, oldKeys.length);
+
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < this.size; i++) {
+            int oldSlot = this.slots[i];
+            int slot = spread(oldKeys[oldSlot].hashCode()) & mask;
+            while (this.keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            this.keys[slot] = oldKeys[oldSlot];
+            this.counts[slot] = oldCounts[oldSlot];
+            this.slots[i] = slot;
+        }
+    }
+
+    /**
+     * Mixes the high bits of a hash code into the low ones, which are the only
+     * ones used to pick a slot.
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
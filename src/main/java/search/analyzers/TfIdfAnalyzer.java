@@ -3,11 +3,20 @@ package search.analyzers;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.IList;
 import datastructures.interfaces.ISet;
+import search.index.DocumentRegistry;
+import search.index.InvertedIndex;
+import search.index.MemoryInvertedIndex;
+import search.index.PostingList;
+import search.index.TermDictionary;
 import search.models.Webpage;
 import datastructures.concrete.dictionaries.ChainedHashDictionary;
 import datastructures.concrete.KVPair;
 import datastructures.concrete.ChainedHashSet;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
 
 /**
  * This class is responsible for computing how "relevant" any given document is
@@ -15,38 +24,283 @@ import java.net.URI;
  *
  * See the spec for more details.
  */
-public class TfIdfAnalyzer {
-    // This field must contain the IDF score for every single word in all
-    // the documents.
-    private IDictionary<String, Double> idfScores;
+public class TfIdfAnalyzer implements Scorer {
+    // How many documents each thread takes at a time while building
+    private static final int CHUNK_SIZE = 64;
+
+    // This field must contain every single word in all the documents, along
+    // with the number of documents containing it.
+    private TermDictionary termDictionary;
     private int docSize;
-    private IDictionary<URI, Double> docVectorNorms;
+    private double[] docVectorNorms;
 
     // This field must contain the TF-IDF vector for each webpage you were given
-    // in the constructor.
+    // in the constructor. See DocumentVectors.
     //
-    // We will use each webpage's page URI as a unique key.
-    private IDictionary<URI, IDictionary<String, Double>> documentTfIdfVectors;
+    // A restored analyzer builds the vectors the first time they are needed,
+    // while other threads may be scoring queries, so they are published all at
+    // once through this field rather than one array at a time.
+    private volatile DocumentVectors vectors;
+
+    // How many times each distinct word occurs in each document, in the order the
+    // words first occur, and how many words each document has. Only used while
+    // the constructor computes the vectors above.
+    private String[][] documentTerms;
+    private int[][] documentTermCounts;
+    private int[] documentLengths;
+
+    private DocumentRegistry registry;
 
-    // Feel free to add extra fields and helper methods.
+    // The index built from the vectors above, or the one this analyzer was
+    // restored from. In the latter case the fields above are null, and are read
+    // from the index's postings instead.
+    private InvertedIndex index;
+    private boolean restored;
 
     public TfIdfAnalyzer(ISet<Webpage> webpages) {
-        // Implementation note: We have commented these method calls out so your
-        // search engine doesn't immediately crash when you try running it for the
-        // first time.
-        //
-        // You should uncomment these lines when you're ready to begin working
-        // on this class.
+        this(webpages, new DocumentRegistry(webpages));
+    }
+
+    /**
+     * Computes the TF-IDF vectors of all the given webpages.
+     *
+     * @param webpages  A set of all webpages we have parsed.
+     * @param registry  The registry that assigned each of the webpages its document id.
+     */
+    public TfIdfAnalyzer(ISet<Webpage> webpages, DocumentRegistry registry) {
+        this(webpages, registry, 1);
+    }
+
+    /**
+     * Computes the TF-IDF vectors of all the given webpages using the given number
+     * of threads. The vectors are exactly the same whatever the number of threads.
+     *
+     * Building happens in two passes over the documents, each split between the
+     * threads: the first counts every document's words, and the second computes
+     * every document's weights and norm. Between the two, the document
+     * frequencies each thread counted are added up.
+     *
+     * @param webpages  A set of all webpages we have parsed.
+     * @param registry  The registry that assigned each of the webpages its document id.
+     * @param threads   The number of threads to use.
+     * @throws IllegalArgumentException if threads < 1
+     */
+    public TfIdfAnalyzer(ISet<Webpage> webpages, DocumentRegistry registry, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+        this.registry = registry;
         this.docSize = webpages.size();
-        this.idfScores = this.computeIdfScores(webpages);
-        this.documentTfIdfVectors = this.computeAllDocumentTfIdfVectors(webpages);
+        this.computeTermCounts(webpages, threads);
+        this.computeAllDocumentTfIdfVectors(threads);
+    }
+
+    /**
+     * Restores an analyzer from an index built earlier, such as one saved in an
+     * IndexFile. Document frequencies, weights and norms are all read from the
+     * index's postings as they are needed, so this analyzer keeps nothing per
+     * document on the heap unless one of the getDocument... methods is called.
+     *
+     * @param corpusSize  The number of documents the IDF scores were computed over.
+     */
+    public TfIdfAnalyzer(DocumentRegistry registry, int corpusSize, InvertedIndex index) {
+        this.registry = registry;
+        this.docSize = corpusSize;
+        this.index = index;
+        this.restored = true;
     }
 
     // Note: this method, strictly speaking, doesn't need to exist. However,
     // we've included it so we can add some unit tests to help verify that your
     // constructor correctly initializes your fields.
     public IDictionary<URI, IDictionary<String, Double>> getDocumentTfIdfVectors() {
-        return this.documentTfIdfVectors;
+        DocumentVectors documents = this.ensureVectors();
+        IDictionary<URI, IDictionary<String, Double>> vectors = new ChainedHashDictionary<>();
+        for (int id = 0; id < documents.termIds.length; id++) {
+            if (documents.termIds[id] != null) {
+                vectors.put(this.registry.getUri(id), this.getDocumentTfIdfVector(id));
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * Returns the TF-IDF vector of the document with the given id, or null if that
+     * document was not given to the constructor.
+     *
+     * The dictionary is built each time this is called; use getDocumentTermIds and
+     * getDocumentWeights to read the vector without building anything.
+     */
+    public IDictionary<String, Double> getDocumentTfIdfVector(int docId) {
+        DocumentVectors documents = this.ensureVectors();
+        int[] termIds = documents.termIds[docId];
+        if (termIds == null) {
+            return null;
+        }
+        IDictionary<String, Double> vector = new ChainedHashDictionary<>();
+        for (int i = 0; i < termIds.length; i++) {
+            vector.put(documents.terms.getTerm(termIds[i]), documents.weights[docId][i]);
+        }
+        return vector;
+    }
+
+    /**
+     * Returns the term ids of the words in the TF-IDF vector of the document with
+     * the given id, in increasing order, or null if that document was not given to
+     * the constructor. See getTermDictionary().
+     *
+     * The returned array must not be modified.
+     */
+    public int[] getDocumentTermIds(int docId) {
+        return this.ensureVectors().termIds[docId];
+    }
+
+    /**
+     * Returns the weights in the TF-IDF vector of the document with the given id,
+     * in the same order as getDocumentTermIds(docId), or null if that document was
+     * not given to the constructor.
+     *
+     * The returned array must not be modified.
+     */
+    public double[] getDocumentWeights(int docId) {
+        return this.ensureVectors().weights[docId];
+    }
+
+    /**
+     * Returns the length of the TF-IDF vector of the document with the given id.
+     */
+    public double getDocumentNorm(int docId) {
+        if (this.restored) {
+            return this.index.getDocumentNorm(docId);
+        }
+        return this.docVectorNorms[docId];
+    }
+
+    /**
+     * Returns the dictionary of every word in the corpus. Each word's postings
+     * offset is its term id.
+     */
+    public synchronized TermDictionary getTermDictionary() {
+        if (this.termDictionary == null) {
+            TermCounter frequencies = new TermCounter();
+            for (KVPair<String, PostingList> entry : this.index) {
+                if (entry.getValue().size() > 0) {
+                    frequencies.add(entry.getKey(), entry.getValue().size());
+                }
+            }
+            this.termDictionary = buildTermDictionary(frequencies);
+        }
+        return this.termDictionary;
+    }
+
+    /**
+     * Returns an index holding every document's TF-IDF vector: each posting's
+     * weight is the weight of its term in its document's vector, and each
+     * document's norm is the length of its vector. If this analyzer was not
+     * restored from an index, the index is built the first time this is called.
+     */
+    @Override
+    public synchronized InvertedIndex getIndex() {
+        if (this.index == null) {
+            this.index = new MemoryInvertedIndex(this, this.registry.size());
+        }
+        return this.index;
+    }
+
+    /**
+     * Returns the number of documents the IDF scores were computed over.
+     */
+    public int getCorpusSize() {
+        return this.docSize;
+    }
+
+    /**
+     * Returns every document's TF-IDF vector, first rebuilding them from the
+     * index's postings if this analyzer was restored from an index and has not
+     * done so already.
+     */
+    private DocumentVectors ensureVectors() {
+        DocumentVectors vectors = this.vectors;
+        if (vectors == null) {
+            vectors = this.rebuildVectors();
+        }
+        return vectors;
+    }
+
+    /**
+     * Rebuilds every document's TF-IDF vector from the index's postings, unless
+     * another thread just did.
+     *
+     * Terms are visited in term id order, so every vector comes out sorted.
+     */
+    private synchronized DocumentVectors rebuildVectors() {
+        if (this.vectors != null) {
+            return this.vectors;
+        }
+        TermDictionary terms = this.getTermDictionary();
+        int documentCount = this.registry.size();
+        int[] sizes = new int[documentCount];
+        for (int termId = 0; termId < terms.size(); termId++) {
+            PostingList list = this.index.getPostings(terms.getTerm(termId));
+            for (int i = 0; i < list.size(); i++) {
+                sizes[list.getDocumentId(i)]++;
+            }
+        }
+
+        int[][] termIds = new int[documentCount][];
+        double[][] weights = new double[documentCount][];
+        for (int id = 0; id < documentCount; id++) {
+            termIds[id] = new int[sizes[id]];
+            weights[id] = new double[sizes[id]];
+            sizes[id] = 0;
+        }
+        for (int termId = 0; termId < terms.size(); termId++) {
+            PostingList list = this.index.getPostings(terms.getTerm(termId));
+            for (int i = 0; i < list.size(); i++) {
+                int id = list.getDocumentId(i);
+                termIds[id][sizes[id]] = termId;
+                weights[id][sizes[id]] = list.getWeight(i);
+                sizes[id]++;
+            }
+        }
+        this.vectors = new DocumentVectors(terms, termIds, weights);
+        return this.vectors;
+    }
+
+    /**
+     * Returns the number of documents containing the given word, or null if
+     * there are none.
+     */
+    private Double getDocumentFrequency(String word) {
+        if (this.restored) {
+            int size = this.index.getPostings(word).size();
+            return size == 0 ? null : (double) size;
+        }
+        int termId = this.termDictionary.find(word);
+        return termId == -1 ? null : (double) this.termDictionary.getDocumentFrequency(termId);
+    }
+
+    /**
+     * Builds a term dictionary out of a counter holding every word as many times
+     * as there are documents containing it.
+     */
+    private static TermDictionary buildTermDictionary(TermCounter frequencies) {
+        // Sort the term ids by term, so we can look up each term's frequency
+        Integer[] order = new Integer[frequencies.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> frequencies.getTerm(a).compareTo(frequencies.getTerm(b)));
+
+        String[] terms = new String[order.length];
+        int[] documentFrequencies = new int[order.length];
+        long[] postingsOffsets = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            terms[i] = frequencies.getTerm(order[i]);
+            documentFrequencies[i] = frequencies.getCount(order[i]);
+            postingsOffsets[i] = i;
+        }
+        return new TermDictionary(terms, documentFrequencies, postingsOffsets);
     }
 
     // Note: these private methods are suggestions or hints on how to structure your
@@ -56,25 +310,114 @@ public class TfIdfAnalyzer {
     // correct answer in an efficient manner.
 
     /**
-     * Return a dictionary mapping every single unique word found
-     * in every single document to their IDF score.
+     * Counts the words of every document, and builds the term dictionary.
+     *
+     * Each document is tokenized and counted exactly once, using one TermCounter
+     * per thread. Each thread also counts the document frequencies of the
+     * documents it was given in a TermCounter of its own, and those are added up
+     * once every thread is done. Since the dictionary is sorted by term, the
+     * order they are added up in does not matter.
      */
-    private IDictionary<String, Double> computeIdfScores(ISet<Webpage> pages) {
-        this.documentTfIdfVectors = new ChainedHashDictionary<URI, IDictionary<String, Double>>();
-        IDictionary<String, Double> tfScore = new ChainedHashDictionary<String, Double>();
-        IDictionary<String, Double> idfScore = new ChainedHashDictionary<String, Double>();
+    private void computeTermCounts(ISet<Webpage> pages, int threads) {
+        int documentCount = this.registry.size();
+        this.documentTerms = new String[documentCount][];
+        this.documentTermCounts = new int[documentCount][];
+        this.documentLengths = new int[documentCount];
+
+        Webpage[] pagesById = new Webpage[documentCount];
         for (Webpage page : pages) {
-            tfScore = computeTfScores(page.getWords());
-            for (KVPair<String, Double> word : tfScore) {
-                if (idfScore.containsKey(word.getKey())) {
-                    idfScore.put(word.getKey(), idfScore.get(word.getKey()) + 1.0);
-                } else {
-                    idfScore.put(word.getKey(), 1.0);
+            pagesById[this.registry.getId(page.getUri())] = page;
+        }
+
+        TermCounter[] frequencies = new TermCounter[threads];
+        AtomicInteger nextChunk = new AtomicInteger();
+        runInParallel(threads, thread -> {
+            TermCounter counter = new TermCounter();
+            frequencies[thread] = new TermCounter();
+            for (int start = nextChunk.getAndAdd(CHUNK_SIZE); start < documentCount;
+                     start = nextChunk.getAndAdd(CHUNK_SIZE)) {
+                int end = Math.min(start + CHUNK_SIZE, documentCount);
+                for (int id = start; id < end; id++) {
+                    if (pagesById[id] != null) {
+                        this.countTerms(id, pagesById[id], counter, frequencies[thread]);
+                    }
                 }
             }
-            this.documentTfIdfVectors.put(page.getUri(), tfScore);
+        });
+
+        for (int thread = 1; thread < threads; thread++) {
+            for (int i = 0; i < frequencies[thread].size(); i++) {
+                frequencies[0].add(frequencies[thread].getTerm(i), frequencies[thread].getCount(i));
+            }
+        }
+        this.termDictionary = buildTermDictionary(frequencies[0]);
+    }
+
+    private void countTerms(int id, Webpage page, TermCounter counter, TermCounter frequencies) {
+        counter.clear();
+        for (String word : page.getWords()) {
+            counter.add(word.toLowerCase());
+        }
+        String[] terms = new String[counter.size()];
+        int[] counts = new int[counter.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = counter.getTerm(i);
+            counts[i] = counter.getCount(i);
+            frequencies.add(terms[i]);
+        }
+        this.documentTerms[id] = terms;
+        this.documentTermCounts[id] = counts;
+        this.documentLengths[id] = counter.getTotal();
+    }
+
+    /**
+     * Runs the given task on the given number of threads at once, passing each a
+     * different number from 0 to threads - 1, and waits for all of them to finish.
+     * The calling thread is one of them.
+     *
+     * If any of them throws an exception, rethrows it once all of them are done.
+     */
+    private static void runInParallel(int threads, IntConsumer task) {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] others = new Thread[threads - 1];
+        for (int i = 0; i < others.length; i++) {
+            int thread = i + 1;
+            others[i] = new Thread(() -> {
+                try {
+                    task.accept(thread);
+                } catch (RuntimeException | Error ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            }, "tf-idf-builder-" + thread);
+            others[i].start();
+        }
+        try {
+            task.accept(0);
+        } catch (RuntimeException | Error ex) {
+            failure.compareAndSet(null, ex);
+        }
+
+        boolean interrupted = false;
+        for (Thread other : others) {
+            while (other.isAlive()) {
+                try {
+                    other.join();
+                } catch (InterruptedException ex) {
+                    // Keep waiting: the other threads are still writing our fields
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable ex = failure.get();
+        if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex != null) {
+            throw (Error) ex;
         }
-        return idfScore;
     }
 
     /**
@@ -86,36 +429,71 @@ public class TfIdfAnalyzer {
     private IDictionary<String, Double> computeTfScores(IList<String> words) {
         IDictionary<String, Double> tfScore = new ChainedHashDictionary<String, Double>();
         for (String word : words) {
-            if (tfScore.containsKey(word.toLowerCase())) {
-                tfScore.put(word.toLowerCase(), tfScore.get(word.toLowerCase()) + 1.0);
-            } else {
-                tfScore.put(word.toLowerCase(), 1.0);
-            }
+            String term = word.toLowerCase();
+            tfScore.put(term, tfScore.getOrDefault(term, 0.0) + 1.0);
         }
         return tfScore;
     }
 
     /**
-     * See spec for more details on what this method should do.
+     * Computes every document's TF-IDF vector from the counts computeTermCounts
+     * collected, using the given number of threads, then discards those counts.
+     *
+     * Each weight is computed once per distinct word of a document, and every
+     * document is computed by a single thread, so the vectors come out exactly
+     * the same whatever the number of threads.
      */
-    private IDictionary<URI, IDictionary<String, Double>> computeAllDocumentTfIdfVectors(ISet<Webpage> pages) {
-        // Hint: this method should use the idfScores field and
-        // call the computeTfScores(...) method.
-        IDictionary<URI, IDictionary<String, Double>> vectors = new ChainedHashDictionary<URI, 
-                                                                          IDictionary<String, Double>>();
-        this.docVectorNorms = new ChainedHashDictionary<URI, Double>();
-        for (Webpage page : pages) {
-            IDictionary<String, Double> scores = new ChainedHashDictionary<String, Double>();
-            for (String word : page.getWords()) {
-                
-               // a * ln(b) == ln(b ^ a)
-               scores.put(word.toLowerCase(), Math.log(Math.pow(docSize / idfScores.get(word.toLowerCase()), 
-                         documentTfIdfVectors.get(page.getUri()).get(word.toLowerCase()) / page.getWords().size())));
+    private void computeAllDocumentTfIdfVectors(int threads) {
+        int documentCount = this.registry.size();
+        int[][] termIds = new int[documentCount][];
+        double[][] weights = new double[documentCount][];
+        this.docVectorNorms = new double[documentCount];
+        AtomicInteger nextChunk = new AtomicInteger();
+        runInParallel(threads, thread -> {
+            for (int start = nextChunk.getAndAdd(CHUNK_SIZE); start < documentCount;
+                     start = nextChunk.getAndAdd(CHUNK_SIZE)) {
+                int end = Math.min(start + CHUNK_SIZE, documentCount);
+                for (int id = start; id < end; id++) {
+                    if (this.documentTerms[id] != null) {
+                        this.computeDocumentTfIdfVector(id, termIds, weights);
+                    }
+                }
             }
-            vectors.put(page.getUri(), scores);
-            this.docVectorNorms.put(page.getUri(), norm(scores));
+        });
+        this.vectors = new DocumentVectors(this.termDictionary, termIds, weights);
+        this.documentTerms = null;
+        this.documentTermCounts = null;
+        this.documentLengths = null;
+    }
+
+    private void computeDocumentTfIdfVector(int id, int[][] documentTermIds, double[][] documentWeights) {
+        String[] terms = this.documentTerms[id];
+        int[] counts = this.documentTermCounts[id];
+        double length = this.documentLengths[id];
+
+        // Sort the words by term id, by sorting each term id together with the
+        // index of its word
+        long[] order = new long[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            order[i] = ((long) this.termDictionary.find(terms[i]) << 32) | i;
         }
-        return vectors;
+        Arrays.sort(order);
+
+        int[] termIds = new int[terms.length];
+        double[] weights = new double[terms.length];
+        double squaredNorm = 0.0;
+        for (int j = 0; j < order.length; j++) {
+            int termId = (int) (order[j] >>> 32);
+            int i = (int) order[j];
+            double documentFrequency = this.termDictionary.getDocumentFrequency(termId);
+            termIds[j] = termId;
+            // a * ln(b) == ln(b ^ a)
+            weights[j] = Math.log(Math.pow(docSize / documentFrequency, counts[i] / length));
+            squaredNorm += Math.pow(weights[j], 2);
+        }
+        documentTermIds[id] = termIds;
+        documentWeights[id] = weights;
+        this.docVectorNorms[id] = Math.sqrt(squaredNorm);
     }
 
     /**
@@ -126,55 +504,141 @@ public class TfIdfAnalyzer {
      *               webpages given to the constructor.
      */
     public Double computeRelevance(IList<String> query, URI pageUri) {
-        // Note: The pseudocode we gave you is not very efficient. When implementing,
-        // this method, you should:
-        //
-        // 1. Figure out what information can be precomputed in your constructor.
-        //    Add a third field containing that information.
-        //
-        // 2. See if you can combine or merge one or more loops.
-        IDictionary<String, Double> docVector = documentTfIdfVectors.get(pageUri);
-        IDictionary<String, Double> queryVector = getQueryVector(query);
-        ISet<String> q = new ChainedHashSet<String>();
+        return this.computeRelevance(this.prepareQuery(query), pageUri);
+    }
+
+    /**
+     * Same as above, but for a query that has already been prepared by prepareQuery(...).
+     *
+     * When comparing one query against many documents, prepare it once and call this
+     * method instead, so the query's vector is not recomputed for every document.
+     */
+    public Double computeRelevance(PreparedQuery query, URI pageUri) {
+        return this.computeRelevance(query, this.registry.getId(pageUri));
+    }
+
+    /**
+     * Returns the cosine similarity between the TF-IDF vector for the given prepared
+     * query and the document with the given id.
+     *
+     * Precondition: the given id must belong to one of the webpages given to the constructor.
+     */
+    @Override
+    public Double computeRelevance(PreparedQuery query, int docId) {
         double num = 0.0;
-        for (String word : query) {
-            q.add(word);
-        }
-        double docScore;
-        double qScore;
-        for (String word : q) {
-            docScore = 0.0;
-            if (docVector.containsKey(word)) {
-                docScore = docVector.get(word);
-                qScore = queryVector.get(word);
-                num += docScore * qScore;
+        DocumentVectors vectors = this.vectors;
+        if (vectors != null) {
+            num = this.dotProduct(vectors, query, docId);
+        } else {
+            // Same order as dotProduct(...), so both give exactly the same sum
+            for (int j = 0; j < query.size(); j++) {
+                int i = query.getSortedIndex(j);
+                Double docScore = this.getDocumentWeight(query.getTerm(i), docId);
+                if (docScore != null) {
+                    num += docScore * query.getWeight(i);
+                }
             }
         }
-        double denom = this.docVectorNorms.get(pageUri) * norm(queryVector);
+        double denom = this.getDocumentNorm(docId) * query.getNorm();
         if (denom == 0) {
             return 0.0;
         }
         return (num / denom);
     }
-    
-    private Double norm(IDictionary<String, Double> vector) {
-        double norm = 0.0;
-        for (KVPair<String, Double> pair : vector) {
-            norm += Math.pow(pair.getValue(), 2);
+
+    /**
+     * Returns the dot product of the given query's vector and the vector of the
+     * document with the given id.
+     *
+     * The query's term ids are looked up and sorted only once per query, then
+     * merged with the document's sorted term ids, so this allocates nothing. The
+     * products are added up in term id order, which is also the words'
+     * alphabetical order.
+     */
+    private double dotProduct(DocumentVectors vectors, PreparedQuery query, int docId) {
+        int[] termIds = vectors.termIds[docId];
+        double[] weights = vectors.weights[docId];
+        PreparedQuery.TermIds queryTermIds = query.getTermIds(vectors.terms);
+
+        double sum = 0.0;
+        int position = 0;
+        for (int j = 0; j < queryTermIds.size() && position < termIds.length; j++) {
+            int termId = queryTermIds.getId(j);
+            while (position < termIds.length && termIds[position] < termId) {
+                position++;
+            }
+            if (position < termIds.length && termIds[position] == termId) {
+                sum += weights[position] * query.getWeight(queryTermIds.getIndex(j));
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the weight of the given word in the given document, read from the
+     * index's postings, or null if the document does not contain it.
+     */
+    private Double getDocumentWeight(String word, int docId) {
+        PostingList list = this.index.getPostings(word);
+        int position = list.advance(0, docId);
+        if (position < list.size() && list.getDocumentId(position) == docId) {
+            return list.getWeight(position);
         }
-        return Math.sqrt(norm);
+        return null;
     }
-    
-    private IDictionary<String, Double> getQueryVector(IList<String> query) {
-        IDictionary<String, Double> result = new ChainedHashDictionary<String, Double>();
+
+    /**
+     * Computes the TF-IDF vector of the given query.
+     *
+     * Subclasses may override this method to rewrite the query before it is compared
+     * against any documents.
+     */
+    @Override
+    public PreparedQuery prepareQuery(IList<String> query) {
         IDictionary<String, Double> tfScore = computeTfScores(query);
+        String[] terms = new String[query.size()];
+        double[] weights = new double[query.size()];
+        ISet<String> seen = new ChainedHashSet<String>();
+        int count = 0;
         for (String word : query) {
-            if (idfScores.containsKey(word) && tfScore.containsKey(word)) {
-                result.put(word, Math.pow(Math.log(docSize / idfScores.get(word)), tfScore.get(word) / query.size()));
+            if (seen.contains(word)) {
+                continue;
+            }
+            seen.add(word);
+            terms[count] = word;
+            Double documentFrequency = this.getDocumentFrequency(word);
+            if (documentFrequency != null && tfScore.containsKey(word)) {
+                weights[count] = Math.pow(Math.log(docSize / documentFrequency), tfScore.get(word) / query.size());
             } else {
-                result.put(word, 0.0);
+                weights[count] = 0.0;
             }
+            count++;
+        }
+        if (count < terms.length) {
+            terms = Arrays.copyOf(terms, count);
+            weights = Arrays.copyOf(weights, count);
+        }
+        return new PreparedQuery(terms, weights);
+    }
+
+    /**
+     * Every document's TF-IDF vector, indexed by document id (see DocumentRegistry).
+     *
+     * Vectors are stored sparsely: termIds[id] holds the term ids (see
+     * TermDictionary) of the words in that document in increasing order, and
+     * weights[id] holds the weight of each. Both are null for any id whose
+     * document was not given to the constructor. Nothing is modified once an
+     * instance has been created.
+     */
+    private static class DocumentVectors {
+        private final TermDictionary terms;
+        private final int[][] termIds;
+        private final double[][] weights;
+
+        public DocumentVectors(TermDictionary terms, int[][] termIds, double[][] weights) {
+            this.terms = terms;
+            this.termIds = termIds;
+            this.weights = weights;
         }
-        return result;
     }
 }
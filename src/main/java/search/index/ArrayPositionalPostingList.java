@@ -0,0 +1,78 @@
+package search.index;
+
+import java.util.Arrays;
+
+/**
+ * A positional posting list held in memory.
+ *
+ * The positions of all documents are stored back to back in a single array;
+ * positionStarts[i] is the index of the first position of the i-th posting.
+ */
+public class ArrayPositionalPostingList extends PositionalPostingList {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] documentIds;
+    private int[] positionStarts;
+    private int[] positions;
+    private int size;
+    private int positionCount;
+
+    public ArrayPositionalPostingList() {
+        this.documentIds = new int[INITIAL_CAPACITY];
+        this.positionStarts = new int[INITIAL_CAPACITY + 1];
+        this.positions = new int[INITIAL_CAPACITY];
+        this.size = 0;
+        this.positionCount = 0;
+    }
+
+    /**
+     * Records that the term appears at the given position of the given document.
+     * Documents must be added in increasing order of id, and the positions within
+     * each document in increasing order.
+     */
+    public void add(int documentId, int position) {
+        if (this.size == 0 || this.documentIds[this.size - 1] != documentId) {
+            if (this.size == this.documentIds.length) {
+                this.documentIds = Arrays.copyOf(this.documentIds, this.size * 2);
+                this.positionStarts = Arrays.copyOf(this.positionStarts, this.size * 2 + 1);
+            }
+            this.documentIds[this.size] = documentId;
+            this.size++;
+        }
+        if (this.positionCount == this.positions.length) {
+            this.positions = Arrays.copyOf(this.positions, this.positionCount * 2);
+        }
+        this.positions[this.positionCount] = position;
+        this.positionCount++;
+        this.positionStarts[this.size] = this.positionCount;
+    }
+
+    @Override
+    public int getDocumentId(int index) {
+        this.checkIndex(index);
+        return this.documentIds[index];
+    }
+
+    @Override
+    public int getFrequency(int index) {
+        this.checkIndex(index);
+        return this.positionStarts[index + 1] - this.positionStarts[index];
+    }
+
+    @Override
+    public int getPosition(int index, int i) {
+        this.checkIndex(index);
+        return this.positions[this.positionStarts[index] + i];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package search.index;
+
+/**
+ * A posting list held in memory, as two parallel arrays so walking the list
+ * does not allocate.
+ */
+public class ArrayPostingList extends PostingList {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] documentIds;
+    private double[] weights;
+    private int size;
+
+    public ArrayPostingList() {
+        this.documentIds = new int[INITIAL_CAPACITY];
+        this.weights = new double[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Appends a new posting to the end of this list. Postings must be added in
+     * increasing order of document id.
+     */
+    public void add(int documentId, double weight) {
+        if (this.size == this.documentIds.length) {
+            this.resize(this.size * 2);
+        }
+        this.documentIds[this.size] = documentId;
+        this.weights[this.size] = weight;
+        this.size++;
+    }
+
+    @Override
+    public int getDocumentId(int index) {
+        this.checkIndex(index);
+        return this.documentIds[index];
+    }
+
+    @Override
+    public double getWeight(int index) {
+        this.checkIndex(index);
+        return this.weights[index];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private void resize(int capacity) {
+        int[] newDocumentIds = new int[capacity];
+        double[] newWeights = new double[capacity];
+        for (int i = 0; i < this.size; i++) {
+            newDocumentIds[i] = this.documentIds[i];
+            newWeights[i] = this.weights[i];
+        }
+        this.documentIds = newDocumentIds;
+        this.weights = newWeights;
+    }
+}
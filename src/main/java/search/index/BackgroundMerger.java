@@ -0,0 +1,123 @@
+package search.index;
+
+import java.util.function.Consumer;
+
+/**
+ * Applies the changes buffered by an IndexWriter on a background thread,
+ * whenever a MergePolicy says they are worth applying.
+ *
+ * Merges copy postings no faster than a RateLimiter allows, so that they do
+ * not compete too much with queries for the disk and memory bandwidth. Every
+ * merged index is handed to a listener, which would typically publish a new
+ * SearchEngine built from it.
+ *
+ * The merger does not own its IndexWriter: close the writer once the merger
+ * has been stopped, to release the last index it merged.
+ */
+public class BackgroundMerger {
+    private IndexWriter writer;
+    private MergePolicy policy;
+    private RateLimiter limiter;
+    private long checkIntervalMillis;
+    private Consumer<IndexFile> listener;
+    private MergeMetrics metrics;
+
+    private Thread thread;
+    private volatile boolean running;
+    // Notified by stop(), to wake the background thread between checks
+    private final Object wakeLock = new Object();
+
+    /**
+     * @param limiter              Limits the number of postings copied per second,
+     *                             or null for no limit.
+     * @param checkIntervalMillis  How often to ask the policy whether to merge.
+     * @param listener             Called on the background thread with every merged index.
+     */
+    public BackgroundMerger(IndexWriter writer, MergePolicy policy, RateLimiter limiter,
+                            long checkIntervalMillis, Consumer<IndexFile> listener) {
+        this.writer = writer;
+        this.policy = policy;
+        this.limiter = limiter;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.listener = listener;
+        this.metrics = new MergeMetrics();
+    }
+
+    /**
+     * Starts merging in the background.
+     *
+     * @throws IllegalStateException  if this merger was already started
+     */
+    public synchronized void start() {
+        if (this.thread != null) {
+            throw new IllegalStateException("The merger was already started");
+        }
+        this.running = true;
+        this.thread = new Thread(this::run, "index-merger");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops merging, waiting for any merge in progress to finish and be handed to
+     * the listener. Changes that were not merged yet stay buffered in the writer.
+     *
+     * We never interrupt the background thread, since interrupting a merge that
+     * is writing or mapping its index would make it fail. The writer is left
+     * open, so it can still be refreshed by hand, and must be closed separately.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (this.thread == null) {
+            return;
+        }
+        synchronized (this.wakeLock) {
+            this.running = false;
+            this.wakeLock.notifyAll();
+        }
+        this.thread.join();
+        this.thread = null;
+    }
+
+    /**
+     * Returns what this merger has done so far.
+     */
+    public MergeMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    private void run() {
+        while (this.running) {
+            try {
+                synchronized (this.wakeLock) {
+                    if (this.running) {
+                        this.wakeLock.wait(this.checkIntervalMillis);
+                    }
+                }
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (!this.running) {
+                return;
+            }
+            long since = this.writer.getPendingSince();
+            if (since == -1) {
+                continue;
+            }
+            int documents = this.writer.getIndex().getRegistry().size();
+            long now = System.currentTimeMillis();
+            if (!this.policy.shouldMerge(this.writer.getPendingChangeCount(), documents, now - since)) {
+                continue;
+            }
+
+            try {
+                IndexFile merged = this.writer.refresh(this.limiter, this.metrics);
+                this.metrics.recordMerge(System.currentTimeMillis() - now);
+                this.listener.accept(merged);
+            } catch (RuntimeException ex) {
+                // This includes the writer being closed before we were stopped
+                this.metrics.recordFailure();
+                System.err.println("Background merge failed: " + ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package search.index;
+
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+
+import java.util.Iterator;
+
+/**
+ * A copy of another InvertedIndex with every posting list compressed; see
+ * CompressedPostingList for the format.
+ *
+ * Document ids are stored exactly, but weights are stored with the precision
+ * given by a PostingsFormat, so scores computed from this index differ slightly
+ * from the original's.
+ *
+ * Each call to getPostings returns a new list with its own decoding buffers,
+ * so lists from this index may be read from several threads as long as each
+ * thread calls getPostings itself.
+ */
+public class CompressedInvertedIndex implements InvertedIndex {
+    private static final PostingList EMPTY = new ArrayPostingList();
+
+    private IDictionary<String, CompressedPostingList.Data> postings;
+    private double[] documentNorms;
+    private int documentCount;
+
+    /**
+     * Compresses every posting list in the given index, storing weights as the
+     * given format says.
+     *
+     * @throws IllegalArgumentException  if the format does not compress postings
+     */
+    public CompressedInvertedIndex(InvertedIndex source, PostingsFormat format) {
+        this.postings = new ChainedHashDictionary<>();
+        for (KVPair<String, PostingList> entry : source) {
+            this.postings.put(entry.getKey(), new CompressedPostingList.Data(entry.getValue(), format));
+        }
+        this.documentCount = source.documentCount();
+        this.documentNorms = new double[this.documentCount];
+        for (int id = 0; id < this.documentCount; id++) {
+            this.documentNorms[id] = source.getDocumentNorm(id);
+        }
+    }
+
+    @Override
+    public PostingList getPostings(String term) {
+        CompressedPostingList.Data data = this.postings.getOrDefault(term, null);
+        return data == null ? EMPTY : new CompressedPostingList(data);
+    }
+
+    @Override
+    public double getDocumentNorm(int documentId) {
+        return this.documentNorms[documentId];
+    }
+
+    @Override
+    public void computeMaxImpacts(double[] documentFactors) {
+        for (KVPair<String, CompressedPostingList.Data> entry : this.postings) {
+            PostingList list = new CompressedPostingList(entry.getValue());
+            list.computeMaxImpact(documentFactors);
+            entry.getValue().setMaxImpact(list.getMaxImpact());
+        }
+    }
+
+    @Override
+    public Iterator<KVPair<String, PostingList>> iterator() {
+        Iterator<KVPair<String, CompressedPostingList.Data>> entries = this.postings.iterator();
+        return new Iterator<KVPair<String, PostingList>>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public KVPair<String, PostingList> next() {
+                KVPair<String, CompressedPostingList.Data> entry = entries.next();
+                return new KVPair<>(entry.getKey(), new CompressedPostingList(entry.getValue()));
+            }
+        };
+    }
+
+    @Override
+    public int termCount() {
+        return this.postings.size();
+    }
+
+    @Override
+    public int documentCount() {
+        return this.documentCount;
+    }
+
+    /**
+     * Returns the total number of postings in this index.
+     */
+    public long postingCount() {
+        long count = 0;
+        for (KVPair<String, CompressedPostingList.Data> entry : this.postings) {
+            count += entry.getValue().size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes used to store every posting list, not counting
+     * the terms themselves or object headers.
+     */
+    public long postingBytes() {
+        long bytes = 0;
+        for (KVPair<String, CompressedPostingList.Data> entry : this.postings) {
+            bytes += entry.getValue().bytesUsed();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,242 @@
+package search.index;
+
+/**
+ * A posting list compressed in blocks of BLOCK_SIZE postings.
+ *
+ * Within a block, the first document id is stored as is and every other id as
+ * the gap from the previous one, each using as few bytes as possible: every
+ * byte holds 7 bits of the number, and its high bit is set if more bytes follow.
+ * Weights are stored as floats, or quantized to 16 or 8 bits depending on the
+ * PostingsFormat. Quantized weights are multiples of a per-list scale: the
+ * list's largest weight divided by the largest quantized value.
+ *
+ * Postings are decoded one block at a time into buffers owned by this object,
+ * so walking the list does not allocate. Since those buffers are mutable, a
+ * CompressedPostingList must only be used by one thread at a time; use
+ * CompressedInvertedIndex.getPostings to get a separate list for each thread.
+ */
+public class CompressedPostingList extends PostingList {
+    public static final int BLOCK_SIZE = 128;
+
+    private Data data;
+
+    // The block currently held in the buffers below, or -1 if none
+    private int decodedBlock;
+    private int[] documentIds;
+    private double[] weights;
+
+    public CompressedPostingList(Data data) {
+        this.data = data;
+        this.decodedBlock = -1;
+        this.documentIds = new int[BLOCK_SIZE];
+        this.weights = new double[BLOCK_SIZE];
+        this.setMaxImpact(data.maxImpact);
+    }
+
+    @Override
+    public int getDocumentId(int index) {
+        this.decodeBlockOf(index);
+        return this.documentIds[index % BLOCK_SIZE];
+    }
+
+    @Override
+    public double getWeight(int index) {
+        this.decodeBlockOf(index);
+        return this.weights[index % BLOCK_SIZE];
+    }
+
+    @Override
+    public int size() {
+        return this.data.size;
+    }
+
+    /**
+     * Same as PostingList.advance, except that we first use the last id of every
+     * block to find the block the target must be in, so blocks we skip over are
+     * never decoded.
+     */
+    @Override
+    public int advance(int from, int target) {
+        if (from >= this.data.size) {
+            return from;
+        }
+        int block = from / BLOCK_SIZE;
+        if (this.data.blockLastIds[block] < target) {
+            // Invariant: blockLastIds[low] < target, and every block from 'high'
+            // on ends with an id of at least target
+            int low = block;
+            int high = this.data.blockLastIds.length;
+            while (high - low > 1) {
+                int mid = (low + high) >>> 1;
+                if (this.data.blockLastIds[mid] < target) {
+                    low = mid;
+                } else {
+                    high = mid;
+                }
+            }
+            if (high == this.data.blockLastIds.length) {
+                return this.data.size;
+            }
+            from = high * BLOCK_SIZE;
+        }
+
+        this.decodeBlockOf(from);
+        int end = Math.min((from / BLOCK_SIZE + 1) * BLOCK_SIZE, this.data.size);
+        while (from < end && this.documentIds[from % BLOCK_SIZE] < target) {
+            from++;
+        }
+        return from;
+    }
+
+    private void decodeBlockOf(int index) {
+        if (index < 0 || index >= this.data.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        int block = index / BLOCK_SIZE;
+        if (block == this.decodedBlock) {
+            return;
+        }
+
+        byte[] bytes = this.data.documentIdBytes;
+        int position = this.data.blockOffsets[block];
+        int start = block * BLOCK_SIZE;
+        int count = Math.min(BLOCK_SIZE, this.data.size - start);
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position];
+                position++;
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous = i == 0 ? value : previous + value;
+            this.documentIds[i] = previous;
+        }
+        this.decodeWeights(start, count);
+        this.decodedBlock = block;
+    }
+
+    private void decodeWeights(int start, int count) {
+        byte[] bytes = this.data.weightBytes;
+        switch (this.data.format) {
+            case COMPRESSED_FLOAT:
+                for (int i = 0, p = 4 * start; i < count; i++, p += 4) {
+                    int bits = (bytes[p] & 0xFF) << 24 | (bytes[p + 1] & 0xFF) << 16
+                            | (bytes[p + 2] & 0xFF) << 8 | (bytes[p + 3] & 0xFF);
+                    this.weights[i] = Float.intBitsToFloat(bits);
+                }
+                break;
+            case COMPRESSED_16_BIT:
+                for (int i = 0, p = 2 * start; i < count; i++, p += 2) {
+                    int quantized = (bytes[p] & 0xFF) << 8 | (bytes[p + 1] & 0xFF);
+                    this.weights[i] = quantized * this.data.weightScale;
+                }
+                break;
+            case COMPRESSED_8_BIT:
+                for (int i = 0; i < count; i++) {
+                    this.weights[i] = (bytes[start + i] & 0xFF) * this.data.weightScale;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown weight format " + this.data.format);
+        }
+    }
+
+    /**
+     * The compressed postings of a term, shared by every CompressedPostingList
+     * reading them.
+     */
+    public static class Data {
+        private byte[] documentIdBytes;
+        private int[] blockOffsets;
+        private int[] blockLastIds;
+        private PostingsFormat format;
+        private byte[] weightBytes;
+        private double weightScale;
+        private int size;
+        private double maxImpact;
+
+        /**
+         * Compresses the given postings, storing weights as the given format says.
+         *
+         * @throws IllegalArgumentException  if the format does not compress postings
+         */
+        public Data(PostingList list, PostingsFormat format) {
+            if (format.getWeightBytes() == 0) {
+                throw new IllegalArgumentException("Not a compressed format: " + format);
+            }
+            this.format = format;
+            this.size = list.size();
+            int numBlocks = (this.size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            this.blockOffsets = new int[numBlocks];
+            this.blockLastIds = new int[numBlocks];
+            this.weightBytes = new byte[format.getWeightBytes() * this.size];
+
+            double maxWeight = 0.0;
+            for (int i = 0; i < this.size; i++) {
+                maxWeight = Math.max(maxWeight, list.getWeight(i));
+            }
+            // Only used by quantized formats
+            long maxQuantized = (1L << (8 * format.getWeightBytes())) - 1;
+            this.weightScale = maxWeight / maxQuantized;
+
+            // At most 5 bytes per id
+            byte[] bytes = new byte[5 * this.size];
+            int position = 0;
+            for (int i = 0; i < this.size; i++) {
+                int id = list.getDocumentId(i);
+                int value = id;
+                if (i % BLOCK_SIZE == 0) {
+                    this.blockOffsets[i / BLOCK_SIZE] = position;
+                } else {
+                    value = id - list.getDocumentId(i - 1);
+                }
+                while ((value & ~0x7F) != 0) {
+                    bytes[position] = (byte) ((value & 0x7F) | 0x80);
+                    position++;
+                    value >>>= 7;
+                }
+                bytes[position] = (byte) value;
+                position++;
+                this.blockLastIds[i / BLOCK_SIZE] = id;
+
+                long stored;
+                if (format == PostingsFormat.COMPRESSED_FLOAT) {
+                    stored = Float.floatToIntBits((float) list.getWeight(i));
+                } else {
+                    stored = maxWeight == 0.0 ? 0 : Math.round(list.getWeight(i) / maxWeight * maxQuantized);
+                }
+                // Big-endian, using as many bytes as the format needs
+                int width = format.getWeightBytes();
+                for (int b = 0; b < width; b++) {
+                    this.weightBytes[width * i + b] = (byte) (stored >>> (8 * (width - 1 - b)));
+                }
+            }
+            this.documentIdBytes = new byte[position];
+            System.arraycopy(bytes, 0, this.documentIdBytes, 0, position);
+            this.maxImpact = 0.0;
+        }
+
+        /**
+         * Returns the number of bytes used to store these postings, not counting
+         * object headers.
+         */
+        public long bytesUsed() {
+            return this.documentIdBytes.length
+                    + (long) Integer.BYTES * (this.blockOffsets.length + this.blockLastIds.length)
+                    + this.weightBytes.length
+                    + Double.BYTES;
+        }
+
+        public int size() {
+            return this.size;
+        }
+
+        void setMaxImpact(double maxImpact) {
+            this.maxImpact = maxImpact;
+        }
+    }
+}
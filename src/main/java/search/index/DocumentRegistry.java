@@ -0,0 +1,112 @@
+package search.index;
+
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.ISet;
+import misc.exceptions.NoSuchKeyException;
+import search.models.Webpage;
+import search.models.WebpageSummary;
+
+import java.net.URI;
+
+/**
+ * Assigns every document in the corpus a dense integer id, starting from 0.
+ *
+ * The analyzers store all of their per-document state in arrays indexed by these
+ * ids, so the only place we ever need to hash a URI is when translating a URI
+ * given to us by the outside world into an id (or back again when rendering results).
+ */
+public class DocumentRegistry {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private IDictionary<URI, Integer> ids;
+    private WebpageSummary[] summaries;
+    private int size;
+
+    /**
+     * Constructs an empty registry.
+     */
+    public DocumentRegistry() {
+        this.ids = new ChainedHashDictionary<>();
+        this.summaries = new WebpageSummary[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Constructs a registry containing every given webpage. Ids are assigned in
+     * the order the set iterates over the pages.
+     */
+    public DocumentRegistry(ISet<Webpage> webpages) {
+        this();
+        for (Webpage page : webpages) {
+            this.register(page.getSummary());
+        }
+    }
+
+    /**
+     * Assigns the next free id to the page described by the given summary and
+     * returns it. If the page was already registered, returns its existing id.
+     */
+    public int register(WebpageSummary summary) {
+        Integer existing = this.ids.getOrDefault(summary.getUri(), null);
+        if (existing != null) {
+            return existing;
+        }
+        if (this.size == this.summaries.length) {
+            WebpageSummary[] newSummaries = new WebpageSummary[this.size * 2];
+            for (int i = 0; i < this.size; i++) {
+                newSummaries[i] = this.summaries[i];
+            }
+            this.summaries = newSummaries;
+        }
+        int id = this.size;
+        this.summaries[id] = summary;
+        this.ids.put(summary.getUri(), id);
+        this.size++;
+        return id;
+    }
+
+    /**
+     * Returns the id of the page with the given URI.
+     *
+     * @throws NoSuchKeyException if no page with that URI was registered
+     */
+    public int getId(URI uri) {
+        return this.ids.get(uri);
+    }
+
+    /**
+     * Returns 'true' if a page with the given URI was registered.
+     */
+    public boolean contains(URI uri) {
+        return this.ids.containsKey(uri);
+    }
+
+    /**
+     * Returns the URI of the page with the given id.
+     *
+     * @throws IndexOutOfBoundsException if id < 0 or id >= this.size()
+     */
+    public URI getUri(int id) {
+        return this.getSummary(id).getUri();
+    }
+
+    /**
+     * Returns the summary of the page with the given id.
+     *
+     * @throws IndexOutOfBoundsException if id < 0 or id >= this.size()
+     */
+    public WebpageSummary getSummary(int id) {
+        if (id < 0 || id >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.summaries[id];
+    }
+
+    /**
+     * Returns the number of registered pages. Every id is in the range [0, size).
+     */
+    public int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,128 @@
+package search.index;
+
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+
+/**
+ * A second copy of an InvertedIndex's postings in which each term's postings
+ * are sorted by decreasing impact instead of by document id.
+ *
+ * The impact of a posting is the most it can add to its document's score for
+ * a query with a weight of 1: the term's weight in the document times the
+ * document's static-rank/norm factor. Walking the postings in this order
+ * finds the best documents first, so a query can often stop after reading
+ * only a small prefix of each list.
+ */
+public class ImpactOrderedIndex {
+    private static final ImpactList EMPTY = new ImpactList(new int[0], new double[0]);
+
+    private IDictionary<String, ImpactList> postings;
+
+    /**
+     * Builds impact-ordered copies of every posting list in the given index.
+     *
+     * @param documentFactors  The static-rank/norm factor of each document, indexed by id.
+     */
+    public ImpactOrderedIndex(InvertedIndex index, double[] documentFactors) {
+        this.postings = new ChainedHashDictionary<>();
+        for (KVPair<String, PostingList> entry : index) {
+            PostingList list = entry.getValue();
+            int[] order = new int[list.size()];
+            double[] impacts = new double[list.size()];
+            for (int i = 0; i < list.size(); i++) {
+                order[i] = i;
+                impacts[i] = list.getWeight(i) * documentFactors[list.getDocumentId(i)];
+            }
+
+            // Postings are already in increasing id order, and the sort is stable,
+            // so equal impacts stay ordered by id.
+            sortByDecreasingImpact(order, impacts);
+
+            int[] sortedIds = new int[order.length];
+            double[] sortedImpacts = new double[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedIds[i] = list.getDocumentId(order[i]);
+                sortedImpacts[i] = impacts[order[i]];
+            }
+            this.postings.put(entry.getKey(), new ImpactList(sortedIds, sortedImpacts));
+        }
+    }
+
+    /**
+     * Sorts the given indexes by decreasing impacts[index], keeping indexes with
+     * equal impacts in the order they were given in. This is a merge sort over
+     * plain ints, so it never boxes an index or calls a comparator object.
+     */
+    static void sortByDecreasingImpact(int[] order, double[] impacts) {
+        int[] from = order;
+        int[] to = new int[order.length];
+        for (int width = 1; width < order.length; width *= 2) {
+            for (int start = 0; start < order.length; start += 2 * width) {
+                int middle = Math.min(start + width, order.length);
+                int end = Math.min(start + 2 * width, order.length);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    // Taking from the left on ties is what keeps the sort stable
+                    if (right >= end || (left < middle && impacts[from[left]] >= impacts[from[right]])) {
+                        to[i] = from[left];
+                        left++;
+                    } else {
+                        to[i] = from[right];
+                        right++;
+                    }
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != order) {
+            System.arraycopy(from, 0, order, 0, order.length);
+        }
+    }
+
+    /**
+     * Returns the impact-ordered postings of the given term, or an empty list if
+     * no document contains it.
+     */
+    public ImpactList getPostings(String term) {
+        return this.postings.getOrDefault(term, EMPTY);
+    }
+
+    /**
+     * The postings of a single term, in order of decreasing impact.
+     */
+    public static class ImpactList {
+        private int[] documentIds;
+        private double[] impacts;
+
+        public ImpactList(int[] documentIds, double[] impacts) {
+            this.documentIds = documentIds;
+            this.impacts = impacts;
+        }
+
+        /**
+         * Returns the id of the document in the posting at the given index.
+         */
+        public int getDocumentId(int index) {
+            return this.documentIds[index];
+        }
+
+        /**
+         * Returns the impact of the posting at the given index. Impacts never
+         * increase as the index increases.
+         */
+        public double getImpact(int index) {
+            return this.impacts[index];
+        }
+
+        /**
+         * Returns the number of postings in this list.
+         */
+        public int size() {
+            return this.documentIds.length;
+        }
+    }
+}
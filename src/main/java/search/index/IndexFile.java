@@ -0,0 +1,524 @@
+package search.index;
+
+import datastructures.concrete.KVPair;
+import search.misc.exceptions.IndexFormatException;
+import search.models.WebpageSummary;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Everything the search engine computes while indexing a corpus, in a form that
+ * can be saved to disk once and loaded back at startup instead of reindexing.
+ *
+ * The file is laid out so it can be memory-mapped and used in place: every
+ * posting list is a run of fixed-width values, and terms are found by binary
+ * searching a sorted table of fixed-size records. See MappedInvertedIndex.
+ *
+ * The file starts with a fixed-size header holding a magic number, the format
+ * version, some counts, and the offset and CRC-32 of each of these sections:
+ *
+ *  1. SUMMARIES: the URI, title and blurb of every document, in id order.
+ *  2. DOCUMENTS: the page rank of every document, then the length of its
+ *     TF-IDF vector, as doubles in id order.
+ *  3. POSTINGS: for each term, its document ids as ints, then its weights as doubles.
+ *  4. POSITIONS: for each term, see MappedPositionalPostingList.
+ *  5. NAMES: the UTF-8 encoding of every term, back to back.
+ *  6. TERMS: the MappedTermTable of the postings.
+ *  7. POSITIONAL_TERMS: the MappedTermTable of the positions.
+ *
+ * The header ends with a CRC-32 of itself. Every checksum is verified when the
+ * file is opened, so a truncated or corrupted file is detected instead of
+ * silently giving wrong results.
+ *
+ * An index read from a file keeps it mapped until every reference to it is
+ * closed. See retain() and close().
+ */
+public class IndexFile implements AutoCloseable {
+    // "NOOD", in ASCII
+    private static final int MAGIC = 0x4E4F4F44;
+
+    // Increment this whenever the format changes, so old files are rebuilt
+    // instead of being misread.
+    public static final int VERSION = 2;
+
+    private static final int SUMMARIES = 0;
+    private static final int DOCUMENTS = 1;
+    private static final int POSTINGS = 2;
+    private static final int POSITIONS = 3;
+    private static final int NAMES = 4;
+    private static final int TERMS = 5;
+    private static final int POSITIONAL_TERMS = 6;
+    private static final int NUM_SECTIONS = 7;
+
+    // magic, version, four counts, each section's offset and checksum, the
+    // file's length, and the header's own checksum
+    private static final int HEADER_SIZE =
+            6 * Integer.BYTES + 2 * NUM_SECTIONS * Long.BYTES + Long.BYTES + Long.BYTES;
+
+    // No title, blurb or URI comes anywhere near this long. Checking the length
+    // before allocating means a corrupted length fails cleanly instead of running
+    // out of memory.
+    private static final int MAX_STRING_LENGTH = 1 << 24;
+
+    private DocumentRegistry registry;
+    private int corpusSize;
+    private InvertedIndex invertedIndex;
+    private PositionalIndex positionalIndex;
+    private double[] pageRanks;
+
+    // The file this index was read from, or null if it lives on the heap
+    private MappedFile file;
+    // Starts at 1 for whoever created this index. Once it drops to 0 the file is
+    // closed, and it never goes back up.
+    private AtomicInteger references;
+
+    /**
+     * @param corpusSize  The number of documents the IDF scores were computed over.
+     * @param pageRanks   The page rank of every document, indexed by id.
+     */
+    public IndexFile(DocumentRegistry registry, int corpusSize, InvertedIndex invertedIndex,
+                     PositionalIndex positionalIndex, double[] pageRanks) {
+        this(registry, corpusSize, invertedIndex, positionalIndex, pageRanks, null);
+    }
+
+    private IndexFile(DocumentRegistry registry, int corpusSize, InvertedIndex invertedIndex,
+                      PositionalIndex positionalIndex, double[] pageRanks, MappedFile file) {
+        this.registry = registry;
+        this.corpusSize = corpusSize;
+        this.invertedIndex = invertedIndex;
+        this.positionalIndex = positionalIndex;
+        this.pageRanks = pageRanks;
+        this.file = file;
+        this.references = new AtomicInteger(1);
+    }
+
+    public DocumentRegistry getRegistry() {
+        return this.registry;
+    }
+
+    public int getCorpusSize() {
+        return this.corpusSize;
+    }
+
+    public InvertedIndex getInvertedIndex() {
+        return this.invertedIndex;
+    }
+
+    public PositionalIndex getPositionalIndex() {
+        return this.positionalIndex;
+    }
+
+    public double[] getPageRanks() {
+        return this.pageRanks;
+    }
+
+    /**
+     * Adds a reference to this index, which keeps it open until close() is called
+     * once more than retain() was. Returns this index.
+     *
+     * @throws IllegalStateException  if this index was already closed
+     */
+    public IndexFile retain() {
+        while (true) {
+            int count = this.references.get();
+            if (count <= 0) {
+                throw new IllegalStateException("The index was already closed");
+            }
+            if (this.references.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Drops a reference to this index. Once the last one is dropped, an index read
+     * from a file releases its mapping, and must not be used anymore. Closing an
+     * index that lives on the heap has no other effect.
+     */
+    @Override
+    public void close() {
+        if (this.references.decrementAndGet() == 0 && this.file != null) {
+            this.file.close();
+        }
+    }
+
+    /**
+     * Writes this index to the given path, replacing any existing file.
+     *
+     * We write to a new temporary file in the same folder first and then rename
+     * it, so a crash while writing never leaves a half-written index behind, and
+     * several writers never write to the same file. The temporary file is deleted
+     * if anything goes wrong before it is renamed.
+     */
+    public void write(Path path) throws IOException {
+        byte[][] terms = sortedNames(this.invertedIndex);
+        byte[][] positionalTerms = sortedNames(this.positionalIndex);
+
+        Path folder = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(folder, path.getFileName().toString(), ".tmp");
+        boolean moved = false;
+        try {
+            this.write(temp, terms, positionalTerms);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Writes this index to the given temporary file, given the sorted names of
+     * its terms.
+     */
+    private void write(Path temp, byte[][] terms, byte[][] positionalTerms) throws IOException {
+        int documentCount = this.registry.size();
+        long[] offsets = new long[NUM_SECTIONS];
+        long[] checksums = new long[NUM_SECTIONS];
+        long[] postingsOffsets = new long[terms.length];
+        long[] positionsOffsets = new long[positionalTerms.length];
+        long[] nameOffsets = new long[terms.length + positionalTerms.length];
+        long end;
+
+        try (SectionWriter out = new SectionWriter(Files.newOutputStream(temp))) {
+            // Reserve space for the header, which we fill in once we know every offset
+            out.write(new byte[HEADER_SIZE]);
+
+            offsets[SUMMARIES] = out.startSection();
+            for (int id = 0; id < documentCount; id++) {
+                WebpageSummary summary = this.registry.getSummary(id);
+                out.writeString(summary.getUri().toString());
+                out.writeString(summary.getTitle());
+                out.writeString(summary.getBlurb());
+            }
+            checksums[SUMMARIES] = out.getChecksum();
+
+            offsets[DOCUMENTS] = out.startSection();
+            for (int id = 0; id < documentCount; id++) {
+                out.writeDouble(this.pageRanks[id]);
+            }
+            for (int id = 0; id < documentCount; id++) {
+                out.writeDouble(this.invertedIndex.getDocumentNorm(id));
+            }
+            checksums[DOCUMENTS] = out.getChecksum();
+
+            offsets[POSTINGS] = out.startSection();
+            for (int t = 0; t < terms.length; t++) {
+                postingsOffsets[t] = out.getPosition();
+                PostingList list = this.invertedIndex.getPostings(decode(terms[t]));
+                for (int i = 0; i < list.size(); i++) {
+                    out.writeInt(list.getDocumentId(i));
+                }
+                for (int i = 0; i < list.size(); i++) {
+                    out.writeDouble(list.getWeight(i));
+                }
+            }
+            checksums[POSTINGS] = out.getChecksum();
+
+            offsets[POSITIONS] = out.startSection();
+            for (int t = 0; t < positionalTerms.length; t++) {
+                positionsOffsets[t] = out.getPosition();
+                PositionalPostingList list = this.positionalIndex.getPostings(decode(positionalTerms[t]));
+                for (int i = 0; i < list.size(); i++) {
+                    out.writeInt(list.getDocumentId(i));
+                }
+                int start = 0;
+                out.writeInt(start);
+                for (int i = 0; i < list.size(); i++) {
+                    start += list.getFrequency(i);
+                    out.writeInt(start);
+                }
+                for (int i = 0; i < list.size(); i++) {
+                    for (int j = 0; j < list.getFrequency(i); j++) {
+                        out.writeInt(list.getPosition(i, j));
+                    }
+                }
+            }
+            checksums[POSITIONS] = out.getChecksum();
+
+            offsets[NAMES] = out.startSection();
+            for (int t = 0; t < terms.length; t++) {
+                nameOffsets[t] = out.getPosition();
+                out.write(terms[t]);
+            }
+            for (int t = 0; t < positionalTerms.length; t++) {
+                nameOffsets[terms.length + t] = out.getPosition();
+                out.write(positionalTerms[t]);
+            }
+            checksums[NAMES] = out.getChecksum();
+
+            offsets[TERMS] = out.startSection();
+            for (int t = 0; t < terms.length; t++) {
+                out.writeLong(nameOffsets[t]);
+                out.writeInt(terms[t].length);
+                out.writeLong(postingsOffsets[t]);
+                out.writeInt(this.invertedIndex.getPostings(decode(terms[t])).size());
+            }
+            checksums[TERMS] = out.getChecksum();
+
+            offsets[POSITIONAL_TERMS] = out.startSection();
+            for (int t = 0; t < positionalTerms.length; t++) {
+                out.writeLong(nameOffsets[terms.length + t]);
+                out.writeInt(positionalTerms[t].length);
+                out.writeLong(positionsOffsets[t]);
+                out.writeInt(this.positionalIndex.getPostings(decode(positionalTerms[t])).size());
+            }
+            checksums[POSITIONAL_TERMS] = out.getChecksum();
+            end = out.getPosition();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(documentCount);
+        header.putInt(this.corpusSize);
+        header.putInt(terms.length);
+        header.putInt(positionalTerms.length);
+        for (int section = 0; section < NUM_SECTIONS; section++) {
+            header.putLong(offsets[section]);
+            header.putLong(checksums[section]);
+        }
+        header.putLong(end);
+        CRC32 headerChecksum = new CRC32();
+        headerChecksum.update(header.array(), 0, header.position());
+        header.putLong(headerChecksum.getValue());
+        header.flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Opens an index previously saved by write(...), by mapping it into memory.
+     *
+     * Only the document summaries and page ranks are copied onto the heap; the
+     * returned index's postings, positions and norms are read from the mapping
+     * as they are needed.
+     *
+     * @throws IOException           if the file could not be read
+     * @throws IndexFormatException  if the file is not an index, was written by a
+     *                               different version, or is corrupted
+     */
+    public static IndexFile read(Path path) throws IOException {
+        return read(new MappedFile(path), path);
+    }
+
+    /**
+     * Same as above, mapping the file in regions of 2^regionBits bytes. Only
+     * tests need to pick a region size.
+     */
+    static IndexFile read(Path path, int regionBits) throws IOException {
+        return read(new MappedFile(path, regionBits), path);
+    }
+
+    private static IndexFile read(MappedFile file, Path path) {
+        if (file.size() < HEADER_SIZE || file.getInt(0) != MAGIC) {
+            throw new IndexFormatException("Not an index file: " + path);
+        }
+        int version = file.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IndexFormatException(String.format(
+                    "Index file '%s' has version %d, expected %d", path, version, VERSION));
+        }
+        CRC32 checksum = new CRC32();
+        file.updateChecksum(checksum, 0, HEADER_SIZE - Long.BYTES);
+        if (checksum.getValue() != file.getLong(HEADER_SIZE - Long.BYTES)) {
+            throw new IndexFormatException("Checksum mismatch in header of " + path);
+        }
+
+        long position = 2 * Integer.BYTES;
+        int documentCount = file.getInt(position);
+        int corpusSize = file.getInt(position + Integer.BYTES);
+        int termCount = file.getInt(position + 2 * Integer.BYTES);
+        int positionalTermCount = file.getInt(position + 3 * Integer.BYTES);
+        position += 4 * Integer.BYTES;
+
+        long[] offsets = new long[NUM_SECTIONS + 1];
+        long[] checksums = new long[NUM_SECTIONS];
+        for (int section = 0; section < NUM_SECTIONS; section++) {
+            offsets[section] = file.getLong(position);
+            checksums[section] = file.getLong(position + Long.BYTES);
+            position += 2 * Long.BYTES;
+        }
+        offsets[NUM_SECTIONS] = file.getLong(position);
+        if (offsets[NUM_SECTIONS] != file.size()) {
+            throw new IndexFormatException("Index file is truncated: " + path);
+        }
+        for (int section = 0; section < NUM_SECTIONS; section++) {
+            if (offsets[section] < HEADER_SIZE || offsets[section] > offsets[section + 1]) {
+                throw new IndexFormatException("Invalid offset of section " + section + " in " + path);
+            }
+            checksum.reset();
+            file.updateChecksum(checksum, offsets[section], offsets[section + 1]);
+            if (checksum.getValue() != checksums[section]) {
+                throw new IndexFormatException("Checksum mismatch in section " + section + " of " + path);
+            }
+        }
+
+        DocumentRegistry registry = new DocumentRegistry();
+        position = offsets[SUMMARIES];
+        for (int id = 0; id < documentCount; id++) {
+            String[] fields = new String[3];
+            for (int i = 0; i < fields.length; i++) {
+                int length = file.getInt(position);
+                if (length < 0 || length > MAX_STRING_LENGTH) {
+                    throw new IndexFormatException("Invalid string length in " + path);
+                }
+                byte[] bytes = new byte[length];
+                file.getBytes(position + Integer.BYTES, bytes, 0, length);
+                fields[i] = new String(bytes, StandardCharsets.UTF_8);
+                position += Integer.BYTES + length;
+            }
+            try {
+                registry.register(new WebpageSummary(new URI(fields[0]), fields[1], fields[2]));
+            } catch (URISyntaxException ex) {
+                throw new IndexFormatException("Malformed URI in index: " + fields[0], ex);
+            }
+        }
+
+        double[] pageRanks = new double[documentCount];
+        for (int id = 0; id < documentCount; id++) {
+            pageRanks[id] = file.getDouble(offsets[DOCUMENTS] + (long) Double.BYTES * id);
+        }
+        long normsOffset = offsets[DOCUMENTS] + (long) Double.BYTES * documentCount;
+
+        InvertedIndex invertedIndex = new MappedInvertedIndex(
+                file, new MappedTermTable(file, offsets[TERMS], termCount), normsOffset, documentCount);
+        PositionalIndex positionalIndex = new MappedPositionalIndex(
+                file, new MappedTermTable(file, offsets[POSITIONAL_TERMS], positionalTermCount));
+        return new IndexFile(registry, corpusSize, invertedIndex, positionalIndex, pageRanks, file);
+    }
+
+    /**
+     * Returns the UTF-8 encoding of every term of the given index, sorted the
+     * way MappedTermTable expects.
+     */
+    static <T> byte[][] sortedNames(Iterable<KVPair<String, T>> index) {
+        int count = 0;
+        for (KVPair<String, T> ignored : index) {
+            count++;
+        }
+        byte[][] names = new byte[count][];
+        int i = 0;
+        for (KVPair<String, T> entry : index) {
+            names[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            i++;
+        }
+        Arrays.sort(names, IndexFile::compareUnsigned);
+        return names;
+    }
+
+    /**
+     * Compares two UTF-8 encoded terms the way MappedTermTable sorts them.
+     */
+    static int compareUnsigned(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int cmp = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    static String decode(byte[] name) {
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A buffered stream of big-endian values (the same byte order ByteBuffer uses)
+     * that keeps track of its position in the file and of a running checksum of
+     * everything written since the current section started.
+     */
+    static class SectionWriter extends FilterOutputStream {
+        private CRC32 checksum;
+        private long position;
+        private byte[] scratch;
+
+        public SectionWriter(OutputStream out) {
+            super(new BufferedOutputStream(out));
+            this.checksum = new CRC32();
+            this.position = 0;
+            this.scratch = new byte[Long.BYTES];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.checksum.update(b);
+            this.position++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            this.out.write(bytes, offset, length);
+            this.checksum.update(bytes, offset, length);
+            this.position += length;
+        }
+
+        public void writeInt(int value) throws IOException {
+            for (int i = 0; i < Integer.BYTES; i++) {
+                this.scratch[i] = (byte) (value >>> (8 * (Integer.BYTES - 1 - i)));
+            }
+            this.write(this.scratch, 0, Integer.BYTES);
+        }
+
+        public void writeLong(long value) throws IOException {
+            for (int i = 0; i < Long.BYTES; i++) {
+                this.scratch[i] = (byte) (value >>> (8 * (Long.BYTES - 1 - i)));
+            }
+            this.write(this.scratch, 0, Long.BYTES);
+        }
+
+        public void writeDouble(double value) throws IOException {
+            this.writeLong(Double.doubleToRawLongBits(value));
+        }
+
+        /**
+         * Writes a string as its length in bytes followed by its UTF-8 encoding.
+         */
+        public void writeString(String str) throws IOException {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            this.writeInt(bytes.length);
+            this.write(bytes);
+        }
+
+        /**
+         * Starts a new section, returning its offset within the file.
+         */
+        public long startSection() {
+            this.checksum.reset();
+            return this.position;
+        }
+
+        /**
+         * Returns the checksum of everything written since the current section started.
+         */
+        public long getChecksum() {
+            return this.checksum.getValue();
+        }
+
+        public long getPosition() {
+            return this.position;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package search.index;
+
+/**
+ * Selects which posting list layouts an index builds, and therefore which
+ * algorithm is used to answer queries.
+ */
+public enum IndexMode {
+    /**
+     * Only build posting lists sorted by document id, and answer every query
+     * using MaxScore.
+     */
+    DOCUMENT_ORDERED,
+
+    /**
+     * Additionally build posting lists sorted by decreasing impact. Short queries
+     * are answered score-at-a-time from these lists, stopping as soon as the
+     * remaining postings can no longer change the top k. This costs extra time
+     * and memory when building the index, but makes queries for very common
+     * words much cheaper. The impact-ordered lists always live on the heap, even
+     * when the rest of the index is memory-mapped.
+     */
+    IMPACT_ORDERED
+}
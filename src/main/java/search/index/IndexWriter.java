@@ -0,0 +1,429 @@
+package search.index;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.ISet;
+import search.models.Webpage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Adds, updates and deletes pages in an existing index without reindexing the
+ * pages that did not change.
+ *
+ * Changes are buffered in memory: new and changed pages are kept until the next
+ * refresh, and every deleted page is marked with a tombstone. None of them are
+ * visible to searches until refresh() is called, which applies them all at once
+ * and returns the new index.
+ *
+ * Changes may be made from any thread, including while another thread is
+ * refreshing; changes made during a refresh are applied by the next one. See
+ * BackgroundMerger for refreshing on a background thread.
+ *
+ * Refreshing never looks at the old pages again. The positional index already
+ * records how often every term appears in every document, and how many words
+ * each document has, so we rebuild the TF-IDF weights from it using the new
+ * document frequencies. This gives exactly the same weights as reindexing
+ * every page from scratch.
+ *
+ * Every refresh still reads each posting of the old index once, since changing
+ * the number of documents changes every IDF, and so every weight and norm. But
+ * the new index is never built on the heap: its positions are streamed to a
+ * temporary file one term at a time, the weights are computed from them while
+ * the index is written to a second file (see TfIdfIndex), and that file is
+ * mapped, just like an index saved by SearchEngine.open(...). Both files are
+ * deleted as soon as the index is mapped, so nothing is left behind; the
+ * operating system frees their space once the mapping is released.
+ *
+ * The writer holds a reference to the index it applies changes to, so that
+ * index stays open even if every engine serving it is closed. Every refresh
+ * drops the reference to the previous index, and close() drops the last one.
+ * See IndexFile.retain().
+ *
+ * Page ranks are only approximated: pages that were already indexed keep their
+ * rank, and new pages get the rank of a page no other page links to. Reindex
+ * every page from scratch to recompute them.
+ */
+public class IndexWriter implements AutoCloseable {
+    private volatile IndexFile base;
+    private double pageRankDecay;
+    private Path tempFolder;
+
+    // Guards 'added', 'tombstones' and 'pendingSince'
+    private final Object pendingLock = new Object();
+    // Makes sure only one refresh runs at a time
+    private final Object refreshLock = new Object();
+
+    // Pages to add, replacing any indexed page with the same URI
+    private IDictionary<URI, Webpage> added;
+    // URIs of pages to delete
+    private ISet<URI> tombstones;
+    // When the oldest change not yet applied was made, or -1 if there is none
+    private long pendingSince;
+
+    // Guarded by 'refreshLock'
+    private boolean closed;
+
+    /**
+     * Creates a writer that writes refreshed indexes to the default temporary folder.
+     *
+     * @param base           The index to apply changes to.
+     * @param pageRankDecay  The decay factor the base's page ranks were computed with.
+     * @throws IllegalStateException  if the base was already closed
+     */
+    public IndexWriter(IndexFile base, double pageRankDecay) {
+        this(base, pageRankDecay, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param base           The index to apply changes to.
+     * @param pageRankDecay  The decay factor the base's page ranks were computed with.
+     * @param tempFolder     Where to write refreshed indexes before mapping them.
+     * @throws IllegalStateException  if the base was already closed
+     */
+    public IndexWriter(IndexFile base, double pageRankDecay, Path tempFolder) {
+        this.base = base.retain();
+        this.pageRankDecay = pageRankDecay;
+        this.tempFolder = tempFolder;
+        this.added = new ChainedHashDictionary<>();
+        this.tombstones = new ChainedHashSet<>();
+        this.pendingSince = -1;
+        this.closed = false;
+    }
+
+    /**
+     * Adds the given page to the index, replacing any page with the same URI.
+     */
+    public void addOrUpdate(Webpage page) {
+        synchronized (this.pendingLock) {
+            this.added.put(page.getUri(), page);
+            this.markPending();
+        }
+    }
+
+    /**
+     * Deletes the page with the given URI from the index, if there is one.
+     */
+    public void delete(URI uri) {
+        synchronized (this.pendingLock) {
+            if (this.added.containsKey(uri)) {
+                this.added.remove(uri);
+            }
+            this.tombstones.add(uri);
+            this.markPending();
+        }
+    }
+
+    private void markPending() {
+        if (this.pendingSince == -1) {
+            this.pendingSince = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Returns 'true' if any change was made since the last refresh started.
+     */
+    public boolean hasPendingChanges() {
+        return this.getPendingChangeCount() > 0;
+    }
+
+    /**
+     * Returns the number of pages added, updated or deleted since the last refresh started.
+     */
+    public int getPendingChangeCount() {
+        synchronized (this.pendingLock) {
+            return this.added.size() + this.tombstones.size();
+        }
+    }
+
+    /**
+     * Returns when the oldest change not yet applied was made, as returned by
+     * System.currentTimeMillis(), or -1 if there are no pending changes.
+     */
+    public long getPendingSince() {
+        synchronized (this.pendingLock) {
+            return this.pendingSince;
+        }
+    }
+
+    /**
+     * Returns the index as of the last refresh, or the index this writer was
+     * constructed with if it was never refreshed.
+     */
+    public IndexFile getIndex() {
+        return this.base;
+    }
+
+    /**
+     * Applies every buffered change, and returns the resulting index. That index
+     * becomes the one later changes are applied to. It stays open until the next
+     * refresh or until this writer is closed, so retain() it to use it for longer,
+     * for example by serving it from a SearchEngine.
+     *
+     * Documents keep their relative order, but their ids change: every page that
+     * was added or updated gets an id after every page that was not.
+     *
+     * @throws UncheckedIOException  if the new index could not be written or
+     *                               mapped; the changes stay buffered
+     * @throws IllegalStateException  if this writer was closed
+     */
+    public IndexFile refresh() {
+        return this.refresh(null, null);
+    }
+
+    /**
+     * Same as refresh(), but limits how fast postings are copied, and records what
+     * was done.
+     *
+     * @param limiter  Limits the number of postings copied per second, or null for no limit.
+     * @param metrics  Where to record how many documents and postings were
+     *                 processed, or null to not record them.
+     */
+    public IndexFile refresh(RateLimiter limiter, MergeMetrics metrics) {
+        synchronized (this.refreshLock) {
+            if (this.closed) {
+                throw new IllegalStateException("The index writer was closed");
+            }
+            IDictionary<URI, Webpage> added;
+            ISet<URI> tombstones;
+            long since;
+            synchronized (this.pendingLock) {
+                if (this.pendingSince == -1) {
+                    return this.base;
+                }
+                added = this.added;
+                tombstones = this.tombstones;
+                since = this.pendingSince;
+                this.added = new ChainedHashDictionary<>();
+                this.tombstones = new ChainedHashSet<>();
+                this.pendingSince = -1;
+            }
+            IndexFile old = this.base;
+            try {
+                this.base = this.apply(added, tombstones, limiter, metrics);
+            } catch (RuntimeException ex) {
+                this.restore(added, tombstones, since);
+                throw ex;
+            }
+            old.close();
+            return this.base;
+        }
+    }
+
+    /**
+     * Drops this writer's reference to its current index, which is closed once
+     * no engine serves it anymore. Changes that were not applied yet are
+     * discarded. Waits for any refresh in progress to finish first. Closing a
+     * writer again has no effect.
+     */
+    @Override
+    public void close() {
+        synchronized (this.refreshLock) {
+            if (!this.closed) {
+                this.closed = true;
+                this.base.close();
+            }
+        }
+    }
+
+    /**
+     * Puts back changes taken by a refresh that failed, without undoing any
+     * change made since.
+     */
+    private void restore(IDictionary<URI, Webpage> added, ISet<URI> tombstones, long since) {
+        synchronized (this.pendingLock) {
+            for (KVPair<URI, Webpage> entry : added) {
+                URI uri = entry.getKey();
+                if (!this.added.containsKey(uri) && !this.tombstones.contains(uri)) {
+                    this.added.put(uri, entry.getValue());
+                }
+            }
+            for (URI uri : tombstones) {
+                this.tombstones.add(uri);
+            }
+            this.pendingSince = since;
+        }
+    }
+
+    private IndexFile apply(IDictionary<URI, Webpage> added, ISet<URI> tombstones,
+                            RateLimiter limiter, MergeMetrics metrics) {
+        DocumentRegistry oldRegistry = this.base.getRegistry();
+        double[] oldPageRanks = this.base.getPageRanks();
+
+        // Assign the new ids: surviving documents first, then added ones. An added
+        // page replaces any indexed page with the same URI.
+        DocumentRegistry registry = new DocumentRegistry();
+        int[] newIds = new int[oldRegistry.size()];
+        double[] pageRanks = new double[oldRegistry.size() + added.size()];
+        for (int id = 0; id < newIds.length; id++) {
+            URI uri = oldRegistry.getUri(id);
+            if (tombstones.contains(uri) || added.containsKey(uri)) {
+                newIds[id] = -1;
+            } else {
+                newIds[id] = registry.register(oldRegistry.getSummary(id));
+                pageRanks[newIds[id]] = oldPageRanks[id];
+            }
+        }
+        int firstAdded = registry.size();
+        Webpage[] addedPages = new Webpage[added.size()];
+        for (KVPair<URI, Webpage> entry : added) {
+            int id = registry.register(entry.getValue().getSummary());
+            addedPages[id - firstAdded] = entry.getValue();
+        }
+        int documentCount = registry.size();
+        pageRanks = Arrays.copyOf(pageRanks, documentCount);
+        for (int id = firstAdded; id < documentCount; id++) {
+            if (oldRegistry.contains(registry.getUri(id))) {
+                // An updated page keeps the rank it had before
+                pageRanks[id] = oldPageRanks[oldRegistry.getId(registry.getUri(id))];
+            } else {
+                pageRanks[id] = (1 - this.pageRankDecay) / documentCount;
+            }
+        }
+
+        // Index the added pages on the heap; there should only be a few of them.
+        // lengths[id] is the number of words of the document with that id.
+        IDictionary<String, PositionalPostingList> addedPositions = new ChainedHashDictionary<>();
+        int[] lengths = new int[documentCount];
+        for (int i = 0; i < addedPages.length; i++) {
+            int position = 0;
+            for (String word : addedPages[i].getWords()) {
+                ArrayPositionalPostingList list =
+                        (ArrayPositionalPostingList) addedPositions.getOrDefault(word, null);
+                if (list == null) {
+                    list = new ArrayPositionalPostingList();
+                    addedPositions.put(word, list);
+                }
+                list.add(firstAdded + i, position);
+                position++;
+            }
+            lengths[firstAdded + i] = position;
+        }
+
+        Path positionsPath = null;
+        Path indexPath = null;
+        try {
+            positionsPath = Files.createTempFile(this.tempFolder, "refresh-positions-", ".tmp");
+            long postingsCopied;
+            PositionalIndex positions;
+            try (PositionsFileWriter out = new PositionsFileWriter(positionsPath)) {
+                postingsCopied = this.copyPositions(out, newIds, addedPositions, lengths, limiter, metrics);
+                positions = out.finish();
+            }
+            if (metrics != null) {
+                metrics.recordRefresh(addedPages.length, oldRegistry.size() - firstAdded, postingsCopied);
+            }
+
+            IndexFile index = new IndexFile(
+                    registry,
+                    documentCount,
+                    new TfIdfIndex(positions, lengths, documentCount),
+                    positions,
+                    pageRanks);
+            indexPath = Files.createTempFile(this.tempFolder, "refresh-", ".index");
+            index.write(indexPath);
+            return IndexFile.read(indexPath);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            deleteTempFile(positionsPath);
+            deleteTempFile(indexPath);
+        }
+    }
+
+    /**
+     * Writes the positions of every surviving document of the base, renumbered
+     * using newIds, merged with the given positions of the added documents, one
+     * term at a time in the order MappedTermTable expects. Adds the frequency of
+     * every surviving posting to the length of its document, and returns the
+     * number of postings read from the base.
+     *
+     * Since surviving documents keep their relative order and come before every
+     * added one, every list stays sorted by id.
+     */
+    private long copyPositions(PositionsFileWriter out, int[] newIds,
+                               IDictionary<String, PositionalPostingList> addedPositions, int[] lengths,
+                               RateLimiter limiter, MergeMetrics metrics) throws IOException {
+        PositionalIndex basePositions = this.base.getPositionalIndex();
+        byte[][] baseTerms = IndexFile.sortedNames(basePositions);
+        byte[][] addedTerms = IndexFile.sortedNames(addedPositions);
+
+        PositionalPostingList[] lists = new PositionalPostingList[2];
+        long postingsCopied = 0;
+        int b = 0;
+        int a = 0;
+        while (b < baseTerms.length || a < addedTerms.length) {
+            int cmp;
+            if (b == baseTerms.length) {
+                cmp = 1;
+            } else if (a == addedTerms.length) {
+                cmp = -1;
+            } else {
+                cmp = IndexFile.compareUnsigned(baseTerms[b], addedTerms[a]);
+            }
+            byte[] name = cmp <= 0 ? baseTerms[b] : addedTerms[a];
+            String term = IndexFile.decode(name);
+
+            int count = 0;
+            if (cmp <= 0) {
+                PositionalPostingList list = basePositions.getPostings(term);
+                if (limiter != null) {
+                    long slept = limiter.acquire(list.size());
+                    if (metrics != null) {
+                        metrics.recordThrottled(slept);
+                    }
+                }
+                postingsCopied += list.size();
+                ArrayPositionalPostingList survivors = new ArrayPositionalPostingList();
+                for (int i = 0; i < list.size(); i++) {
+                    int id = newIds[list.getDocumentId(i)];
+                    if (id == -1) {
+                        continue;
+                    }
+                    for (int j = 0; j < list.getFrequency(i); j++) {
+                        survivors.add(id, list.getPosition(i, j));
+                    }
+                    lengths[id] += list.getFrequency(i);
+                }
+                if (survivors.size() > 0) {
+                    lists[count] = survivors;
+                    count++;
+                }
+                b++;
+            }
+            if (cmp >= 0) {
+                lists[count] = addedPositions.get(term);
+                count++;
+                a++;
+            }
+            if (count > 0) {
+                out.addTerm(name, lists, count);
+            }
+        }
+        return postingsCopied;
+    }
+
+    /**
+     * Deletes the given temporary file, if there is one. A file the operating
+     * system won't let us delete yet, such as one that is still mapped on
+     * Windows, is deleted when the JVM exits instead.
+     */
+    private static void deleteTempFile(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            path.toFile().deleteOnExit();
+        }
+    }
+}
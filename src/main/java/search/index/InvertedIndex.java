@@ -0,0 +1,52 @@
+package search.index;
+
+import datastructures.concrete.KVPair;
+
+import java.util.Iterator;
+
+/**
+ * An inverted index mapping every term to the documents that contain it.
+ *
+ * Where the TfIdfAnalyzer stores one TF-IDF vector per document, an inverted
+ * index stores the same weights "sideways": one posting list per term. This
+ * lets us find every document matching a query without looking at the
+ * documents that do not contain any of the query's words.
+ *
+ * MemoryInvertedIndex builds an index on the heap; MappedInvertedIndex reads
+ * one saved by IndexFile straight out of a memory-mapped file.
+ */
+public interface InvertedIndex extends Iterable<KVPair<String, PostingList>> {
+    /**
+     * Returns the postings for the given term. If no document contains the term,
+     * returns an empty posting list.
+     */
+    public PostingList getPostings(String term);
+
+    /**
+     * Returns the length of the TF-IDF vector of the document with the given id.
+     */
+    public double getDocumentNorm(int documentId);
+
+    /**
+     * Updates the maximum impact of every posting list in this index, so that
+     * PostingList.getMaxImpact returns it from then on. See
+     * PostingList.computeMaxImpact for details.
+     */
+    public void computeMaxImpacts(double[] documentFactors);
+
+    /**
+     * Returns every term in this index along with its postings, in no particular order.
+     */
+    @Override
+    public Iterator<KVPair<String, PostingList>> iterator();
+
+    /**
+     * Returns the number of distinct terms in this index.
+     */
+    public int termCount();
+
+    /**
+     * Returns the number of documents this index was built from.
+     */
+    public int documentCount();
+}
@@ -0,0 +1,140 @@
+package search.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A read-only file mapped into memory, addressed by long offsets.
+ *
+ * A single MappedByteBuffer can cover at most 2 GB, so larger files are mapped
+ * as several consecutive regions. Each region overlaps the next one by a few
+ * bytes, so any int, long or double lies entirely within the region its first
+ * byte belongs to.
+ *
+ * Since the file is mapped rather than read, its contents never live on the
+ * heap: the operating system pages them in on demand, and shares those pages
+ * between every process that maps the same file.
+ *
+ * Java cannot unmap a file on demand: a mapping is released once the garbage
+ * collector finds nothing refers to it anymore. close() drops this file's
+ * references to its regions, so the mapping goes away as soon as no posting
+ * list or buffer obtained from this file is left either.
+ */
+public class MappedFile implements AutoCloseable {
+    // 1 GB, so a region plus its overlap always fits in a MappedByteBuffer
+    private static final int DEFAULT_REGION_BITS = 30;
+
+    // The longest value we ever read in one go (a long or a double)
+    private static final int OVERLAP = 8;
+
+    private MappedByteBuffer[] regions;
+    private int regionBits;
+    private long regionMask;
+    private long size;
+
+    /**
+     * Maps the whole file at the given path.
+     *
+     * @throws IOException  if the file could not be opened or mapped
+     */
+    public MappedFile(Path path) throws IOException {
+        this(path, DEFAULT_REGION_BITS);
+    }
+
+    /**
+     * Maps the whole file, splitting it into regions of 2^regionBits bytes. Only
+     * tests need to pick a region size.
+     */
+    MappedFile(Path path, int regionBits) throws IOException {
+        this.regionBits = regionBits;
+        this.regionMask = (1L << regionBits) - 1;
+
+        // Mappings stay valid after their channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.size = channel.size();
+            long regionSize = 1L << regionBits;
+            int numRegions = (int) ((this.size + regionSize - 1) >>> regionBits);
+            this.regions = new MappedByteBuffer[numRegions];
+            for (int i = 0; i < numRegions; i++) {
+                long start = (long) i << regionBits;
+                long length = Math.min(regionSize + OVERLAP, this.size - start);
+                this.regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+        }
+    }
+
+    public int getInt(long offset) {
+        return this.regions[(int) (offset >>> this.regionBits)].getInt((int) (offset & this.regionMask));
+    }
+
+    public long getLong(long offset) {
+        return this.regions[(int) (offset >>> this.regionBits)].getLong((int) (offset & this.regionMask));
+    }
+
+    public double getDouble(long offset) {
+        return this.regions[(int) (offset >>> this.regionBits)].getDouble((int) (offset & this.regionMask));
+    }
+
+    public byte getByte(long offset) {
+        return this.regions[(int) (offset >>> this.regionBits)].get((int) (offset & this.regionMask));
+    }
+
+    /**
+     * Copies bytes starting at the given offset into the given array, which may
+     * span any number of regions.
+     */
+    public void getBytes(long offset, byte[] destination, int start, int length) {
+        while (length > 0) {
+            ByteBuffer view = this.view(offset, length);
+            int chunk = view.remaining();
+            view.get(destination, start, chunk);
+            offset += chunk;
+            start += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Adds the bytes in the range [from, to) to the given checksum.
+     */
+    public void updateChecksum(CRC32 checksum, long from, long to) {
+        while (from < to) {
+            ByteBuffer view = this.view(from, to - from);
+            from += view.remaining();
+            checksum.update(view);
+        }
+    }
+
+    /**
+     * Returns a buffer holding as many of the 'length' bytes starting at 'offset'
+     * as fit in the region containing 'offset'. Each call returns a new buffer, so
+     * concurrent readers never fight over a buffer's position.
+     */
+    private ByteBuffer view(long offset, long length) {
+        int local = (int) (offset & this.regionMask);
+        ByteBuffer view = this.regions[(int) (offset >>> this.regionBits)].duplicate();
+        view.position(local);
+        view.limit((int) Math.min(local + length, (1L << this.regionBits)));
+        return view;
+    }
+
+    /**
+     * Releases this file's mapping. This file must not be read afterwards.
+     */
+    @Override
+    public void close() {
+        this.regions = null;
+    }
+
+    /**
+     * Returns the size of the file in bytes.
+     */
+    public long size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,111 @@
+package search.index;
+
+import datastructures.concrete.KVPair;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An inverted index read directly out of a file saved by IndexFile, which
+ * has been mapped into memory.
+ *
+ * Neither the postings nor the document norms are ever copied onto the heap.
+ * Each call to getPostings creates a small MappedPostingList that reads from
+ * the mapping; the only per-term state kept on the heap is each list's maximum
+ * impact, once computeMaxImpacts has been called.
+ */
+public class MappedInvertedIndex implements InvertedIndex {
+    private static final PostingList EMPTY = new ArrayPostingList();
+
+    private MappedFile file;
+    private MappedTermTable terms;
+    private long normsOffset;
+    private int documentCount;
+
+    // maxImpacts[i] is the maximum impact of the i-th term's postings
+    private double[] maxImpacts;
+
+    /**
+     * @param terms          The table pointing at every term's postings.
+     * @param normsOffset    The offset of the first document's norm within the file;
+     *                       norms are stored as consecutive doubles, in id order.
+     * @param documentCount  The number of documents in the index.
+     */
+    public MappedInvertedIndex(MappedFile file, MappedTermTable terms, long normsOffset, int documentCount) {
+        this.file = file;
+        this.terms = terms;
+        this.normsOffset = normsOffset;
+        this.documentCount = documentCount;
+        this.maxImpacts = null;
+    }
+
+    @Override
+    public PostingList getPostings(String term) {
+        int index = this.terms.find(term);
+        return index == -1 ? EMPTY : this.getPostings(index);
+    }
+
+    private PostingList getPostings(int index) {
+        PostingList list = new MappedPostingList(
+                this.file, this.terms.getPostingsOffset(index), this.terms.getPostingsCount(index));
+        if (this.maxImpacts != null) {
+            list.setMaxImpact(this.maxImpacts[index]);
+        }
+        return list;
+    }
+
+    @Override
+    public double getDocumentNorm(int documentId) {
+        if (documentId < 0 || documentId >= this.documentCount) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.file.getDouble(this.normsOffset + (long) Double.BYTES * documentId);
+    }
+
+    @Override
+    public void computeMaxImpacts(double[] documentFactors) {
+        double[] impacts = new double[this.terms.size()];
+        for (int i = 0; i < impacts.length; i++) {
+            PostingList list = this.getPostings(i);
+            list.computeMaxImpact(documentFactors);
+            impacts[i] = list.getMaxImpact();
+        }
+        this.maxImpacts = impacts;
+    }
+
+    /**
+     * Returns every term in this index along with its postings, in the order the
+     * terms are stored in the file.
+     */
+    @Override
+    public Iterator<KVPair<String, PostingList>> iterator() {
+        return new Iterator<KVPair<String, PostingList>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < terms.size();
+            }
+
+            @Override
+            public KVPair<String, PostingList> next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int index = this.next;
+                this.next++;
+                return new KVPair<>(terms.getTerm(index), getPostings(index));
+            }
+        };
+    }
+
+    @Override
+    public int termCount() {
+        return this.terms.size();
+    }
+
+    @Override
+    public int documentCount() {
+        return this.documentCount;
+    }
+}
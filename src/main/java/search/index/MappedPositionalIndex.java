@@ -0,0 +1,67 @@
+package search.index;
+
+import datastructures.concrete.KVPair;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A positional index read directly out of a file saved by IndexFile, which
+ * has been mapped into memory. No positions are ever copied onto the heap.
+ */
+public class MappedPositionalIndex extends PositionalIndex {
+    private static final PositionalPostingList EMPTY = new ArrayPositionalPostingList();
+
+    private MappedFile file;
+    private MappedTermTable terms;
+
+    /**
+     * @param terms  The table pointing at every term's positional postings.
+     */
+    public MappedPositionalIndex(MappedFile file, MappedTermTable terms) {
+        this.file = file;
+        this.terms = terms;
+    }
+
+    @Override
+    public PositionalPostingList getPostings(String term) {
+        int index = this.terms.find(term);
+        return index == -1 ? EMPTY : this.getPostings(index);
+    }
+
+    private PositionalPostingList getPostings(int index) {
+        return new MappedPositionalPostingList(
+                this.file, this.terms.getPostingsOffset(index), this.terms.getPostingsCount(index));
+    }
+
+    /**
+     * Returns every term in this index along with its postings, in the order the
+     * terms are stored in the file.
+     */
+    @Override
+    public Iterator<KVPair<String, PositionalPostingList>> iterator() {
+        return new Iterator<KVPair<String, PositionalPostingList>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < terms.size();
+            }
+
+            @Override
+            public KVPair<String, PositionalPostingList> next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int index = this.next;
+                this.next++;
+                return new KVPair<>(terms.getTerm(index), getPostings(index));
+            }
+        };
+    }
+
+    @Override
+    public int termCount() {
+        return this.terms.size();
+    }
+}
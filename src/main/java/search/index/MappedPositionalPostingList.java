@@ -0,0 +1,60 @@
+package search.index;
+
+/**
+ * A positional posting list read directly out of a MappedFile. For a list of n
+ * documents, the file holds n document ids, then n + 1 position starts, then
+ * the positions themselves, all as ints. The positions of the i-th document
+ * are those between position starts i and i + 1.
+ */
+public class MappedPositionalPostingList extends PositionalPostingList {
+    private MappedFile file;
+    private long documentIdsOffset;
+    private long startsOffset;
+    private long positionsOffset;
+    private int size;
+
+    /**
+     * @param offset  The offset of the list's first document id within the file.
+     * @param size    The number of documents in the list.
+     */
+    public MappedPositionalPostingList(MappedFile file, long offset, int size) {
+        this.file = file;
+        this.documentIdsOffset = offset;
+        this.startsOffset = offset + (long) Integer.BYTES * size;
+        this.positionsOffset = this.startsOffset + (long) Integer.BYTES * (size + 1);
+        this.size = size;
+    }
+
+    @Override
+    public int getDocumentId(int index) {
+        this.checkIndex(index);
+        return this.file.getInt(this.documentIdsOffset + (long) Integer.BYTES * index);
+    }
+
+    @Override
+    public int getFrequency(int index) {
+        this.checkIndex(index);
+        return this.getStart(index + 1) - this.getStart(index);
+    }
+
+    @Override
+    public int getPosition(int index, int i) {
+        this.checkIndex(index);
+        return this.file.getInt(this.positionsOffset + (long) Integer.BYTES * (this.getStart(index) + i));
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    private int getStart(int index) {
+        return this.file.getInt(this.startsOffset + (long) Integer.BYTES * index);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+}
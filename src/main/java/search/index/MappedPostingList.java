@@ -0,0 +1,46 @@
+package search.index;
+
+/**
+ * A posting list read directly out of a MappedFile: the list's document ids are
+ * stored as consecutive ints, immediately followed by its weights as doubles.
+ */
+public class MappedPostingList extends PostingList {
+    private MappedFile file;
+    private long documentIdsOffset;
+    private long weightsOffset;
+    private int size;
+
+    /**
+     * @param offset  The offset of the list's first document id within the file.
+     * @param size    The number of postings in the list.
+     */
+    public MappedPostingList(MappedFile file, long offset, int size) {
+        this.file = file;
+        this.documentIdsOffset = offset;
+        this.weightsOffset = offset + (long) Integer.BYTES * size;
+        this.size = size;
+    }
+
+    @Override
+    public int getDocumentId(int index) {
+        this.checkIndex(index);
+        return this.file.getInt(this.documentIdsOffset + (long) Integer.BYTES * index);
+    }
+
+    @Override
+    public double getWeight(int index) {
+        this.checkIndex(index);
+        return this.file.getDouble(this.weightsOffset + (long) Double.BYTES * index);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package search.index;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A sorted table of terms stored in a MappedFile, each pointing at its postings.
+ *
+ * Every term has a fixed-size record holding the offset and length of its
+ * UTF-8 encoded name, and the offset and length of its postings. Records are
+ * sorted by name (comparing the encoded bytes as unsigned numbers), so a term
+ * is found by binary search without loading the table onto the heap.
+ */
+public class MappedTermTable {
+    public static final int RECORD_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private MappedFile file;
+    private long offset;
+    private int size;
+
+    /**
+     * @param offset  The offset of the first record within the file.
+     * @param size    The number of terms in the table.
+     */
+    public MappedTermTable(MappedFile file, long offset, int size) {
+        this.file = file;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Returns the index of the record of the given term, or -1 if there is none.
+     */
+    public int find(String term) {
+        byte[] name = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = this.compareName(mid, name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the term of the record at the given index.
+     */
+    public String getTerm(int index) {
+        long record = this.record(index);
+        byte[] name = new byte[this.file.getInt(record + Long.BYTES)];
+        this.file.getBytes(this.file.getLong(record), name, 0, name.length);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the offset of the postings of the record at the given index.
+     */
+    public long getPostingsOffset(int index) {
+        return this.file.getLong(this.record(index) + Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Returns the number of postings of the record at the given index.
+     */
+    public int getPostingsCount(int index) {
+        return this.file.getInt(this.record(index) + Long.BYTES + Integer.BYTES + Long.BYTES);
+    }
+
+    /**
+     * Returns the number of terms in this table.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Compares the name of the record at the given index against the given name,
+     * the same way the table is sorted.
+     */
+    private int compareName(int index, byte[] name) {
+        long record = this.record(index);
+        long nameOffset = this.file.getLong(record);
+        int length = this.file.getInt(record + Long.BYTES);
+        for (int i = 0; i < Math.min(length, name.length); i++) {
+            int cmp = Integer.compare(this.file.getByte(nameOffset + i) & 0xFF, name[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, name.length);
+    }
+
+    private long record(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.offset + (long) RECORD_SIZE * index;
+    }
+}
@@ -0,0 +1,124 @@
+package search.index;
+
+import datastructures.concrete.KVPair;
+import search.analyzers.TfIdfAnalyzer;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An inverted index held entirely in memory, built from the TF-IDF vectors
+ * computed by a TfIdfAnalyzer.
+ *
+ * Terms are looked up in the analyzer's TermDictionary, and each term's
+ * postings are stored at its postings offset in an array of lists.
+ */
+public class MemoryInvertedIndex implements InvertedIndex {
+    private static final PostingList EMPTY = new ArrayPostingList();
+
+    private TermDictionary terms;
+    private PostingList[] postings;
+    private double[] documentNorms;
+    private int documentCount;
+
+    /**
+     * Builds an inverted index out of the TF-IDF vectors computed by the given analyzer.
+     *
+     * @param analyzer       The analyzer holding each document's TF-IDF vector.
+     * @param documentCount  The number of documents; every document id must be in
+     *                       the range [0, documentCount).
+     */
+    public MemoryInvertedIndex(TfIdfAnalyzer analyzer, int documentCount) {
+        this.terms = analyzer.getTermDictionary();
+        this.documentCount = documentCount;
+        this.documentNorms = new double[documentCount];
+
+        ArrayPostingList[] lists = new ArrayPostingList[this.terms.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[(int) this.terms.getPostingsOffset(i)] = new ArrayPostingList();
+        }
+
+        // We visit documents in increasing id order, so every posting list ends
+        // up sorted by document id.
+        for (int id = 0; id < documentCount; id++) {
+            int[] termIds = analyzer.getDocumentTermIds(id);
+            if (termIds == null) {
+                continue;
+            }
+            double[] weights = analyzer.getDocumentWeights(id);
+            this.documentNorms[id] = analyzer.getDocumentNorm(id);
+            for (int i = 0; i < termIds.length; i++) {
+                lists[(int) this.terms.getPostingsOffset(termIds[i])].add(id, weights[i]);
+            }
+        }
+        this.postings = lists;
+    }
+
+    /**
+     * Constructs an index out of postings built elsewhere, such as by an IndexWriter
+     * or a Bm25Scorer.
+     *
+     * @param terms          Every term in the index; each term's postings offset is
+     *                       the index of its postings in 'postings'.
+     * @param documentNorms  The length of every document's TF-IDF vector, indexed by id.
+     */
+    public MemoryInvertedIndex(TermDictionary terms, PostingList[] postings, double[] documentNorms) {
+        this.terms = terms;
+        this.postings = postings;
+        this.documentNorms = documentNorms;
+        this.documentCount = documentNorms.length;
+    }
+
+    @Override
+    public PostingList getPostings(String term) {
+        int termId = this.terms.find(term);
+        return termId == -1 ? EMPTY : this.postings[(int) this.terms.getPostingsOffset(termId)];
+    }
+
+    @Override
+    public double getDocumentNorm(int documentId) {
+        return this.documentNorms[documentId];
+    }
+
+    @Override
+    public void computeMaxImpacts(double[] documentFactors) {
+        for (PostingList list : this.postings) {
+            list.computeMaxImpact(documentFactors);
+        }
+    }
+
+    /**
+     * Returns every term in this index along with its postings, in sorted order.
+     */
+    @Override
+    public Iterator<KVPair<String, PostingList>> iterator() {
+        return new Iterator<KVPair<String, PostingList>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < terms.size();
+            }
+
+            @Override
+            public KVPair<String, PostingList> next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int termId = this.next;
+                this.next++;
+                return new KVPair<>(terms.getTerm(termId), postings[(int) terms.getPostingsOffset(termId)]);
+            }
+        };
+    }
+
+    @Override
+    public int termCount() {
+        return this.terms.size();
+    }
+
+    @Override
+    public int documentCount() {
+        return this.documentCount;
+    }
+}
@@ -0,0 +1,71 @@
+package search.index;
+
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.ISet;
+import search.models.Webpage;
+
+import java.util.Iterator;
+
+/**
+ * A positional index held entirely in memory, built from the words of every webpage.
+ */
+public class MemoryPositionalIndex extends PositionalIndex {
+    private static final PositionalPostingList EMPTY = new ArrayPositionalPostingList();
+
+    private IDictionary<String, PositionalPostingList> postings;
+
+    /**
+     * Builds a positional index of the given webpages.
+     *
+     * @param registry  The registry assigning every webpage its id.
+     */
+    public MemoryPositionalIndex(ISet<Webpage> webpages, DocumentRegistry registry) {
+        this.postings = new ChainedHashDictionary<>();
+
+        // Posting lists must be built in increasing id order
+        Webpage[] pages = new Webpage[registry.size()];
+        for (Webpage page : webpages) {
+            pages[registry.getId(page.getUri())] = page;
+        }
+        for (int id = 0; id < pages.length; id++) {
+            if (pages[id] == null) {
+                continue;
+            }
+            int position = 0;
+            for (String word : pages[id].getWords()) {
+                ArrayPositionalPostingList list =
+                        (ArrayPositionalPostingList) this.postings.getOrDefault(word, null);
+                if (list == null) {
+                    list = new ArrayPositionalPostingList();
+                    this.postings.put(word, list);
+                }
+                list.add(id, position);
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Constructs an index out of postings built elsewhere, such as by an IndexWriter.
+     */
+    MemoryPositionalIndex(IDictionary<String, PositionalPostingList> postings) {
+        this.postings = postings;
+    }
+
+    @Override
+    public PositionalPostingList getPostings(String term) {
+        return this.postings.getOrDefault(term, EMPTY);
+    }
+
+    @Override
+    public Iterator<KVPair<String, PositionalPostingList>> iterator() {
+        return this.postings.iterator();
+    }
+
+    @Override
+    public int termCount() {
+        return this.postings.size();
+    }
+}
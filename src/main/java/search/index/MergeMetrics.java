@@ -0,0 +1,106 @@
+package search.index;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts what the IndexWriter and BackgroundMerger have done so far. Every
+ * counter is cumulative, and may be read from any thread while merges run.
+ */
+public class MergeMetrics {
+    private AtomicLong merges = new AtomicLong();
+    private AtomicLong documentsAdded = new AtomicLong();
+    private AtomicLong documentsDropped = new AtomicLong();
+    private AtomicLong postingsCopied = new AtomicLong();
+    private AtomicLong mergeMillis = new AtomicLong();
+    private AtomicLong throttledMillis = new AtomicLong();
+    private AtomicLong failures = new AtomicLong();
+
+    /**
+     * Records that a refresh added or replaced the given number of documents,
+     * removed the given number of old documents, and copied the given number of
+     * positional postings from the old index.
+     */
+    void recordRefresh(long added, long dropped, long postings) {
+        this.documentsAdded.addAndGet(added);
+        this.documentsDropped.addAndGet(dropped);
+        this.postingsCopied.addAndGet(postings);
+    }
+
+    /**
+     * Records that a merge finished after the given number of milliseconds.
+     */
+    void recordMerge(long millis) {
+        this.merges.incrementAndGet();
+        this.mergeMillis.addAndGet(millis);
+    }
+
+    void recordThrottled(long millis) {
+        this.throttledMillis.addAndGet(millis);
+    }
+
+    void recordFailure() {
+        this.failures.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of merges that finished.
+     */
+    public long getMerges() {
+        return this.merges.get();
+    }
+
+    /**
+     * Returns the number of pages added or updated by finished merges.
+     */
+    public long getDocumentsAdded() {
+        return this.documentsAdded.get();
+    }
+
+    /**
+     * Returns the number of old pages dropped because they were deleted or replaced.
+     */
+    public long getDocumentsDropped() {
+        return this.documentsDropped.get();
+    }
+
+    /**
+     * Returns the number of positional postings copied out of old indexes.
+     */
+    public long getPostingsCopied() {
+        return this.postingsCopied.get();
+    }
+
+    /**
+     * Returns the total time spent merging, in milliseconds, including time spent throttled.
+     */
+    public long getMergeMillis() {
+        return this.mergeMillis.get();
+    }
+
+    /**
+     * Returns the total time merges spent sleeping to stay under their rate limit.
+     */
+    public long getThrottledMillis() {
+        return this.throttledMillis.get();
+    }
+
+    /**
+     * Returns the number of merges that failed with an exception.
+     */
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "merges=%d added=%d dropped=%d postingsCopied=%d mergeMillis=%d throttledMillis=%d failures=%d",
+                this.getMerges(),
+                this.getDocumentsAdded(),
+                this.getDocumentsDropped(),
+                this.getPostingsCopied(),
+                this.getMergeMillis(),
+                this.getThrottledMillis(),
+                this.getFailures());
+    }
+}
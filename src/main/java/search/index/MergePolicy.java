@@ -0,0 +1,50 @@
+package search.index;
+
+/**
+ * Decides when the changes buffered by an IndexWriter are worth applying.
+ *
+ * Every merge rewrites the whole index, so merging after every change would
+ * cost time proportional to the index's size per change. Instead, we wait
+ * until the pending changes add up to a fixed fraction of the index. The cost
+ * of each rewrite is then spread over a number of changes proportional to the
+ * index's size, so it stays constant per change as the index grows.
+ *
+ * Since waiting for enough changes could take arbitrarily long when pages
+ * trickle in, we also merge once the oldest pending change is old enough.
+ */
+public class MergePolicy {
+    private int minChanges;
+    private double sizeRatio;
+    private long maxDelayMillis;
+
+    /**
+     * @param minChanges      Never merge fewer changes than this, unless they are too old.
+     * @param sizeRatio       Merge once the pending changes are at least this fraction
+     *                        of the number of indexed documents.
+     * @param maxDelayMillis  Merge once the oldest pending change is at least this old.
+     * @throws IllegalArgumentException  if any argument is negative
+     */
+    public MergePolicy(int minChanges, double sizeRatio, long maxDelayMillis) {
+        if (minChanges < 0 || sizeRatio < 0.0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Merge policy limits must not be negative");
+        }
+        this.minChanges = minChanges;
+        this.sizeRatio = sizeRatio;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Returns 'true' if the pending changes should be merged now.
+     *
+     * @param pendingChanges     The number of pages added, updated or deleted.
+     * @param indexedDocuments   The number of documents in the current index.
+     * @param pendingMillis      How long ago the oldest pending change was made.
+     */
+    public boolean shouldMerge(int pendingChanges, int indexedDocuments, long pendingMillis) {
+        if (pendingChanges == 0) {
+            return false;
+        }
+        double threshold = Math.max(this.minChanges, this.sizeRatio * indexedDocuments);
+        return pendingChanges >= threshold || pendingMillis >= this.maxDelayMillis;
+    }
+}
@@ -0,0 +1,50 @@
+package search.index;
+
+/**
+ * The documents containing some phrase, in increasing order of id, together
+ * with the number of times the phrase occurs in each of them.
+ */
+public class PhraseMatches {
+    private int[] documentIds;
+    private int[] counts;
+    private int size;
+
+    public PhraseMatches(int[] documentIds, int[] counts, int size) {
+        this.documentIds = documentIds;
+        this.counts = counts;
+        this.size = size;
+    }
+
+    /**
+     * Returns the id of the index-th matching document.
+     *
+     * @throws IndexOutOfBoundsException if index < 0 or index >= this.size()
+     */
+    public int getDocumentId(int index) {
+        this.checkIndex(index);
+        return this.documentIds[index];
+    }
+
+    /**
+     * Returns the number of times the phrase occurs in the index-th matching document.
+     *
+     * @throws IndexOutOfBoundsException if index < 0 or index >= this.size()
+     */
+    public int getCount(int index) {
+        this.checkIndex(index);
+        return this.counts[index];
+    }
+
+    /**
+     * Returns the number of documents containing the phrase.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+}
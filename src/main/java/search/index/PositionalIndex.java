@@ -0,0 +1,145 @@
+package search.index;
+
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.IList;
+import search.models.Phrase;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * An inverted index that records where in each document every term appears,
+ * so we can tell whether the words of a phrase appear next to each other
+ * without looking at the documents themselves.
+ *
+ * A word's position is its offset within Webpage.getWords().
+ *
+ * MemoryPositionalIndex builds an index on the heap; MappedPositionalIndex reads
+ * one saved by IndexFile straight out of a memory-mapped file.
+ */
+public abstract class PositionalIndex implements Iterable<KVPair<String, PositionalPostingList>> {
+    /**
+     * Returns the positional postings of the given term, or an empty list if no
+     * document contains it.
+     */
+    public abstract PositionalPostingList getPostings(String term);
+
+    /**
+     * Returns every term in this index along with its postings, in no particular order.
+     */
+    @Override
+    public abstract Iterator<KVPair<String, PositionalPostingList>> iterator();
+
+    /**
+     * Returns the number of distinct terms in this index.
+     */
+    public abstract int termCount();
+
+    /**
+     * Returns every document containing the given phrase, along with how often it
+     * occurs in each.
+     *
+     * We first intersect the words' posting lists one document at a time, always
+     * jumping ahead to the largest id seen so far, and only compare positions
+     * within documents that contain every word.
+     */
+    public PhraseMatches findMatches(Phrase phrase) {
+        IList<String> words = phrase.getWords();
+        int numWords = words.size();
+        PositionalPostingList[] lists = new PositionalPostingList[numWords];
+        int[] cursors = new int[numWords];
+        int shortest = Integer.MAX_VALUE;
+        int index = 0;
+        for (String word : words) {
+            lists[index] = this.getPostings(word);
+            shortest = Math.min(shortest, lists[index].size());
+            index++;
+        }
+
+        int[] documentIds = new int[Math.min(shortest, 16)];
+        int[] counts = new int[documentIds.length];
+        int size = 0;
+        int[] positionCursors = new int[numWords];
+
+        int candidate = shortest == 0 ? Integer.MAX_VALUE : lists[0].getDocumentId(0);
+        while (candidate != Integer.MAX_VALUE) {
+            // Move every list to the candidate; if one overshoots, its document
+            // becomes the next candidate.
+            boolean allMatch = true;
+            for (int i = 0; i < numWords; i++) {
+                cursors[i] = lists[i].advance(cursors[i], candidate);
+                if (cursors[i] == lists[i].size()) {
+                    return new PhraseMatches(documentIds, counts, size);
+                }
+                int id = lists[i].getDocumentId(cursors[i]);
+                if (id != candidate) {
+                    candidate = id;
+                    allMatch = false;
+                    break;
+                }
+            }
+            if (!allMatch) {
+                continue;
+            }
+
+            int count = countOccurrences(lists, cursors, positionCursors, phrase.getSlop());
+            if (count > 0) {
+                if (size == documentIds.length) {
+                    documentIds = Arrays.copyOf(documentIds, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2);
+                }
+                documentIds[size] = candidate;
+                counts[size] = count;
+                size++;
+            }
+            candidate++;
+        }
+        return new PhraseMatches(documentIds, counts, size);
+    }
+
+    /**
+     * Counts the positions at which the phrase starts within the document every
+     * list's cursor points at. The phrase starts at a position p of its first word
+     * if each following word appears after the previous one, and the last word is
+     * at most slop words further away than it would be in an exact match.
+     *
+     * For each start, we greedily pick the earliest possible position of every
+     * following word, which minimizes where the last word ends up. Since those
+     * positions only move forward as the start does, every word's positions
+     * are scanned just once.
+     */
+    private static int countOccurrences(PositionalPostingList[] lists, int[] cursors,
+                                        int[] positionCursors, int slop) {
+        int numWords = lists.length;
+        int[] frequencies = new int[numWords];
+        for (int i = 0; i < numWords; i++) {
+            positionCursors[i] = 0;
+            frequencies[i] = lists[i].getFrequency(cursors[i]);
+        }
+
+        int count = 0;
+        for (int p = 0; p < frequencies[0]; p++) {
+            int start = lists[0].getPosition(cursors[0], p);
+            int previous = start;
+            boolean matched = true;
+            for (int i = 1; i < numWords && matched; i++) {
+                while (positionCursors[i] < frequencies[i]
+                        && lists[i].getPosition(cursors[i], positionCursors[i]) <= previous) {
+                    positionCursors[i]++;
+                }
+                if (positionCursors[i] == frequencies[i]) {
+                    // No later start can match either
+                    return count;
+                }
+                previous = lists[i].getPosition(cursors[i], positionCursors[i]);
+                if (previous - start - i > slop) {
+                    matched = false;
+                }
+            }
+            if (matched) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,68 @@
+package search.index;
+
+/**
+ * Represents the positional postings for a single term: the id of every document
+ * the term appears in, together with every position (word offset) at which it
+ * appears within that document.
+ *
+ * Postings are sorted by increasing document id. Subclasses decide where the
+ * postings are stored: see ArrayPositionalPostingList and MappedPositionalPostingList.
+ */
+public abstract class PositionalPostingList {
+    /**
+     * Returns the id of the document stored in the posting at the given index.
+     *
+     * @throws IndexOutOfBoundsException if index < 0 or index >= this.size()
+     */
+    public abstract int getDocumentId(int index);
+
+    /**
+     * Returns the number of times the term appears in the document at the given index.
+     *
+     * @throws IndexOutOfBoundsException if index < 0 or index >= this.size()
+     */
+    public abstract int getFrequency(int index);
+
+    /**
+     * Returns the i-th position of the term within the document at the given index,
+     * where i is in the range [0, getFrequency(index)). Positions increase with i.
+     *
+     * @throws IndexOutOfBoundsException if index < 0 or index >= this.size()
+     */
+    public abstract int getPosition(int index, int i);
+
+    /**
+     * Returns the number of documents containing this term.
+     */
+    public abstract int size();
+
+    /**
+     * Returns the index of the first posting at or after 'from' whose document id is
+     * at least 'target'. If there is no such posting, returns this.size().
+     *
+     * Like PostingList.advance, this gallops forward before binary searching.
+     */
+    public int advance(int from, int target) {
+        int size = this.size();
+        if (from >= size || this.getDocumentId(from) >= target) {
+            return from;
+        }
+        // Invariant: getDocumentId(low) < target
+        int low = from;
+        int step = 1;
+        while (low + step < size && this.getDocumentId(low + step) < target) {
+            low += step;
+            step *= 2;
+        }
+        int high = Math.min(low + step, size);
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (this.getDocumentId(mid) < target) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+}
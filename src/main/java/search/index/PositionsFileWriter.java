@@ -0,0 +1,129 @@
+package search.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Writes a positional index to a file one term at a time, so that no more than
+ * the postings of the term being written need to be on the heap, and maps the
+ * result as a MappedPositionalIndex.
+ *
+ * The file holds the postings of every term, laid out the way
+ * MappedPositionalPostingList reads them, then the names of the terms, then a
+ * MappedTermTable pointing at both. Terms must be added in the order
+ * MappedTermTable sorts them: see IndexFile.compareUnsigned.
+ */
+class PositionsFileWriter implements AutoCloseable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Path path;
+    private IndexFile.SectionWriter out;
+    private ByteArrayOutputStream names;
+    private int[] nameLengths;
+    private long[] postingsOffsets;
+    private int[] postingsCounts;
+    private int termCount;
+    private boolean closed;
+
+    /**
+     * @throws IOException  if the file could not be created
+     */
+    public PositionsFileWriter(Path path) throws IOException {
+        this.path = path;
+        this.out = new IndexFile.SectionWriter(Files.newOutputStream(path));
+        this.names = new ByteArrayOutputStream();
+        this.nameLengths = new int[INITIAL_CAPACITY];
+        this.postingsOffsets = new long[INITIAL_CAPACITY];
+        this.postingsCounts = new int[INITIAL_CAPACITY];
+        this.termCount = 0;
+        this.closed = false;
+    }
+
+    /**
+     * Writes the first 'count' of the given lists as the postings of the term
+     * with the given UTF-8 encoded name. Every document id in a list must be
+     * greater than those in the lists before it.
+     */
+    public void addTerm(byte[] name, PositionalPostingList[] lists, int count) throws IOException {
+        if (this.termCount == this.postingsOffsets.length) {
+            this.nameLengths = Arrays.copyOf(this.nameLengths, this.termCount * 2);
+            this.postingsOffsets = Arrays.copyOf(this.postingsOffsets, this.termCount * 2);
+            this.postingsCounts = Arrays.copyOf(this.postingsCounts, this.termCount * 2);
+        }
+        this.names.write(name);
+        this.nameLengths[this.termCount] = name.length;
+        this.postingsOffsets[this.termCount] = this.out.getPosition();
+        for (int l = 0; l < count; l++) {
+            this.postingsCounts[this.termCount] += lists[l].size();
+        }
+        writePostings(this.out, lists, count);
+        this.termCount++;
+    }
+
+    /**
+     * Writes the first 'count' of the given lists as a single list, laid out the
+     * way MappedPositionalPostingList reads it. Every document id in a list must
+     * be greater than those in the lists before it.
+     */
+    public static void writePostings(IndexFile.SectionWriter out, PositionalPostingList[] lists, int count)
+            throws IOException {
+        for (int l = 0; l < count; l++) {
+            for (int i = 0; i < lists[l].size(); i++) {
+                out.writeInt(lists[l].getDocumentId(i));
+            }
+        }
+        int start = 0;
+        out.writeInt(start);
+        for (int l = 0; l < count; l++) {
+            for (int i = 0; i < lists[l].size(); i++) {
+                start += lists[l].getFrequency(i);
+                out.writeInt(start);
+            }
+        }
+        for (int l = 0; l < count; l++) {
+            for (int i = 0; i < lists[l].size(); i++) {
+                for (int j = 0; j < lists[l].getFrequency(i); j++) {
+                    out.writeInt(lists[l].getPosition(i, j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the names and the term table, closes the file, and returns the
+     * positional index it holds, mapped into memory.
+     */
+    public PositionalIndex finish() throws IOException {
+        long tableOffset;
+        this.closed = true;
+        try (IndexFile.SectionWriter out = this.out) {
+            long nameOffset = out.getPosition();
+            this.names.writeTo(out);
+            tableOffset = out.getPosition();
+            for (int t = 0; t < this.termCount; t++) {
+                out.writeLong(nameOffset);
+                out.writeInt(this.nameLengths[t]);
+                out.writeLong(this.postingsOffsets[t]);
+                out.writeInt(this.postingsCounts[t]);
+                nameOffset += this.nameLengths[t];
+            }
+        }
+        MappedFile file = new MappedFile(this.path);
+        return new MappedPositionalIndex(file, new MappedTermTable(file, tableOffset, this.termCount));
+    }
+
+    /**
+     * Closes the file without finishing it, for example after a failure.
+     * Closing a finished writer has no effect.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.closed = true;
+            this.out.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package search.index;
+
+/**
+ * Represents the postings for a single term: the id of every document the term
+ * appears in, together with the TF-IDF weight the term has within that document.
+ *
+ * Postings are sorted by increasing document id. Subclasses decide where the
+ * postings are stored: see ArrayPostingList and MappedPostingList.
+ */
+public abstract class PostingList {
+    // The largest score any single posting in this list can contribute; see computeMaxImpact.
+    private double maxImpact;
+
+    /**
+     * Returns the id of the document stored in the posting at the given index.
+     *
+     * @throws IndexOutOfBoundsException if index < 0 or index >= this.size()
+     */
+    public abstract int getDocumentId(int index);
+
+    /**
+     * Returns the term's weight within the document at the given index.
+     *
+     * @throws IndexOutOfBoundsException if index < 0 or index >= this.size()
+     */
+    public abstract double getWeight(int index);
+
+    /**
+     * Returns the number of documents containing this term.
+     */
+    public abstract int size();
+
+    /**
+     * Returns the index of the first posting at or after 'from' whose document id is
+     * at least 'target'. If there is no such posting, returns this.size().
+     *
+     * We gallop forward from 'from' before binary searching, so skipping a short
+     * distance is cheap even when the list is very long.
+     */
+    public int advance(int from, int target) {
+        int size = this.size();
+        if (from >= size || this.getDocumentId(from) >= target) {
+            return from;
+        }
+        // Invariant: getDocumentId(low) < target
+        int low = from;
+        int step = 1;
+        while (low + step < size && this.getDocumentId(low + step) < target) {
+            low += step;
+            step *= 2;
+        }
+        int high = Math.min(low + step, size);
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (this.getDocumentId(mid) < target) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Computes and stores the largest value of weight * documentFactors[documentId]
+     * over every posting in this list.
+     */
+    public void computeMaxImpact(double[] documentFactors) {
+        double max = 0.0;
+        for (int i = 0; i < this.size(); i++) {
+            max = Math.max(max, this.getWeight(i) * documentFactors[this.getDocumentId(i)]);
+        }
+        this.maxImpact = max;
+    }
+
+    /**
+     * Returns the value last computed by computeMaxImpact, or 0 if it was never called.
+     */
+    public double getMaxImpact() {
+        return this.maxImpact;
+    }
+
+    /**
+     * Sets the value returned by getMaxImpact, for lists whose maximum impact was
+     * computed earlier.
+     */
+    void setMaxImpact(double maxImpact) {
+        this.maxImpact = maxImpact;
+    }
+}
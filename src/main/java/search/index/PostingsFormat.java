@@ -0,0 +1,48 @@
+package search.index;
+
+/**
+ * Selects how an index's posting lists are stored in memory.
+ *
+ * Every format other than ARRAYS stores document ids as variable-byte encoded
+ * gaps (see CompressedPostingList), and differs only in how precisely it stores
+ * weights. Less precise weights use less memory, but pages with similar scores
+ * may swap places; WeightAgreementReport measures how often.
+ */
+public enum PostingsFormat {
+    /**
+     * Store every document id as an int and every weight as a double. Scores
+     * are computed exactly.
+     */
+    ARRAYS(0),
+
+    /**
+     * Store weights as 32-bit floats, accurate to about 1 part in 10 million.
+     */
+    COMPRESSED_FLOAT(4),
+
+    /**
+     * Store weights quantized to 16 bits, as multiples of the largest weight in
+     * the list divided by 65535.
+     */
+    COMPRESSED_16_BIT(2),
+
+    /**
+     * Store weights quantized to 8 bits, as multiples of the largest weight in
+     * the list divided by 255.
+     */
+    COMPRESSED_8_BIT(1);
+
+    private int weightBytes;
+
+    PostingsFormat(int weightBytes) {
+        this.weightBytes = weightBytes;
+    }
+
+    /**
+     * Returns the number of bytes used to store each weight in compressed
+     * posting lists, or 0 if this format does not compress posting lists.
+     */
+    public int getWeightBytes() {
+        return this.weightBytes;
+    }
+}
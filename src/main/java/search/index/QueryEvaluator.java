@@ -0,0 +1,552 @@
+package search.index;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import misc.TopKCollector;
+import search.analyzers.PreparedQuery;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores documents against a query by walking the query terms' posting lists.
+ *
+ * The final score of a document is:
+ *
+ *     staticRank(d) * (queryVector . documentVector(d)) / (|queryVector| * |documentVector(d)|)
+ *
+ * where the vectors' weights and norms are whatever the Scorer that built the
+ * index and prepared the query says they are: for TF-IDF, the norms are the
+ * vectors' lengths, and for BM25 they are all 1.
+ *
+ * Everything in that formula that does not depend on the query is folded into
+ * a single per-document factor when this evaluator is constructed, so scoring
+ * a document only costs one multiply-add per matching query term.
+ *
+ * We also use the MaxScore algorithm to avoid scoring most documents at all.
+ * Every posting list knows the largest score it can contribute to a single
+ * document. Once we have found k results, any document whose score could not
+ * beat the k-th best one even if it matched every remaining term is skipped.
+ *
+ * If constructed with more than one partition, the range of document ids is
+ * split into that many equally-sized partitions that are scored in parallel,
+ * each keeping its own top k. The partial results are then merged.
+ *
+ * In IndexMode.IMPACT_ORDERED, short queries are instead answered
+ * score-at-a-time from an ImpactOrderedIndex: postings are read in order of
+ * decreasing contribution, and we stop as soon as the postings left unread can
+ * no longer change which documents make the top k. Those documents are then
+ * rescored exactly, so both modes return identical results.
+ */
+public class QueryEvaluator {
+    // Longer queries touch so many documents that score-at-a-time evaluation
+    // rarely gets to stop early, so we use MaxScore for them even in impact mode.
+    private static final int MAX_IMPACT_ORDERED_TERMS = 3;
+
+    private InvertedIndex index;
+    private ImpactOrderedIndex impactIndex;
+
+    // documentFactors[id] == staticRank(id) / |documentVector(id)|, or 0 if the
+    // document's vector has no length.
+    private double[] documentFactors;
+
+    private int numPartitions;
+    private ForkJoinPool pool;
+
+    /**
+     * Constructs a new evaluator that scores every query on the calling thread.
+     *
+     * @param index        The index to read postings and document norms from.
+     * @param staticRanks  The query-independent prior of each document, indexed by id.
+     */
+    public QueryEvaluator(InvertedIndex index, double[] staticRanks) {
+        this(index, staticRanks, 1);
+    }
+
+    /**
+     * Constructs a new evaluator that splits the index into the given number of
+     * partitions and scores them in parallel.
+     *
+     * @param numPartitions  The number of partitions, which is also the number of
+     *                       threads used to answer a single query.
+     * @throws IllegalArgumentException  if numPartitions < 1
+     */
+    public QueryEvaluator(InvertedIndex index, double[] staticRanks, int numPartitions) {
+        this(index, staticRanks, numPartitions, IndexMode.DOCUMENT_ORDERED);
+    }
+
+    /**
+     * Constructs a new evaluator that splits the index into the given number of
+     * partitions and scores them in parallel, building whichever extra posting
+     * layouts the given mode needs.
+     *
+     * @param numPartitions  The number of partitions used by MaxScore. Score-at-a-time
+     *                       evaluation always runs on the calling thread.
+     * @throws IllegalArgumentException  if numPartitions < 1
+     */
+    public QueryEvaluator(InvertedIndex index, double[] staticRanks, int numPartitions, IndexMode mode) {
+        if (numPartitions < 1) {
+            throw new IllegalArgumentException("Must have at least one partition");
+        }
+        this.index = index;
+        this.documentFactors = new double[index.documentCount()];
+        for (int id = 0; id < this.documentFactors.length; id++) {
+            double norm = index.getDocumentNorm(id);
+            this.documentFactors[id] = norm == 0.0 ? 0.0 : staticRanks[id] / norm;
+        }
+        index.computeMaxImpacts(this.documentFactors);
+        if (mode == IndexMode.IMPACT_ORDERED) {
+            this.impactIndex = new ImpactOrderedIndex(index, this.documentFactors);
+        }
+
+        this.numPartitions = numPartitions;
+        this.pool = numPartitions > 1 ? new ForkJoinPool(numPartitions) : null;
+    }
+
+    /**
+     * Stops the threads used to score partitions in parallel. Queries evaluated
+     * after this fail if this evaluator uses more than one partition.
+     */
+    public void close() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the k highest-scoring documents containing at least one of the
+     * query's terms, best result first.
+     *
+     * @param query  The query, as prepared by the Scorer that built the index.
+     */
+    public IList<ScoredDocument> evaluate(PreparedQuery query, int k) {
+        return this.evaluate(query, k, null);
+    }
+
+    /**
+     * Returns the k highest-scoring documents that rank strictly below the given
+     * document, best result first. This is how we fetch every page of results
+     * after the first: only k documents are ever kept, no matter how far down
+     * the ranking 'after' is.
+     *
+     * @param after  The last document already returned, or null to start at the top.
+     */
+    public IList<ScoredDocument> evaluate(PreparedQuery query, int k, ScoredDocument after) {
+        QueryTerms terms = new QueryTerms(query);
+        TopKCollector<ScoredDocument> topK = new TopKCollector<>(k);
+        if (topK.isFull() || terms.size == 0) {
+            return new DoubleLinkedList<>();
+        }
+        if (this.impactIndex != null && after == null && terms.size <= MAX_IMPACT_ORDERED_TERMS) {
+            return this.evaluateByImpact(terms, k);
+        }
+
+        int documentCount = this.documentFactors.length;
+        SharedThreshold threshold = new SharedThreshold();
+        if (this.pool == null) {
+            this.evaluateRange(terms, terms.lists, 0, documentCount, after, topK, threshold);
+        } else {
+            IList<ForkJoinTask<TopKCollector<ScoredDocument>>> tasks = new DoubleLinkedList<>();
+            for (int i = 0; i < this.numPartitions; i++) {
+                int from = (int) ((long) documentCount * i / this.numPartitions);
+                int to = (int) ((long) documentCount * (i + 1) / this.numPartitions);
+                tasks.add(this.pool.submit(() -> {
+                    TopKCollector<ScoredDocument> partial = new TopKCollector<>(k);
+                    this.evaluateRange(terms, terms.openLists(), from, to, after, partial, threshold);
+                    return partial;
+                }));
+            }
+            for (ForkJoinTask<TopKCollector<ScoredDocument>> task : tasks) {
+                for (ScoredDocument document : task.join().drainSorted()) {
+                    topK.offer(document);
+                }
+            }
+        }
+
+        return bestFirst(topK);
+    }
+
+    /**
+     * Returns the k highest-scoring documents that contain every given phrase and
+     * rank strictly below 'after' (if given), best result first.
+     *
+     * Only documents in every list of matches are scored. A document's score is
+     * its usual score, multiplied by 1 + ln(count) for every phrase, where count
+     * is the number of times the phrase occurs in it.
+     *
+     * @param phrases  The matches of each phrase; if empty, this is the same as
+     *                 evaluate(query, k, after).
+     */
+    public IList<ScoredDocument> evaluate(PreparedQuery query, IList<PhraseMatches> phrases,
+                                          int k, ScoredDocument after) {
+        if (phrases.isEmpty()) {
+            return this.evaluate(query, k, after);
+        }
+        QueryTerms terms = new QueryTerms(query);
+        TopKCollector<ScoredDocument> topK = new TopKCollector<>(k);
+        if (topK.isFull()) {
+            return new DoubleLinkedList<>();
+        }
+
+        PhraseMatches[] matches = new PhraseMatches[phrases.size()];
+        int index = 0;
+        for (PhraseMatches match : phrases) {
+            matches[index] = match;
+            index++;
+        }
+        int[] cursors = new int[matches.length];
+
+        // Every list is sorted by id, so we intersect them by walking the first
+        // one and moving every other list forward to each of its documents.
+        for (int i = 0; i < matches[0].size(); i++) {
+            int id = matches[0].getDocumentId(i);
+            double boost = 1.0 + Math.log(matches[0].getCount(i));
+            boolean inAll = true;
+            for (int j = 1; j < matches.length && inAll; j++) {
+                while (cursors[j] < matches[j].size() && matches[j].getDocumentId(cursors[j]) < id) {
+                    cursors[j]++;
+                }
+                if (cursors[j] < matches[j].size() && matches[j].getDocumentId(cursors[j]) == id) {
+                    boost *= 1.0 + Math.log(matches[j].getCount(cursors[j]));
+                } else {
+                    inAll = false;
+                }
+            }
+            if (!inAll) {
+                continue;
+            }
+
+            ScoredDocument document = this.scoreDocument(terms, id);
+            document = new ScoredDocument(id, document.getScore() * boost);
+            if (after == null || document.compareTo(after) < 0) {
+                topK.offer(document);
+            }
+        }
+
+        return bestFirst(topK);
+    }
+
+    /**
+     * Runs MaxScore over the documents whose ids are in the range [from, to),
+     * offering every document that ranks below 'after' (if given) and might make
+     * the top k to the given collector.
+     *
+     * @param lists  The query terms' posting lists, in the same order as terms.lists.
+     *               Lists may keep decoding state, so each thread needs its own.
+     */
+    private void evaluateRange(QueryTerms terms, PostingList[] lists, int from, int to, ScoredDocument after,
+                               TopKCollector<ScoredDocument> topK, SharedThreshold shared) {
+        int numTerms = terms.size;
+        int[] cursors = new int[numTerms];
+        double[] contributions = new double[numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            cursors[i] = lists[i].advance(0, from);
+        }
+
+        // Lists before firstEssential are "non-essential": a document that only
+        // appears in them can never beat the current threshold, so we only look
+        // for new candidates in the essential lists.
+        int firstEssential = 0;
+        double threshold = Double.NEGATIVE_INFINITY;
+
+        while (firstEssential < numTerms) {
+            // Other partitions may have found better results than we have
+            double global = shared.get();
+            if (global > threshold) {
+                threshold = global;
+                while (firstEssential < numTerms && terms.cumulativeBounds[firstEssential] < threshold) {
+                    firstEssential++;
+                }
+                if (firstEssential == numTerms) {
+                    break;
+                }
+            }
+
+            int current = to;
+            for (int i = firstEssential; i < numTerms; i++) {
+                if (cursors[i] < lists[i].size()) {
+                    current = Math.min(current, lists[i].getDocumentId(cursors[i]));
+                }
+            }
+            if (current >= to) {
+                break;
+            }
+
+            double factor = this.documentFactors[current];
+            double partial = 0.0;
+            for (int i = firstEssential; i < numTerms; i++) {
+                contributions[i] = 0.0;
+                if (cursors[i] < lists[i].size() && lists[i].getDocumentId(cursors[i]) == current) {
+                    contributions[i] = terms.weights[i] * lists[i].getWeight(cursors[i]);
+                    partial += contributions[i];
+                    cursors[i]++;
+                }
+            }
+
+            // Fill in the non-essential terms, best first, giving up as soon as
+            // the document can no longer make it into the top k.
+            boolean competitive = true;
+            for (int i = firstEssential - 1; i >= 0 && competitive; i--) {
+                if (partial * factor + terms.cumulativeBounds[i] < threshold) {
+                    competitive = false;
+                } else {
+                    contributions[i] = 0.0;
+                    cursors[i] = lists[i].advance(cursors[i], current);
+                    if (cursors[i] < lists[i].size() && lists[i].getDocumentId(cursors[i]) == current) {
+                        contributions[i] = terms.weights[i] * lists[i].getWeight(cursors[i]);
+                        partial += contributions[i];
+                    }
+                }
+            }
+            if (!competitive) {
+                continue;
+            }
+
+            // Which lists were essential depends on how far along we are, so we
+            // add up the final score in a fixed order. That way a document gets
+            // exactly the same score every time, which cursors rely on.
+            double dotProduct = 0.0;
+            for (int i = 0; i < numTerms; i++) {
+                dotProduct += contributions[i];
+            }
+            double score = dotProduct * factor;
+            if (score < threshold) {
+                continue;
+            }
+            ScoredDocument document = new ScoredDocument(current, score);
+            if (after != null && document.compareTo(after) >= 0) {
+                continue;
+            }
+            if (topK.offer(document) && topK.isFull()) {
+                threshold = topK.peekMin().getScore();
+                shared.raise(threshold);
+                while (firstEssential < numTerms && terms.cumulativeBounds[firstEssential] < threshold) {
+                    firstEssential++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the query score-at-a-time: repeatedly reads whichever unread
+     * posting contributes the most, adding it to its document's accumulated
+     * score. Every so often we check whether the k best accumulators are safe,
+     * meaning even the worst of them is strictly greater than the best score any
+     * other document could still reach. Once they are, we stop and rescore just
+     * those k documents exactly.
+     *
+     * Accumulators are only kept for documents we have read a posting of, so a
+     * query never costs time or memory proportional to the size of the corpus.
+     */
+    private IList<ScoredDocument> evaluateByImpact(QueryTerms terms, int k) {
+        int numTerms = terms.size;
+        ImpactOrderedIndex.ImpactList[] lists = new ImpactOrderedIndex.ImpactList[numTerms];
+        int[] cursors = new int[numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            lists[i] = this.impactIndex.getPostings(terms.terms[i]);
+        }
+
+        ScoreAccumulators accumulators = new ScoreAccumulators();
+
+        TopKCollector<ScoredDocument> candidates = null;
+        long nextCheck = k;
+        long processed = 0;
+        while (true) {
+            int best = -1;
+            double bestContribution = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < numTerms; i++) {
+                if (cursors[i] < lists[i].size()) {
+                    double contribution = terms.weights[i] * lists[i].getImpact(cursors[i]);
+                    if (contribution > bestContribution) {
+                        best = i;
+                        bestContribution = contribution;
+                    }
+                }
+            }
+            if (best == -1) {
+                // Every posting has been read, so every accumulator is complete
+                candidates = null;
+                break;
+            }
+
+            int id = lists[best].getDocumentId(cursors[best]);
+            cursors[best]++;
+            accumulators.add(id, bestContribution);
+
+            processed++;
+            if (processed >= nextCheck) {
+                // Checking costs time proportional to the number of documents seen
+                // so far, so we check exponentially less often.
+                nextCheck *= 2;
+                double remaining = 0.0;
+                for (int i = 0; i < numTerms; i++) {
+                    if (cursors[i] < lists[i].size()) {
+                        remaining += terms.weights[i] * lists[i].getImpact(cursors[i]);
+                    }
+                }
+                candidates = this.findSafeTopK(accumulators, remaining, k);
+                if (candidates != null) {
+                    break;
+                }
+            }
+        }
+
+        // Accumulators are summed in a different order than MaxScore's scores, and
+        // may be off in the last bit, so the final scores are always recomputed.
+        TopKCollector<ScoredDocument> topK = new TopKCollector<>(k);
+        if (candidates != null) {
+            for (ScoredDocument candidate : candidates.drainSorted()) {
+                topK.offer(this.scoreDocument(terms, candidate.getDocumentId()));
+            }
+        } else {
+            for (int i = 0; i < accumulators.size(); i++) {
+                topK.offer(this.scoreDocument(terms, accumulators.getDocumentId(i)));
+            }
+        }
+
+        return bestFirst(topK);
+    }
+
+    /**
+     * Returns the k documents with the highest accumulated scores if no other
+     * document can still overtake them, or null if we need to keep reading.
+     *
+     * @param remaining  The most any document can still gain from unread postings.
+     */
+    private TopKCollector<ScoredDocument> findSafeTopK(ScoreAccumulators accumulators, double remaining, int k) {
+        if (accumulators.size() < k) {
+            return null;
+        }
+        TopKCollector<ScoredDocument> topK = new TopKCollector<>(k);
+        for (int i = 0; i < accumulators.size(); i++) {
+            topK.offer(new ScoredDocument(accumulators.getDocumentId(i), accumulators.getScore(i)));
+        }
+
+        // Documents we have not seen yet can gain at most 'remaining'. The best
+        // seen document outside the top k is the (k+1)-th one, so we only need
+        // to find the largest accumulator that did not make it in.
+        double lowestKept = topK.peekMin().getScore();
+        if (remaining >= lowestKept) {
+            return null;
+        }
+        ScoredDocument lowest = topK.peekMin();
+        for (int i = 0; i < accumulators.size(); i++) {
+            double score = accumulators.getScore(i);
+            if (score + remaining >= lowestKept
+                    && new ScoredDocument(accumulators.getDocumentId(i), score).compareTo(lowest) < 0) {
+                return null;
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * Computes a single document's exact score, adding up the terms'
+     * contributions in the same order as evaluateRange does.
+     */
+    private ScoredDocument scoreDocument(QueryTerms terms, int id) {
+        double dotProduct = 0.0;
+        for (int i = 0; i < terms.size; i++) {
+            PostingList list = terms.lists[i];
+            int position = list.advance(0, id);
+            if (position < list.size() && list.getDocumentId(position) == id) {
+                dotProduct += terms.weights[i] * list.getWeight(position);
+            }
+        }
+        return new ScoredDocument(id, dotProduct * this.documentFactors[id]);
+    }
+
+    /**
+     * Empties the given collector, returning its contents best result first.
+     */
+    private static IList<ScoredDocument> bestFirst(TopKCollector<ScoredDocument> topK) {
+        IList<ScoredDocument> reversed = new DoubleLinkedList<>();
+        for (ScoredDocument document : topK.drainSorted()) {
+            reversed.insert(0, document);
+        }
+        return reversed;
+    }
+
+    /**
+     * The posting lists of a query's terms, along with everything MaxScore needs
+     * to know about them. Lists are ordered by increasing upper bound.
+     */
+    private class QueryTerms {
+        private String[] terms;
+        private PostingList[] lists;
+        private double[] weights;
+
+        // cumulativeBounds[i] is the most that lists 0 to i can add to a document's score
+        private double[] cumulativeBounds;
+        private int size;
+
+        public QueryTerms(PreparedQuery query) {
+            double queryScale = query.getNorm() == 0.0 ? 0.0 : 1.0 / query.getNorm();
+
+            this.terms = new String[query.size()];
+            this.lists = new PostingList[query.size()];
+            this.weights = new double[query.size()];
+            double[] upperBounds = new double[query.size()];
+            this.size = 0;
+            for (int term = 0; term < query.size(); term++) {
+                PostingList list = index.getPostings(query.getTerm(term));
+                if (list.size() > 0) {
+                    double weight = query.getWeight(term) * queryScale;
+                    double upperBound = weight * list.getMaxImpact();
+
+                    // Insertion sort, so the lists end up ordered by increasing upper bound
+                    int pos = this.size;
+                    while (pos > 0 && upperBounds[pos - 1] > upperBound) {
+                        this.terms[pos] = this.terms[pos - 1];
+                        this.lists[pos] = this.lists[pos - 1];
+                        this.weights[pos] = this.weights[pos - 1];
+                        upperBounds[pos] = upperBounds[pos - 1];
+                        pos--;
+                    }
+                    this.terms[pos] = query.getTerm(term);
+                    this.lists[pos] = list;
+                    this.weights[pos] = weight;
+                    upperBounds[pos] = upperBound;
+                    this.size++;
+                }
+            }
+
+            this.cumulativeBounds = new double[this.size];
+            for (int i = 0; i < this.size; i++) {
+                this.cumulativeBounds[i] = upperBounds[i] + (i > 0 ? this.cumulativeBounds[i - 1] : 0.0);
+            }
+        }
+
+        /**
+         * Fetches the postings of every term again, in the same order as this.lists,
+         * so another thread can read them.
+         */
+        public PostingList[] openLists() {
+            PostingList[] output = new PostingList[this.size];
+            for (int i = 0; i < this.size; i++) {
+                output[i] = index.getPostings(this.terms[i]);
+            }
+            return output;
+        }
+    }
+
+    /**
+     * The best k-th score found by any partition so far. Every partition's k-th
+     * score is a lower bound on the final k-th score, so all partitions can prune
+     * against the largest one.
+     */
+    private static class SharedThreshold {
+        // We store the raw bits of the double so we can update it without locking.
+        private AtomicLong bits = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+
+        public double get() {
+            return Double.longBitsToDouble(this.bits.get());
+        }
+
+        public void raise(double threshold) {
+            this.bits.accumulateAndGet(Double.doubleToLongBits(threshold), (current, proposed) ->
+                    Double.longBitsToDouble(proposed) > Double.longBitsToDouble(current) ? proposed : current);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package search.index;
+
+/**
+ * Limits how fast some work is done, by making whoever does it sleep whenever
+ * it gets ahead of a fixed number of units per second.
+ */
+public class RateLimiter {
+    private double unitsPerSecond;
+
+    // The time, in nanoseconds, at which all the work acquired so far is allowed to be done
+    private long nextFreeNanos;
+
+    /**
+     * @throws IllegalArgumentException  if unitsPerSecond is not positive
+     */
+    public RateLimiter(double unitsPerSecond) {
+        if (!(unitsPerSecond > 0.0)) {
+            throw new IllegalArgumentException("The rate must be positive");
+        }
+        this.unitsPerSecond = unitsPerSecond;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * Waits until the given number of units of work may be done, and returns how
+     * many milliseconds we actually slept. If the thread is interrupted, we stop
+     * waiting early and leave its interrupt flag set.
+     *
+     * We never let unused capacity pile up for more than a second, so resuming
+     * after a long pause does not allow a burst of work.
+     */
+    public synchronized long acquire(long units) {
+        long now = System.nanoTime();
+        this.nextFreeNanos = Math.max(this.nextFreeNanos, now - 1_000_000_000L);
+        this.nextFreeNanos += (long) (units / this.unitsPerSecond * 1e9);
+
+        long waitNanos = this.nextFreeNanos - now;
+        if (waitNanos <= 0) {
+            return 0;
+        }
+        try {
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return (System.nanoTime() - now) / 1_000_000;
+    }
+}
@@ -0,0 +1,126 @@
+package search.index;
+
+import java.util.Arrays;
+
+/**
+ * The partial scores of the documents seen while answering a query
+ * score-at-a-time, keyed by document id.
+ *
+ * Documents and their scores are kept in plain arrays, in the order they were
+ * first added, and found through a small open-addressing table that holds
+ * positions in those arrays. Both start small and grow with the number of
+ * distinct documents added, so a query costs time and memory proportional to
+ * the postings it actually reads rather than to the size of the corpus.
+ *
+ * TermCounter solves a similar problem for terms. This class is separate so
+ * that document ids never need boxing, hashCode() or equals().
+ */
+class ScoreAccumulators {
+    private static final int INITIAL_CAPACITY = 32;
+
+    // The documents added so far and their scores, in the order they were first added
+    private int[] ids;
+    private double[] scores;
+    private int size;
+
+    // table[slot] is one more than the position in 'ids' of the document in that
+    // slot, or 0 if the slot is free. It always has twice as many slots as 'ids'
+    // has room for, so it never fills up.
+    private int[] table;
+
+    public ScoreAccumulators() {
+        this.ids = new int[INITIAL_CAPACITY];
+        this.scores = new double[INITIAL_CAPACITY];
+        this.size = 0;
+        this.table = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Adds the given amount to the score of the document with the given id.
+     *
+     * @throws IllegalArgumentException if id < 0
+     */
+    public void add(int id, double amount) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Document ids must not be negative");
+        }
+        int mask = this.table.length - 1;
+        int slot = spread(id) & mask;
+        while (this.table[slot] != 0) {
+            int i = this.table[slot] - 1;
+            if (this.ids[i] == id) {
+                this.scores[i] += amount;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.ids[this.size] = id;
+        this.scores[this.size] = amount;
+        this.size++;
+        this.table[slot] = this.size;
+        if (this.size == this.ids.length) {
+            this.grow();
+        }
+    }
+
+    /**
+     * Returns the number of distinct documents added.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the id of the i-th distinct document, in the order they were first added.
+     *
+     * @throws IndexOutOfBoundsException if i < 0 or i >= this.size()
+     */
+    public int getDocumentId(int i) {
+        this.checkIndex(i);
+        return this.ids[i];
+    }
+
+    /**
+     * Returns the accumulated score of the i-th distinct document.
+     *
+     * @throws IndexOutOfBoundsException if i < 0 or i >= this.size()
+     */
+    public double getScore(int i) {
+        this.checkIndex(i);
+        return this.scores[i];
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Doubles the room for documents, and rebuilds the table to match. Scores
+     * keep their positions, so only the table needs rehashing.
+     */
+    private void grow() {
+        this.ids = Arrays.copyOf(this.ids, this.ids.length * 2);
+        this.scores = Arrays.copyOf(this.scores, this.ids.length);
+        this.table = new int[this.ids.length * 2];
+
+        int mask = this.table.length - 1;
+        for (int i = 0; i < this.size; i++) {
+            int slot = spread(this.ids[i]) & mask;
+            while (this.table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Scatters consecutive ids, which are common in a posting list, across the
+     * low bits used to pick a slot.
+     */
+    private static int spread(int id) {
+        int hash = id * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,70 @@
+package search.index;
+
+/**
+ * A document id paired with the score it received for some query.
+ *
+ * This is the lightweight counterpart of the Result class: we only build
+ * a Result (which needs the page's summary) for documents that actually
+ * end up being shown to the user.
+ */
+public class ScoredDocument implements Comparable<ScoredDocument> {
+    private int documentId;
+    private double score;
+
+    public ScoredDocument(int documentId, double score) {
+        this.documentId = documentId;
+        this.score = score;
+    }
+
+    /**
+     * Returns the id of the scored document.
+     */
+    public int getDocumentId() {
+        return this.documentId;
+    }
+
+    /**
+     * Returns the score of the document.
+     */
+    public double getScore() {
+        return this.score;
+    }
+
+    /**
+     * Compares two scored documents by their score.
+     *
+     * If two documents have the same score, the one with the smaller id is
+     * considered to be the "bigger" (better) one, so results are ordered the
+     * same way every time.
+     */
+    @Override
+    public int compareTo(ScoredDocument other) {
+        int result = Double.compare(this.score, other.score);
+        if (result == 0) {
+            result = Integer.compare(other.documentId, this.documentId);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (o == null || getClass() != o.getClass()) { return false; }
+
+        ScoredDocument that = (ScoredDocument) o;
+
+        if (documentId != that.documentId) { return false; }
+        return Double.compare(that.score, score) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        long temp = Double.doubleToLongBits(score);
+        return 31 * documentId + (int) (temp ^ (temp >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return this.documentId + "=" + this.score;
+    }
+}
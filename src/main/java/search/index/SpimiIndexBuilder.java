@@ -0,0 +1,388 @@
+package search.index;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.ArrayHeap;
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.IPriorityQueue;
+import search.analyzers.PageRankAnalyzer;
+import search.models.Webpage;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Builds the index of a corpus that does not fit in memory, using single-pass
+ * in-memory indexing (SPIMI).
+ *
+ * Pages are added one at a time, and each gets the next document id. Their
+ * words are added to an in-memory positional index until it takes up about
+ * memoryBudget bytes; it is then sorted by term, written to a temporary "run"
+ * file, and emptied. Since ids only ever grow, each run holds a range of ids
+ * after those of the runs before it. Once every page is added, finish() merges
+ * the runs k ways by term: the postings of a term are simply its postings in
+ * each run, in run order.
+ *
+ * The merged positions are written to one more temporary file, laid out the way
+ * MappedPositionalIndex reads them (see PositionsFileWriter). The TF-IDF
+ * weights are then computed from the positions while the IndexFile is written
+ * (see TfIdfIndex), so no posting list is ever held on the heap in full. Links
+ * are written to a temporary file as well, and only turned into a graph of
+ * document ids once every page has an id.
+ *
+ * Besides the buffered positions, only the DocumentRegistry, a few numbers per
+ * document, and the names of the terms while the index file is written are
+ * kept on the heap, however large the corpus is.
+ *
+ * Pages may be added from several threads at once. Every temporary file is
+ * created in the folder given to the constructor, and deleted by close().
+ */
+public class SpimiIndexBuilder implements AutoCloseable {
+    // Rough estimates of the heap taken by a buffered term (not counting its
+    // characters), posting and position, including the slack left by growing
+    // the arrays holding them.
+    private static final long BYTES_PER_TERM = 128;
+    private static final long BYTES_PER_POSTING = 16;
+    private static final long BYTES_PER_POSITION = 8;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Path tempFolder;
+    private long memoryBudget;
+    private IList<Path> tempFiles;
+    private boolean finished;
+
+    private DocumentRegistry registry;
+    // lengths[id] is the number of words of the document with that id
+    private int[] lengths;
+
+    private IDictionary<String, ArrayPositionalPostingList> buffer;
+    private long bufferedBytes;
+    private IList<Path> runs;
+
+    // For each document in id order, its number of links followed by each link
+    private Path linksPath;
+    private IndexFile.SectionWriter links;
+
+    /**
+     * @param tempFolder    Where to create temporary files.
+     * @param memoryBudget  About how many bytes of positions to buffer before
+     *                      writing them to a run.
+     * @throws IOException               if the first temporary file could not be created
+     * @throws IllegalArgumentException  if memoryBudget < 1
+     */
+    public SpimiIndexBuilder(Path tempFolder, long memoryBudget) throws IOException {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        this.tempFolder = tempFolder;
+        this.memoryBudget = memoryBudget;
+        this.tempFiles = new ArrayBackedList<>();
+        this.finished = false;
+        this.registry = new DocumentRegistry();
+        this.lengths = new int[INITIAL_CAPACITY];
+        this.buffer = new ChainedHashDictionary<>();
+        this.bufferedBytes = 0;
+        this.runs = new ArrayBackedList<>();
+        this.linksPath = this.createTempFile("spimi-links-");
+        this.links = new IndexFile.SectionWriter(Files.newOutputStream(this.linksPath));
+    }
+
+    /**
+     * Gives the given page the next document id and indexes it. A page with the
+     * same URI as one added before is ignored.
+     *
+     * @throws UncheckedIOException   if a run could not be written
+     * @throws IllegalStateException  if finish() was already called
+     */
+    public synchronized void add(Webpage page) {
+        if (this.finished) {
+            throw new IllegalStateException("The index was already built");
+        }
+        if (this.registry.contains(page.getUri())) {
+            return;
+        }
+        int id = this.registry.register(page.getSummary());
+        if (id == this.lengths.length) {
+            this.lengths = Arrays.copyOf(this.lengths, this.lengths.length * 2);
+        }
+
+        int position = 0;
+        for (String word : page.getWords()) {
+            ArrayPositionalPostingList list = this.buffer.getOrDefault(word, null);
+            if (list == null) {
+                list = new ArrayPositionalPostingList();
+                this.buffer.put(word, list);
+                this.bufferedBytes += BYTES_PER_TERM + 2L * word.length();
+            }
+            int size = list.size();
+            list.add(id, position);
+            if (list.size() > size) {
+                this.bufferedBytes += BYTES_PER_POSTING;
+            }
+            this.bufferedBytes += BYTES_PER_POSITION;
+            position++;
+        }
+        this.lengths[id] = position;
+
+        try {
+            IList<URI> pageLinks = page.getLinks();
+            this.links.writeInt(pageLinks.size());
+            for (URI link : pageLinks) {
+                this.links.writeString(link.toString());
+            }
+            if (this.bufferedBytes >= this.memoryBudget) {
+                this.spill();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the number of runs written so far.
+     */
+    public synchronized int getRunCount() {
+        return this.runs.size();
+    }
+
+    /**
+     * Merges the runs and computes the page ranks, and returns the index of every
+     * page added. The returned index reads its postings out of this builder's
+     * temporary files, so write it somewhere before closing this builder.
+     *
+     * @param decay    The page rank decay factor. See PageRankAnalyzer.
+     * @param epsilon  When page ranks change by at most this much, stop iterating.
+     * @param limit    The maximum number of page rank iterations.
+     * @throws IllegalStateException  if finish() was already called
+     */
+    public synchronized IndexFile finish(double decay, double epsilon, int limit) throws IOException {
+        if (this.finished) {
+            throw new IllegalStateException("The index was already built");
+        }
+        this.finished = true;
+        if (!this.buffer.isEmpty()) {
+            this.spill();
+        }
+        this.buffer = null;
+        this.links.close();
+
+        int documentCount = this.registry.size();
+        PageRankAnalyzer pageRankAnalyzer = new PageRankAnalyzer(
+                this.registry, this.readGraph(), decay, epsilon, limit);
+        double[] pageRanks = new double[documentCount];
+        for (int id = 0; id < documentCount; id++) {
+            pageRanks[id] = pageRankAnalyzer.computePageRank(id);
+        }
+
+        PositionalIndex positions = this.merge();
+        return new IndexFile(
+                this.registry,
+                documentCount,
+                new TfIdfIndex(positions, this.lengths, documentCount),
+                positions,
+                pageRanks);
+    }
+
+    /**
+     * Deletes every temporary file. A file the operating system won't let us
+     * delete yet, such as one that is still mapped on Windows, is deleted when
+     * the JVM exits instead.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.links.close();
+        for (Path path : this.tempFiles) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                path.toFile().deleteOnExit();
+            }
+        }
+        this.tempFiles = new ArrayBackedList<>();
+    }
+
+    private Path createTempFile(String prefix) throws IOException {
+        Path path = Files.createTempFile(this.tempFolder, prefix, ".tmp");
+        this.tempFiles.add(path);
+        return path;
+    }
+
+    /**
+     * Writes every buffered term to a new run, sorted the way MappedTermTable
+     * sorts terms, and empties the buffer. For each term, a run holds the length
+     * of its UTF-8 encoded name, the name, the number of postings, then the
+     * postings as written by writePostings.
+     */
+    private void spill() throws IOException {
+        BufferedTerm[] terms = new BufferedTerm[this.buffer.size()];
+        int count = 0;
+        for (KVPair<String, ArrayPositionalPostingList> entry : this.buffer) {
+            terms[count] = new BufferedTerm(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue());
+            count++;
+        }
+        Arrays.sort(terms, (a, b) -> IndexFile.compareUnsigned(a.name, b.name));
+
+        Path run = this.createTempFile("spimi-run-");
+        try (IndexFile.SectionWriter out = new IndexFile.SectionWriter(Files.newOutputStream(run))) {
+            PositionalPostingList[] lists = new PositionalPostingList[1];
+            for (BufferedTerm term : terms) {
+                out.writeInt(term.name.length);
+                out.write(term.name);
+                out.writeInt(term.postings.size());
+                lists[0] = term.postings;
+                PositionsFileWriter.writePostings(out, lists, 1);
+            }
+        }
+        this.runs.add(run);
+        this.buffer = new ChainedHashDictionary<>();
+        this.bufferedBytes = 0;
+    }
+
+    /**
+     * Merges every run into a single file holding the postings of every term,
+     * then their names, then a MappedTermTable pointing at them, and returns the
+     * positional index it holds.
+     */
+    private PositionalIndex merge() throws IOException {
+        IPriorityQueue<Run> heap = new ArrayHeap<>();
+        for (int i = 0; i < this.runs.size(); i++) {
+            Run run = new Run(new MappedFile(this.runs.get(i)), i);
+            if (run.advance()) {
+                heap.insert(run);
+            }
+        }
+
+        try (PositionsFileWriter out = new PositionsFileWriter(this.createTempFile("spimi-merged-"))) {
+            Run[] segments = new Run[this.runs.size()];
+            PositionalPostingList[] lists = new PositionalPostingList[this.runs.size()];
+            while (!heap.isEmpty()) {
+                // Runs holding the same term come off the heap in run order,
+                // so their postings are in increasing id order.
+                int count = 0;
+                segments[count] = heap.removeMin();
+                count++;
+                while (!heap.isEmpty() && IndexFile.compareUnsigned(heap.peekMin().term, segments[0].term) == 0) {
+                    segments[count] = heap.removeMin();
+                    count++;
+                }
+
+                for (int i = 0; i < count; i++) {
+                    lists[i] = segments[i].postings;
+                }
+                out.addTerm(segments[0].term, lists, count);
+
+                for (int i = 0; i < count; i++) {
+                    if (segments[i].advance()) {
+                        heap.insert(segments[i]);
+                    }
+                }
+            }
+            return out.finish();
+        }
+    }
+
+    /**
+     * Reads back the links of every document, and returns the graph PageRankAnalyzer
+     * expects. Links to pages that were never added are dropped, as are
+     * duplicate links and links from a page to itself.
+     */
+    private int[][] readGraph() throws IOException {
+        int documentCount = this.registry.size();
+        int[][] graph = new int[documentCount][];
+
+        // lastLinkedFrom[target] == source + 1 iff source already links to target
+        int[] lastLinkedFrom = new int[documentCount];
+        int[] targets = new int[documentCount];
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(this.linksPath)))) {
+            for (int source = 0; source < documentCount; source++) {
+                int linkCount = in.readInt();
+                int count = 0;
+                for (int i = 0; i < linkCount; i++) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    URI link = URI.create(new String(bytes, StandardCharsets.UTF_8));
+                    if (this.registry.contains(link)) {
+                        int target = this.registry.getId(link);
+                        if (target != source && lastLinkedFrom[target] != source + 1) {
+                            lastLinkedFrom[target] = source + 1;
+                            targets[count] = target;
+                            count++;
+                        }
+                    }
+                }
+                graph[source] = Arrays.copyOf(targets, count);
+            }
+        }
+        return graph;
+    }
+
+    private static class BufferedTerm {
+        private final byte[] name;
+        private final ArrayPositionalPostingList postings;
+
+        public BufferedTerm(byte[] name, ArrayPositionalPostingList postings) {
+            this.name = name;
+            this.postings = postings;
+        }
+    }
+
+    /**
+     * Reads the terms of a run one at a time, in order. Runs are ordered by their
+     * current term, and then by the order they were written in.
+     */
+    private static class Run implements Comparable<Run> {
+        private final MappedFile file;
+        private final int index;
+        private long next;
+
+        private byte[] term;
+        private PositionalPostingList postings;
+
+        public Run(MappedFile file, int index) {
+            this.file = file;
+            this.index = index;
+            this.next = 0;
+        }
+
+        /**
+         * Moves on to the next term, returning 'false' if there is none.
+         */
+        public boolean advance() {
+            if (this.next >= this.file.size()) {
+                this.term = null;
+                this.postings = null;
+                return false;
+            }
+            this.term = new byte[this.file.getInt(this.next)];
+            this.file.getBytes(this.next + Integer.BYTES, this.term, 0, this.term.length);
+            long offset = this.next + Integer.BYTES + this.term.length;
+            int size = this.file.getInt(offset);
+            offset += Integer.BYTES;
+            this.postings = new MappedPositionalPostingList(this.file, offset, size);
+
+            // Skip the ids and position starts, then as many positions as the last start says
+            long starts = offset + (long) Integer.BYTES * size;
+            int positionCount = this.file.getInt(starts + (long) Integer.BYTES * size);
+            this.next = starts + (long) Integer.BYTES * (size + 1) + (long) Integer.BYTES * positionCount;
+            return true;
+        }
+
+        @Override
+        public int compareTo(Run other) {
+            int cmp = IndexFile.compareUnsigned(this.term, other.term);
+            return cmp != 0 ? cmp : Integer.compare(this.index, other.index);
+        }
+    }
+}
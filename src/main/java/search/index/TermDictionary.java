@@ -0,0 +1,266 @@
+package search.index;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, sorted dictionary of terms. Every term is given a term id (its
+ * position in sorted order), and maps to the number of documents containing it
+ * and to where its postings are stored.
+ *
+ * Terms are front-coded in blocks of BLOCK_SIZE: the first term of each block
+ * is stored in full, and every other term as the length of the prefix it
+ * shares with the term before it, followed by the rest of its characters.
+ * Sorted vocabularies share long prefixes, so this is much smaller than
+ * keeping a String object per term, let alone a hash table of them.
+ *
+ * A term is found by binary searching the blocks' first terms, then scanning
+ * one block. Lookups compare characters in place and take any CharSequence,
+ * so they never allocate.
+ */
+public class TermDictionary {
+    public static final int BLOCK_SIZE = 16;
+
+    // Lengths of at least this much are stored in two chars; see writeLength
+    private static final int LONG_LENGTH = 0x8000;
+
+    // The encoded terms. Each block starts with the length and characters of
+    // its first term; every other term is stored as its shared prefix length,
+    // suffix length and suffix characters.
+    private char[] data;
+
+    // blockStarts[b] is the index in data where block b starts
+    private int[] blockStarts;
+
+    private int[] documentFrequencies;
+    private long[] postingsOffsets;
+    private int size;
+
+    /**
+     * Builds a dictionary of the given terms.
+     *
+     * @param terms                The terms, sorted as by String.compareTo, without duplicates.
+     * @param documentFrequencies  The number of documents containing each term.
+     * @param postingsOffsets      Where each term's postings are stored. What this
+     *                             means is up to whoever uses the dictionary.
+     * @throws IllegalArgumentException  if the terms are not sorted or not unique, or if
+     *                                   the arrays do not all have the same length
+     */
+    public TermDictionary(String[] terms, int[] documentFrequencies, long[] postingsOffsets) {
+        if (documentFrequencies.length != terms.length || postingsOffsets.length != terms.length) {
+            throw new IllegalArgumentException("Every term must have a document frequency and offset");
+        }
+        this.size = terms.length;
+        this.documentFrequencies = documentFrequencies.clone();
+        this.postingsOffsets = postingsOffsets.clone();
+        this.blockStarts = new int[(this.size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+
+        char[] output = new char[16];
+        int position = 0;
+        for (int i = 0; i < this.size; i++) {
+            String term = terms[i];
+            if (i > 0 && terms[i - 1].compareTo(term) >= 0) {
+                throw new IllegalArgumentException("Terms must be sorted and unique");
+            }
+            int shared = 0;
+            if (i % BLOCK_SIZE == 0) {
+                this.blockStarts[i / BLOCK_SIZE] = position;
+            } else {
+                String previous = terms[i - 1];
+                int limit = Math.min(previous.length(), term.length());
+                while (shared < limit && previous.charAt(shared) == term.charAt(shared)) {
+                    shared++;
+                }
+            }
+
+            // At most 2 chars for each length, plus the suffix
+            int needed = position + 4 + term.length() - shared;
+            if (needed > output.length) {
+                output = Arrays.copyOf(output, Math.max(needed, output.length * 2));
+            }
+            if (i % BLOCK_SIZE != 0) {
+                position = writeLength(output, position, shared);
+            }
+            position = writeLength(output, position, term.length() - shared);
+            term.getChars(shared, term.length(), output, position);
+            position += term.length() - shared;
+        }
+        this.data = Arrays.copyOf(output, position);
+    }
+
+    /**
+     * Returns the id of the given term, or -1 if it is not in this dictionary.
+     */
+    public int find(CharSequence term) {
+        if (this.size == 0) {
+            return -1;
+        }
+
+        // Find the last block whose first term is at most the given one
+        int low = 0;
+        int high = this.blockStarts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (this.compareFirstTerm(mid, term) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int block = low;
+
+        // Scan the block. We track how many leading characters the previous term
+        // shares with the one we want, so each term's suffix is only compared
+        // when its shared prefix could make it a match.
+        int position = this.blockStarts[block];
+        int length = readLength(this.data, position);
+        position += lengthSize(length);
+        int matched = matchLength(this.data, position, length, term, 0);
+        if (matched == length && matched == term.length()) {
+            return block * BLOCK_SIZE;
+        }
+        if (matched < term.length() && (matched == length || this.data[position + matched] < term.charAt(matched))) {
+            position += length;
+        } else {
+            return -1;
+        }
+
+        int end = Math.min((block + 1) * BLOCK_SIZE, this.size);
+        for (int id = block * BLOCK_SIZE + 1; id < end; id++) {
+            int shared = readLength(this.data, position);
+            position += lengthSize(shared);
+            int suffix = readLength(this.data, position);
+            position += lengthSize(suffix);
+
+            if (shared < matched) {
+                // This term differs from the previous one at a character where the
+                // previous one still matched, so it sorts after the term we want.
+                return -1;
+            } else if (shared == matched) {
+                int more = matchLength(this.data, position, suffix, term, matched);
+                matched += more;
+                if (more == suffix && matched == term.length()) {
+                    return id;
+                }
+                if (matched == term.length() || (more < suffix && this.data[position + more] > term.charAt(matched))) {
+                    return -1;
+                }
+            }
+            // If shared > matched, this term still sorts before the one we want
+            position += suffix;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the term with the given id.
+     *
+     * @throws IndexOutOfBoundsException if id < 0 or id >= this.size()
+     */
+    public String getTerm(int id) {
+        this.checkId(id);
+        int position = this.blockStarts[id / BLOCK_SIZE];
+        int length = readLength(this.data, position);
+        position += lengthSize(length);
+        char[] term = Arrays.copyOfRange(this.data, position, position + length);
+        position += length;
+        for (int i = id / BLOCK_SIZE * BLOCK_SIZE + 1; i <= id; i++) {
+            int shared = readLength(this.data, position);
+            position += lengthSize(shared);
+            int suffix = readLength(this.data, position);
+            position += lengthSize(suffix);
+            if (shared + suffix > term.length) {
+                term = Arrays.copyOf(term, shared + suffix);
+            }
+            System.arraycopy(this.data, position, term, shared, suffix);
+            length = shared + suffix;
+            position += suffix;
+        }
+        return new String(term, 0, length);
+    }
+
+    /**
+     * Returns the number of documents containing the term with the given id.
+     *
+     * @throws IndexOutOfBoundsException if id < 0 or id >= this.size()
+     */
+    public int getDocumentFrequency(int id) {
+        this.checkId(id);
+        return this.documentFrequencies[id];
+    }
+
+    /**
+     * Returns where the postings of the term with the given id are stored.
+     *
+     * @throws IndexOutOfBoundsException if id < 0 or id >= this.size()
+     */
+    public long getPostingsOffset(int id) {
+        this.checkId(id);
+        return this.postingsOffsets[id];
+    }
+
+    /**
+     * Returns the number of terms in this dictionary.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Compares the first term of the given block against the given term.
+     */
+    private int compareFirstTerm(int block, CharSequence term) {
+        int position = this.blockStarts[block];
+        int length = readLength(this.data, position);
+        position += lengthSize(length);
+        int matched = matchLength(this.data, position, length, term, 0);
+        if (matched < length && matched < term.length()) {
+            return Character.compare(this.data[position + matched], term.charAt(matched));
+        }
+        return Integer.compare(length, term.length());
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Returns how many of the 'length' characters at data[position] match the
+     * characters of term starting at index 'from'.
+     */
+    private static int matchLength(char[] data, int position, int length, CharSequence term, int from) {
+        int limit = Math.min(length, term.length() - from);
+        int i = 0;
+        while (i < limit && data[position + i] == term.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Stores a length in one char if it is small enough, or two otherwise,
+     * setting the first char's high bit to tell the two apart.
+     */
+    private static int writeLength(char[] output, int position, int length) {
+        if (length < LONG_LENGTH) {
+            output[position] = (char) length;
+            return position + 1;
+        }
+        output[position] = (char) (LONG_LENGTH | (length >>> 16));
+        output[position + 1] = (char) length;
+        return position + 2;
+    }
+
+    private static int readLength(char[] data, int position) {
+        char first = data[position];
+        if (first < LONG_LENGTH) {
+            return first;
+        }
+        return ((first & ~LONG_LENGTH) << 16) | data[position + 1];
+    }
+
+    private static int lengthSize(int length) {
+        return length < LONG_LENGTH ? 1 : 2;
+    }
+}
@@ -0,0 +1,132 @@
+package search.index;
+
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+
+import java.util.Iterator;
+
+/**
+ * The TF-IDF weights of a positional index, computed from its term
+ * frequencies as each posting is read, the same way TfIdfAnalyzer does.
+ *
+ * SpimiIndexBuilder and IndexWriter use this to write an IndexFile without
+ * holding every weight on the heap. It is a complete index, though: serving it
+ * directly works too, just more slowly than a mapped one.
+ */
+class TfIdfIndex implements InvertedIndex {
+    private PositionalIndex positions;
+    private int[] lengths;
+    private int documentCount;
+    private double[] norms;
+
+    // The maximum impact of every term's postings, or null if computeMaxImpacts
+    // was never called. Posting lists are created on demand, so they can't
+    // keep it themselves.
+    private IDictionary<String, Double> maxImpacts;
+
+    /**
+     * @param lengths        lengths[id] is the number of words of the document with that id.
+     * @param documentCount  The number of documents the IDF scores are computed over.
+     */
+    public TfIdfIndex(PositionalIndex positions, int[] lengths, int documentCount) {
+        this.positions = positions;
+        this.lengths = lengths;
+        this.documentCount = documentCount;
+
+        double[] squaredNorms = new double[documentCount];
+        for (KVPair<String, PostingList> entry : this) {
+            PostingList list = entry.getValue();
+            for (int i = 0; i < list.size(); i++) {
+                squaredNorms[list.getDocumentId(i)] += Math.pow(list.getWeight(i), 2);
+            }
+        }
+        this.norms = new double[documentCount];
+        for (int id = 0; id < documentCount; id++) {
+            this.norms[id] = Math.sqrt(squaredNorms[id]);
+        }
+    }
+
+    @Override
+    public PostingList getPostings(String term) {
+        return this.wrap(term, this.positions.getPostings(term));
+    }
+
+    private PostingList wrap(String term, PositionalPostingList positions) {
+        PostingList list = new TfIdfPostingList(positions);
+        if (this.maxImpacts != null) {
+            list.setMaxImpact(this.maxImpacts.getOrDefault(term, 0.0));
+        }
+        return list;
+    }
+
+    @Override
+    public double getDocumentNorm(int documentId) {
+        return this.norms[documentId];
+    }
+
+    @Override
+    public void computeMaxImpacts(double[] documentFactors) {
+        IDictionary<String, Double> impacts = new ChainedHashDictionary<>();
+        for (KVPair<String, PositionalPostingList> entry : this.positions) {
+            PostingList list = new TfIdfPostingList(entry.getValue());
+            list.computeMaxImpact(documentFactors);
+            impacts.put(entry.getKey(), list.getMaxImpact());
+        }
+        this.maxImpacts = impacts;
+    }
+
+    @Override
+    public Iterator<KVPair<String, PostingList>> iterator() {
+        Iterator<KVPair<String, PositionalPostingList>> iter = this.positions.iterator();
+        return new Iterator<KVPair<String, PostingList>>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public KVPair<String, PostingList> next() {
+                KVPair<String, PositionalPostingList> entry = iter.next();
+                return new KVPair<>(entry.getKey(), wrap(entry.getKey(), entry.getValue()));
+            }
+        };
+    }
+
+    @Override
+    public int termCount() {
+        return this.positions.termCount();
+    }
+
+    @Override
+    public int documentCount() {
+        return this.documentCount;
+    }
+
+    private class TfIdfPostingList extends PostingList {
+        private PositionalPostingList positions;
+
+        public TfIdfPostingList(PositionalPostingList positions) {
+            this.positions = positions;
+        }
+
+        @Override
+        public int getDocumentId(int index) {
+            return this.positions.getDocumentId(index);
+        }
+
+        @Override
+        public double getWeight(int index) {
+            double documentFrequency = this.positions.size();
+            double termFrequency = this.positions.getFrequency(index);
+            int length = lengths[this.positions.getDocumentId(index)];
+            // a * ln(b) == ln(b ^ a)
+            return Math.log(Math.pow(documentCount / documentFrequency, termFrequency / length));
+        }
+
+        @Override
+        public int size() {
+            return this.positions.size();
+        }
+    }
+}
@@ -50,15 +50,12 @@ public class Bridge {
 
         @Override
         public BinaryOperator<IList<T>> combiner() {
+            // Adds b's items to a, instead of copying both
             return (a, b) -> {
-                IList<T> out = new DoubleLinkedList<>();
-                for (T i : a) {
-                    out.add(i);
-                }
                 for (T i : b) {
-                    out.add(i);
+                    a.add(i);
                 }
-                return out;
+                return a;
             };
         }
 
@@ -86,15 +83,12 @@ public class Bridge {
 
         @Override
         public BinaryOperator<ISet<T>> combiner() {
+            // Adds b's items to a, instead of copying both
             return (a, b) -> {
-                ISet<T> out = new ChainedHashSet<>();
-                for (T i : a) {
-                    out.add(i);
-                }
                 for (T i : b) {
-                    out.add(i);
+                    a.add(i);
                 }
-                return out;
+                return a;
             };
         }
 
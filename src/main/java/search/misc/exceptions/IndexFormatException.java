@@ -0,0 +1,19 @@
+package search.misc.exceptions;
+
+public class IndexFormatException extends RuntimeException {
+    public IndexFormatException() {
+        super();
+    }
+
+    public IndexFormatException(String message) {
+        super(message);
+    }
+
+    public IndexFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public IndexFormatException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,57 @@
+package search.models;
+
+import datastructures.interfaces.IList;
+
+/**
+ * A sequence of words that must appear in a document in the given order.
+ *
+ * The slop is the number of extra words allowed between the first and last
+ * word of the phrase: a slop of 0 means the words must appear right next to
+ * each other, while "fast car"~2 also matches "fast red car" and "fast and
+ * shiny car".
+ */
+public class Phrase {
+    private IList<String> words;
+    private int slop;
+
+    /**
+     * @throws IllegalArgumentException  if the phrase has no words or the slop is negative
+     */
+    public Phrase(IList<String> words, int slop) {
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException("A phrase needs at least one word");
+        }
+        if (slop < 0) {
+            throw new IllegalArgumentException("Slop must not be negative");
+        }
+        this.words = words;
+        this.slop = slop;
+    }
+
+    public IList<String> getWords() {
+        return this.words;
+    }
+
+    public int getSlop() {
+        return this.slop;
+    }
+
+    /**
+     * Returns this phrase the way it would be written in a query, for example "fast car"~2.
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("\"");
+        for (String word : this.words) {
+            if (out.length() > 1) {
+                out.append(' ');
+            }
+            out.append(word);
+        }
+        out.append('"');
+        if (this.slop > 0) {
+            out.append('~').append(this.slop);
+        }
+        return out.toString();
+    }
+}
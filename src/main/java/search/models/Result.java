@@ -9,10 +9,20 @@ import java.net.URI;
 public class Result implements Comparable<Result> {
     private WebpageSummary webpageSummary;
     private double score;
+    private int documentId;
 
     public Result(WebpageSummary summary, double score) {
+        this(summary, score, -1);
+    }
+
+    /**
+     * Constructs a result for the webpage with the given document id. The id
+     * is what lets us build a SearchCursor pointing just after this result.
+     */
+    public Result(WebpageSummary summary, double score, int documentId) {
         this.webpageSummary = summary;
         this.score = score;
+        this.documentId = documentId;
     }
 
     /**
@@ -29,6 +39,13 @@ public class Result implements Comparable<Result> {
         return this.score;
     }
 
+    /**
+     * Returns the webpage's document id, or -1 if it is unknown.
+     */
+    public int getDocumentId() {
+        return this.documentId;
+    }
+
     /**
      * Returns this webpage's title
      */
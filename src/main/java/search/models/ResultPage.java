@@ -0,0 +1,46 @@
+package search.models;
+
+import datastructures.interfaces.IList;
+
+/**
+ * Represents one page of search results, along with the cursor needed to
+ * fetch the page after it.
+ */
+public class ResultPage {
+    private IList<Result> results;
+    private SearchCursor nextCursor;
+
+    /**
+     * Constructs a new page.
+     *
+     * @param results     The results on this page, best result first.
+     * @param nextCursor  The cursor pointing to the start of the next page, or
+     *                    null if this is the last page.
+     */
+    public ResultPage(IList<Result> results, SearchCursor nextCursor) {
+        this.results = results;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the results on this page, best result first.
+     */
+    public IList<Result> getResults() {
+        return this.results;
+    }
+
+    /**
+     * Returns 'true' if there are more results after this page.
+     */
+    public boolean hasNext() {
+        return this.nextCursor != null;
+    }
+
+    /**
+     * Returns the cursor pointing to the start of the next page, or null if this
+     * is the last page.
+     */
+    public SearchCursor getNextCursor() {
+        return this.nextCursor;
+    }
+}
@@ -0,0 +1,89 @@
+package search.models;
+
+/**
+ * Marks a position in the ranked list of results for some query: the score and
+ * document id of the last result the user has already seen.
+ *
+ * Results are ordered by decreasing score, with ties broken by increasing document
+ * id, so a cursor identifies exactly where the next page of results begins.
+ */
+public class SearchCursor {
+    private double score;
+    private int documentId;
+
+    public SearchCursor(double score, int documentId) {
+        this.score = score;
+        this.documentId = documentId;
+    }
+
+    /**
+     * Returns a cursor pointing just after the given result.
+     *
+     * @throws IllegalArgumentException  if the result does not know its document id
+     */
+    public static SearchCursor after(Result result) {
+        if (result.getDocumentId() < 0) {
+            throw new IllegalArgumentException("Result has no document id");
+        }
+        return new SearchCursor(result.getScore(), result.getDocumentId());
+    }
+
+    /**
+     * Parses a cursor previously produced by toString().
+     *
+     * @throws IllegalArgumentException  if the string is not a valid cursor
+     */
+    public static SearchCursor parse(String str) {
+        int separator = str.lastIndexOf('_');
+        if (separator == -1) {
+            throw new IllegalArgumentException("Malformed cursor: " + str);
+        }
+        try {
+            return new SearchCursor(
+                    Double.parseDouble(str.substring(0, separator)),
+                    Integer.parseInt(str.substring(separator + 1)));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Malformed cursor: " + str, ex);
+        }
+    }
+
+    /**
+     * Returns the score of the last result seen.
+     */
+    public double getScore() {
+        return this.score;
+    }
+
+    /**
+     * Returns the document id of the last result seen.
+     */
+    public int getDocumentId() {
+        return this.documentId;
+    }
+
+    /**
+     * Returns a representation of this cursor that is safe to put in a URL and can be
+     * turned back into a cursor using parse(...).
+     */
+    @Override
+    public String toString() {
+        return this.score + "_" + this.documentId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (o == null || getClass() != o.getClass()) { return false; }
+
+        SearchCursor that = (SearchCursor) o;
+
+        if (Double.compare(that.score, score) != 0) { return false; }
+        return documentId == that.documentId;
+    }
+
+    @Override
+    public int hashCode() {
+        long temp = Double.doubleToLongBits(score);
+        return 31 * (int) (temp ^ (temp >>> 32)) + documentId;
+    }
+}
@@ -0,0 +1,128 @@
+package search.models;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import search.misc.WordTokenizer;
+
+/**
+ * A search query as typed by the user: a bag of words, some of which may be
+ * grouped into quoted phrases.
+ *
+ * Every word, including the words inside phrases, contributes to a page's
+ * TF-IDF score. On top of that, a page only matches if it contains every
+ * phrase.
+ */
+public class SearchQuery {
+    private IList<String> terms;
+    private IList<Phrase> phrases;
+
+    /**
+     * Constructs a query with no phrases.
+     */
+    public SearchQuery(IList<String> terms) {
+        this(terms, new DoubleLinkedList<>());
+    }
+
+    public SearchQuery(IList<String> terms, IList<Phrase> phrases) {
+        this.terms = terms;
+        this.phrases = phrases;
+    }
+
+    /**
+     * Parses a raw query string. Words between double quotes form a phrase, which
+     * may be followed by ~N to allow up to N extra words within the phrase, as in
+     * "fast car"~2. A quote that is never closed extends to the end of the query.
+     *
+     * Words are extracted the same way as WordTokenizer extracts them from pages.
+     */
+    public static SearchQuery parse(String input) {
+        IList<String> terms = new DoubleLinkedList<>();
+        IList<Phrase> phrases = new DoubleLinkedList<>();
+
+        // Splitting on quotes puts the text outside of quotes at even indices,
+        // and the text inside of quotes at odd ones.
+        String[] parts = input.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (i % 2 == 0) {
+                if (i > 0) {
+                    // Slop was already handled along with the preceding phrase
+                    part = part.substring(slopEnd(part));
+                }
+                for (String word : WordTokenizer.extract(part)) {
+                    terms.add(word);
+                }
+            } else {
+                IList<String> words = WordTokenizer.extract(part);
+                for (String word : words) {
+                    terms.add(word);
+                }
+                // A single word in quotes doesn't constrain anything
+                if (words.size() > 1) {
+                    int slop = i + 1 < parts.length ? parseSlop(parts[i + 1]) : 0;
+                    phrases.add(new Phrase(words, slop));
+                }
+            }
+        }
+        return new SearchQuery(terms, phrases);
+    }
+
+    /**
+     * Returns the index just past the "~N" at the start of the given string, or 0
+     * if it does not start with one.
+     */
+    private static int slopEnd(String part) {
+        if (!part.startsWith("~")) {
+            return 0;
+        }
+        int end = 1;
+        while (end < part.length() && Character.isDigit(part.charAt(end))) {
+            end++;
+        }
+        return end == 1 ? 0 : end;
+    }
+
+    private static int parseSlop(String following) {
+        int end = slopEnd(following);
+        if (end == 0) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(following.substring(1, end));
+        } catch (NumberFormatException ex) {
+            // Absurdly large slops might as well be unlimited
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Returns every word of the query, in order, including the words inside phrases.
+     */
+    public IList<String> getTerms() {
+        return this.terms;
+    }
+
+    /**
+     * Returns the phrases every matching page must contain.
+     */
+    public IList<Phrase> getPhrases() {
+        return this.phrases;
+    }
+
+    /**
+     * Returns a string that is the same for two queries exactly when they have the
+     * same terms and phrases. WordTokenizer never produces words containing
+     * whitespace or quotes, so two different queries can't collide.
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (String term : this.terms) {
+            out.append(term).append(' ');
+        }
+        for (Phrase phrase : this.phrases) {
+            out.append(phrase).append(' ');
+        }
+        return out.toString();
+    }
+}
@@ -2,7 +2,6 @@ package search.models;
 
 import com.chimbori.crux.articles.Article;
 import com.chimbori.crux.articles.ArticleExtractor;
-import datastructures.concrete.DoubleLinkedList;
 import datastructures.concrete.dictionaries.ChainedHashDictionary;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.IList;
@@ -13,17 +12,13 @@ import search.misc.WebUtils;
 import search.misc.WordTokenizer;
 import search.misc.exceptions.DataExtractionException;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.InputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PushbackInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.StringTokenizer;
+import java.nio.file.Files;
 
 /**
  * This class represents a single webpage.
@@ -104,12 +99,23 @@ public class Webpage {
         URI cacheURI = Webpage.getCacheURI(localUri);
         File cacheFile = new File(cacheURI);
         if (cacheFile.exists()) {
-            return Webpage.loadFromCache(cacheFile);
-        } else {
-            Webpage out = Webpage.loadOriginal(localUri);
-            Webpage.saveToCache(out, cacheFile);
-            return out;
+            byte[] contents = Webpage.readCache(cacheFile);
+            try {
+                if (WebpageCache.isBinary(contents)) {
+                    return WebpageCache.decode(contents);
+                }
+                // A cache in the old text format: upgrade it
+                Webpage out = WebpageCache.decodeText(contents);
+                Webpage.saveToCache(out, cacheFile);
+                return out;
+            } catch (DataExtractionException ex) {
+                // A cache from another version, or one whose write was cut
+                // short: fall through and rebuild it from the original page
+            }
         }
+        Webpage out = Webpage.loadOriginal(localUri);
+        Webpage.saveToCache(out, cacheFile);
+        return out;
     }
 
     public static Webpage loadOriginal(URI localUri) {
@@ -136,60 +142,16 @@ public class Webpage {
     }
 
     private static void saveToCache(Webpage page, File cache) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(cache))) {
-            WebpageSummary summary = page.getSummary();
-
-            // Line 1: page URI
-            writer.write(page.pageUri.toString() + "\n");
-
-            // Line 2: title
-            writer.write(summary.getTitle() + "\n");
-
-            // Line 3: blurb
-            writer.write(summary.getBlurb() + "\n");
-
-            // Line 4: words
-            for (String word : page.words) {
-                writer.write(word);
-                writer.write(' ');
-            }
-            writer.write('\n');
-
-            // Remaining lines: links
-            for (URI link : page.links) {
-                writer.write(link.toString());
-                writer.write('\n');
-            }
+        try {
+            Files.write(cache.toPath(), WebpageCache.encode(page));
         } catch (IOException ex) {
             throw new RuntimeException("Could not create cache", ex);
         }
     }
 
-    private static Webpage loadFromCache(File cache) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(cache))) {
-            // Line 1: Page URI
-            URI pageUri = URI.create(reader.readLine().trim());
-
-            // Line 2: title
-            String title = reader.readLine().trim();
-
-            // Line 3: blurb
-            String blurb = reader.readLine().trim();
-
-            // Line 4: words
-            IList<String> words = new DoubleLinkedList<>();
-            StringTokenizer tokenizer = new StringTokenizer(reader.readLine().trim(), " ");
-            while (tokenizer.hasMoreTokens()) {
-                words.add(tokenizer.nextToken());
-            }
-
-            // Rest of lines: links
-            IList<URI> links = new DoubleLinkedList<>();
-            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                links.add(URI.create(line));
-            }
-
-            return new Webpage(pageUri, links, words, title, blurb);
+    private static byte[] readCache(File cache) {
+        try {
+            return Files.readAllBytes(cache.toPath());
         } catch (IOException ex) {
             throw new RuntimeException("Could not load cache", ex);
         }
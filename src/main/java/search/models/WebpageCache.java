@@ -0,0 +1,331 @@
+package search.models;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import search.misc.exceptions.DataExtractionException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the .cache files Webpage.load keeps next to each page.
+ *
+ * A cache file starts with MAGIC and a one-byte version, followed by:
+ *
+ * - the page's URI, title and blurb;
+ * - a string table holding every distinct word of the page once;
+ * - the number of words, then each word as its index in the string table;
+ * - the number of links, then each link;
+ * - a CRC32 of everything before it, as four big-endian bytes.
+ *
+ * Counts and indexes are varints (seven bits per byte, low bits first, high bit
+ * set on every byte but the last), and strings are a varint byte length
+ * followed by that many bytes of UTF-8. Most words of a page are repeats, so
+ * the string table keeps the file small and makes reading it create one String
+ * per distinct word rather than one per occurrence.
+ *
+ * Files written before this format existed hold the same fields as lines of
+ * text. They never start with MAGIC, since its first byte is not ASCII, so
+ * isBinary tells the two apart and decodeText can still read the old ones.
+ */
+final class WebpageCache {
+    static final byte[] MAGIC = {(byte) 0x89, 'W', 'P', 'C'};
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = MAGIC.length + 1;
+    private static final int CRC_SIZE = 4;
+
+    private WebpageCache() {}
+
+    /**
+     * Returns 'true' if the given file contents start with MAGIC, whatever
+     * version they are.
+     */
+    static boolean isBinary(byte[] contents) {
+        if (contents.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (contents[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the given page in the current format.
+     */
+    static byte[] encode(Webpage page) {
+        WebpageSummary summary = page.getSummary();
+        Output out = new Output();
+        out.writeBytes(MAGIC);
+        out.writeByte(VERSION);
+        out.writeString(page.getUri().toString());
+        out.writeString(summary.getTitle());
+        out.writeString(summary.getBlurb());
+
+        IList<String> words = page.getWords();
+        IDictionary<String, Integer> table = new ChainedHashDictionary<>();
+        int[] indexes = new int[words.size()];
+        IList<String> distinct = new ArrayBackedList<>();
+        int count = 0;
+        for (String word : words) {
+            Integer index = table.getOrDefault(word, null);
+            if (index == null) {
+                index = distinct.size();
+                table.put(word, index);
+                distinct.add(word);
+            }
+            indexes[count] = index;
+            count++;
+        }
+        out.writeVarint(distinct.size());
+        for (String word : distinct) {
+            out.writeString(word);
+        }
+        out.writeVarint(indexes.length);
+        for (int index : indexes) {
+            out.writeVarint(index);
+        }
+
+        IList<URI> links = page.getLinks();
+        out.writeVarint(links.size());
+        for (URI link : links) {
+            out.writeString(link.toString());
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(out.buffer, 0, out.size);
+        out.writeInt((int) crc.getValue());
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a page written by encode.
+     *
+     * @throws DataExtractionException  if the contents are not in the current format,
+     *                                  or are truncated or corrupted
+     */
+    static Webpage decode(byte[] contents) {
+        if (!isBinary(contents) || contents.length < HEADER_SIZE + CRC_SIZE) {
+            throw new DataExtractionException("Not a webpage cache");
+        }
+        if (contents[MAGIC.length] != VERSION) {
+            throw new DataExtractionException("Unsupported webpage cache version " + contents[MAGIC.length]);
+        }
+        int end = contents.length - CRC_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(contents, 0, end);
+        Input in = new Input(contents, end, contents.length);
+        if ((int) crc.getValue() != in.readInt()) {
+            throw new DataExtractionException("Webpage cache is corrupted");
+        }
+
+        try {
+            in = new Input(contents, HEADER_SIZE, end);
+            URI pageUri = URI.create(in.readString());
+            String title = in.readString();
+            String blurb = in.readString();
+
+            String[] table = new String[in.readCount()];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = in.readString();
+            }
+            int wordCount = in.readCount();
+            IList<String> words = new ArrayBackedList<>(wordCount);
+            for (int i = 0; i < wordCount; i++) {
+                words.add(table[in.readIndex(table.length)]);
+            }
+
+            int linkCount = in.readCount();
+            IList<URI> links = new ArrayBackedList<>(linkCount);
+            for (int i = 0; i < linkCount; i++) {
+                links.add(URI.create(in.readString()));
+            }
+            if (in.position != end) {
+                throw new DataExtractionException("Webpage cache has trailing data");
+            }
+            return new Webpage(pageUri, links, words, title, blurb);
+        } catch (IllegalArgumentException ex) {
+            throw new DataExtractionException("Webpage cache is corrupted", ex);
+        }
+    }
+
+    /**
+     * Decodes a page written in the old text format: the URI, title and blurb
+     * each on their own line, then a line of space-separated words, then one link
+     * per line.
+     *
+     * @throws DataExtractionException  if the contents are truncated or malformed
+     */
+    static Webpage decodeText(byte[] contents) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(contents)))) {
+            // Line 1: Page URI
+            URI pageUri = URI.create(readLine(reader).trim());
+
+            // Line 2: title
+            String title = readLine(reader).trim();
+
+            // Line 3: blurb
+            String blurb = readLine(reader).trim();
+
+            // Line 4: words
+            IList<String> words = new ArrayBackedList<>();
+            StringTokenizer tokenizer = new StringTokenizer(readLine(reader).trim(), " ");
+            while (tokenizer.hasMoreTokens()) {
+                words.add(tokenizer.nextToken());
+            }
+
+            // Rest of lines: links
+            IList<URI> links = new ArrayBackedList<>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                links.add(URI.create(line));
+            }
+
+            return new Webpage(pageUri, links, words, title, blurb);
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new DataExtractionException("Could not read old webpage cache", ex);
+        }
+    }
+
+    private static String readLine(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            throw new DataExtractionException("Old webpage cache is truncated");
+        }
+        return line;
+    }
+
+    private static class Output {
+        private byte[] buffer = new byte[1024];
+        private int size = 0;
+
+        private void ensureCapacity(int extra) {
+            if (this.size + extra > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.size + extra, this.buffer.length * 2));
+            }
+        }
+
+        public void writeByte(int value) {
+            this.ensureCapacity(1);
+            this.buffer[this.size] = (byte) value;
+            this.size++;
+        }
+
+        public void writeBytes(byte[] bytes) {
+            this.ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, this.buffer, this.size, bytes.length);
+            this.size += bytes.length;
+        }
+
+        public void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                this.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.writeByte(value);
+        }
+
+        public void writeInt(int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                this.writeByte(value >>> shift);
+            }
+        }
+
+        public void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.writeVarint(bytes.length);
+            this.writeBytes(bytes);
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(this.buffer, this.size);
+        }
+    }
+
+    /**
+     * Reads from a byte array. Every read that would go past 'end' throws an
+     * IllegalArgumentException.
+     */
+    private static class Input {
+        private final byte[] contents;
+        private final int end;
+        private int position;
+
+        public Input(byte[] contents, int position, int end) {
+            this.contents = contents;
+            this.position = position;
+            this.end = end;
+        }
+
+        public int readByte() {
+            if (this.position >= this.end) {
+                throw new IllegalArgumentException("Unexpected end of cache");
+            }
+            int value = this.contents[this.position] & 0xFF;
+            this.position++;
+            return value;
+        }
+
+        public int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = this.readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint is too long");
+        }
+
+        /**
+         * Reads a count of items that each take at least one more byte, so a
+         * corrupted count can't make us allocate more than the file's size.
+         */
+        public int readCount() {
+            int count = this.readVarint();
+            if (count < 0 || count > this.end - this.position) {
+                throw new IllegalArgumentException("Count is out of range");
+            }
+            return count;
+        }
+
+        public int readIndex(int limit) {
+            int index = this.readVarint();
+            if (index < 0 || index >= limit) {
+                throw new IllegalArgumentException("Index is out of range");
+            }
+            return index;
+        }
+
+        public int readInt() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | this.readByte();
+            }
+            return value;
+        }
+
+        public String readString() {
+            int length = this.readVarint();
+            if (length < 0 || length > this.end - this.position) {
+                throw new IllegalArgumentException("String length is out of range");
+            }
+            String value = new String(this.contents, this.position, length, StandardCharsets.UTF_8);
+            this.position += length;
+            return value;
+        }
+    }
+}
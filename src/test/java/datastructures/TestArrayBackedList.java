@@ -0,0 +1,141 @@
+package datastructures;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import misc.exceptions.EmptyContainerException;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class TestArrayBackedList extends BaseTest {
+    private IList<String> makeBasicList() {
+        IList<String> list = new ArrayBackedList<>();
+        list.add("a");
+        list.add("b");
+        list.add("c");
+        return list;
+    }
+
+    private <T> void assertListMatches(T[] expected, IList<T> actual) {
+        assertEquals(expected.length, actual.size());
+        assertEquals(expected.length == 0, actual.isEmpty());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Item at index " + i + " does not match", expected[i], actual.get(i));
+        }
+        Iterator<T> iter = actual.iterator();
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(iter.hasNext());
+            assertEquals(expected[i], iter.next());
+        }
+        assertFalse(iter.hasNext());
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddAndRemove() {
+        IList<String> list = this.makeBasicList();
+        this.assertListMatches(new String[] {"a", "b", "c"}, list);
+        assertEquals("c", list.remove());
+        assertEquals("b", list.remove());
+        assertEquals("a", list.remove());
+        this.assertListMatches(new String[] {}, list);
+        try {
+            list.remove();
+            fail("Expected EmptyContainerException");
+        } catch (EmptyContainerException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testGrowsPastCapacity() {
+        IList<Integer> list = new ArrayBackedList<>(0);
+        for (int i = 0; i < 1000; i++) {
+            list.add(i);
+        }
+        assertEquals(1000, list.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, (int) list.get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSetInsertAndDelete() {
+        IList<String> list = this.makeBasicList();
+        list.set(1, "x");
+        this.assertListMatches(new String[] {"a", "x", "c"}, list);
+        list.insert(0, "front");
+        list.insert(2, "middle");
+        list.insert(list.size(), "back");
+        this.assertListMatches(new String[] {"front", "a", "middle", "x", "c", "back"}, list);
+        assertEquals("middle", list.delete(2));
+        assertEquals("front", list.delete(0));
+        assertEquals("back", list.delete(list.size() - 1));
+        this.assertListMatches(new String[] {"a", "x", "c"}, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void testIndexOfAndContains() {
+        IList<String> list = this.makeBasicList();
+        list.add(null);
+        list.add("b");
+        assertEquals(1, list.indexOf("b"));
+        assertEquals(3, list.indexOf(null));
+        assertEquals(-1, list.indexOf("z"));
+        assertTrue(list.contains("c"));
+        assertTrue(list.contains(null));
+        assertFalse(list.contains("z"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testOutOfBounds() {
+        IList<String> list = this.makeBasicList();
+        int[] badIndexes = {-1, 3, 10};
+        for (int index : badIndexes) {
+            try {
+                list.get(index);
+                fail("Expected IndexOutOfBoundsException for get(" + index + ")");
+            } catch (IndexOutOfBoundsException ex) {
+                // All ok -- expected result
+            }
+            try {
+                list.set(index, "x");
+                fail("Expected IndexOutOfBoundsException for set(" + index + ")");
+            } catch (IndexOutOfBoundsException ex) {
+                // All ok -- expected result
+            }
+            try {
+                list.delete(index);
+                fail("Expected IndexOutOfBoundsException for delete(" + index + ")");
+            } catch (IndexOutOfBoundsException ex) {
+                // All ok -- expected result
+            }
+        }
+        try {
+            list.insert(4, "x");
+            fail("Expected IndexOutOfBoundsException for insert(4)");
+        } catch (IndexOutOfBoundsException ex) {
+            // All ok -- expected result
+        }
+        this.assertListMatches(new String[] {"a", "b", "c"}, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void testIteratorEnds() {
+        Iterator<String> iter = this.makeBasicList().iterator();
+        iter.next();
+        iter.next();
+        iter.next();
+        try {
+            iter.next();
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException ex) {
+            // All ok -- expected result
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package search;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import search.models.Webpage;
+
+import java.net.URI;
+import java.util.Random;
+
+/**
+ * The example corpus and random page generator shared by the tests of the
+ * search engine and its scorers.
+ */
+public abstract class BaseSearchTest extends BaseTest {
+    public static final double DELTA = 0.000001;
+
+    protected static final URI PAGE_A = URI.create("http://example.com/fake-page-a.html");
+    protected static final URI PAGE_B = URI.create("http://example.com/fake-page-b.html");
+    protected static final URI PAGE_C = URI.create("http://example.com/fake-page-c.html");
+    protected static final URI PAGE_D = URI.create("http://example.com/fake-page-d.html");
+
+    protected static IList<String> strToIList(String input) {
+        IList<String> output = new DoubleLinkedList<>();
+        for (String word : input.split(" ")) {
+            output.add(word);
+        }
+        return output;
+    }
+
+    protected static Webpage buildPage(URI uri, String words, URI... linksTo) {
+        IList<URI> links = new DoubleLinkedList<>();
+        for (URI link : linksTo) {
+            links.add(link);
+        }
+        return new Webpage(uri, links, strToIList(words), uri + " title", uri + " blurb");
+    }
+
+    /**
+     * Returns a set holding a single page, which contains the given words and
+     * whose URI is made from them.
+     */
+    protected static ISet<Webpage> makeSinglePage(String words) {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        pages.add(buildPage(URI.create("http://example.com/" + words.replace(' ', '-') + ".html"), words));
+        return pages;
+    }
+
+    /**
+     * Returns pages A, B and C, which have 6, 9 and 9 words and don't link
+     * anywhere. "dog" is in B once and in C three times, and "the" is in every page.
+     */
+    protected static ISet<Webpage> makeExamplePages() {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        pages.add(buildPage(PAGE_A, "the mouse played with the cat"));
+        pages.add(buildPage(PAGE_B, "the quick brown fox jumped over the lazy dog"));
+        pages.add(buildPage(PAGE_C, "dog 1 and dog 2 ate the hot dog"));
+        return pages;
+    }
+
+    /**
+     * Returns the same pages as makeExamplePages(), linking to each other, plus a
+     * page D that contains none of their words.
+     */
+    protected static ISet<Webpage> makeLinkedExamplePages() {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        pages.add(buildPage(PAGE_A, "the mouse played with the cat", PAGE_B, PAGE_C));
+        pages.add(buildPage(PAGE_B, "the quick brown fox jumped over the lazy dog", PAGE_A));
+        pages.add(buildPage(PAGE_C, "dog 1 and dog 2 ate the hot dog", PAGE_A, PAGE_B));
+        pages.add(buildPage(PAGE_D, "a page about nothing in particular", PAGE_C));
+        return pages;
+    }
+
+    /**
+     * Returns the given number of pages, each containing "word0" followed by
+     * between 1 and 40 words from makeRandomWord(...), and linking to up to 3
+     * random pages.
+     */
+    protected ISet<Webpage> makeRandomPages(Random rand, int numPages, int vocabularySize) {
+        URI[] uris = new URI[numPages];
+        for (int i = 0; i < numPages; i++) {
+            uris[i] = URI.create("http://example.com/random-page-" + i + ".html");
+        }
+
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < numPages; i++) {
+            StringBuilder words = new StringBuilder("word0");
+            int numWords = 1 + rand.nextInt(40);
+            for (int j = 0; j < numWords; j++) {
+                words.append(' ').append(this.makeRandomWord(rand, vocabularySize));
+            }
+            URI[] links = new URI[rand.nextInt(4)];
+            for (int j = 0; j < links.length; j++) {
+                links[j] = uris[rand.nextInt(numPages)];
+            }
+            pages.add(buildPage(uris[i], words.toString(), links));
+        }
+        return pages;
+    }
+
+    /**
+     * Returns one of "word0" to "word" + (vocabularySize - 1). The distribution is
+     * skewed, so some words are much more common than others.
+     */
+    protected String makeRandomWord(Random rand, int vocabularySize) {
+        return "word" + (int) (vocabularySize * Math.pow(rand.nextDouble(), 3));
+    }
+}
@@ -0,0 +1,91 @@
+package search;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.interfaces.ISet;
+import org.junit.Test;
+import search.analyzers.Bm25Scorer;
+import search.analyzers.PreparedQuery;
+import search.index.DocumentRegistry;
+import search.index.MemoryPositionalIndex;
+import search.models.Webpage;
+
+
+public class TestBm25Scorer extends BaseSearchTest {
+    private Bm25Scorer makeScorer(DocumentRegistry registry, double k1, double b) {
+        ISet<Webpage> pages = makeExamplePages();
+        for (Webpage page : pages) {
+            registry.register(page.getSummary());
+        }
+        return new Bm25Scorer(new MemoryPositionalIndex(pages, registry), registry.size(), k1, b);
+    }
+
+    @Test(timeout=SECOND)
+    public void testMatchesHandComputedScores() {
+        DocumentRegistry registry = new DocumentRegistry();
+        Bm25Scorer scorer = this.makeScorer(registry, 1.2, 0.75);
+        int a = registry.getId(PAGE_A);
+        int b = registry.getId(PAGE_B);
+        int c = registry.getId(PAGE_C);
+
+        // The pages have 6, 9 and 9 words, so the average length is 8
+        assertEquals(1.2 * (0.25 + 0.75 * 6 / 8.0), scorer.getLengthNorm(a), DELTA);
+        assertEquals(1.2 * (0.25 + 0.75 * 9 / 8.0), scorer.getLengthNorm(c), DELTA);
+
+        // "dog" is in two of three pages, "the" is in every page
+        double dogIdf = Math.log(1 + (3 - 2 + 0.5) / (2 + 0.5));
+        double theIdf = Math.log(1 + (3 - 3 + 0.5) / (3 + 0.5));
+        assertEquals(dogIdf, scorer.computeIdf("dog"), DELTA);
+        assertEquals(theIdf, scorer.computeIdf("the"), DELTA);
+        assertEquals(0.0, scorer.computeIdf("unicorn"), DELTA);
+
+        PreparedQuery query = scorer.prepareQuery(strToIList("dog the dog"));
+        assertEquals(2, query.size());
+        assertEquals(1.0, query.getNorm(), DELTA);
+
+        double lengthNormC = scorer.getLengthNorm(c);
+        double expectedC = 2 * dogIdf * 3 * 2.2 / (3 + lengthNormC)
+                + theIdf * 1 * 2.2 / (1 + lengthNormC);
+        assertEquals(expectedC, scorer.computeRelevance(query, c), DELTA);
+
+        double lengthNormA = scorer.getLengthNorm(a);
+        assertEquals(theIdf * 2 * 2.2 / (2 + lengthNormA), scorer.computeRelevance(query, a), DELTA);
+
+        // Page C repeats "dog" and is the same length as page B, so it must score higher
+        assertTrue(scorer.computeRelevance(query, c) > scorer.computeRelevance(query, b));
+    }
+
+    @Test(timeout=SECOND)
+    public void testNoLengthNormalizationWhenBIsZero() {
+        DocumentRegistry registry = new DocumentRegistry();
+        Bm25Scorer scorer = this.makeScorer(registry, 1.2, 0.0);
+        assertEquals(1.2, scorer.getLengthNorm(registry.getId(PAGE_A)), DELTA);
+        assertEquals(1.2, scorer.getLengthNorm(registry.getId(PAGE_C)), DELTA);
+    }
+
+    @Test(timeout=SECOND)
+    public void testEveryNormIsOne() {
+        DocumentRegistry registry = new DocumentRegistry();
+        Bm25Scorer scorer = this.makeScorer(registry, Bm25Scorer.DEFAULT_K1, Bm25Scorer.DEFAULT_B);
+        for (int id = 0; id < registry.size(); id++) {
+            assertEquals(1.0, scorer.getIndex().getDocumentNorm(id), DELTA);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsInvalidParameters() {
+        try {
+            this.makeScorer(new DocumentRegistry(), -1.0, 0.75);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // All ok -- expected result
+        }
+        try {
+            this.makeScorer(new DocumentRegistry(), 1.2, 1.5);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // All ok -- expected result
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package search;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.Test;
+import search.misc.exceptions.DataExtractionException;
+import search.models.Webpage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+public class TestCorpusLoader extends BaseTest {
+    private static Webpage fakeLoad(URI uri) {
+        return new Webpage(uri, new DoubleLinkedList<>(), new DoubleLinkedList<>(), "title", "blurb");
+    }
+
+    private static Path makeCorpus(int pages) throws IOException {
+        Path root = Files.createTempDirectory("test-corpus");
+        Files.createDirectories(root.resolve("sub"));
+        for (int i = 0; i < pages; i++) {
+            Path folder = i % 2 == 0 ? root : root.resolve("sub");
+            Files.createFile(folder.resolve("page-" + i + (i % 3 == 0 ? ".htm" : ".html")));
+        }
+        Files.createFile(root.resolve("page-0.cache"));
+        Files.createFile(root.resolve("sub").resolve("notes.txt"));
+        return root;
+    }
+
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testLoadsEveryPage() throws IOException {
+        Path root = makeCorpus(200);
+        try {
+            // A tiny queue, so the walk has to wait for the workers
+            CorpusLoader loader = new CorpusLoader(4, 1, TestCorpusLoader::fakeLoad, null);
+            ISet<Webpage> pages = loader.load(root);
+            assertEquals(200, pages.size());
+            assertTrue(pages.contains(fakeLoad(root.resolve("page-0.htm").toUri())));
+            assertTrue(pages.contains(fakeLoad(root.resolve("sub").resolve("page-1.html").toUri())));
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testForEachVisitsEveryPageOnce() throws IOException {
+        Path root = makeCorpus(100);
+        try {
+            CorpusLoader loader = new CorpusLoader(4, 2, TestCorpusLoader::fakeLoad, null);
+            AtomicInteger visited = new AtomicInteger();
+            ISet<URI> uris = new ChainedHashSet<>();
+            loader.forEach(root, page -> {
+                visited.incrementAndGet();
+                synchronized (uris) {
+                    uris.add(page.getUri());
+                }
+            });
+            assertEquals(100, visited.get());
+            assertEquals(100, uris.size());
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSingleThread() throws IOException {
+        Path root = makeCorpus(20);
+        try {
+            CorpusLoader loader = new CorpusLoader(1, 4, TestCorpusLoader::fakeLoad, null);
+            assertEquals(20, loader.load(root).size());
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testFailureIsRethrown() throws IOException {
+        Path root = makeCorpus(100);
+        try {
+            CorpusLoader loader = new CorpusLoader(4, 2, uri -> {
+                if (uri.toString().endsWith("page-43.html")) {
+                    throw new DataExtractionException("Bad page");
+                }
+                return fakeLoad(uri);
+            }, null);
+            try {
+                loader.load(root);
+                fail("Expected DataExtractionException");
+            } catch (DataExtractionException ex) {
+                assertEquals("Bad page", ex.getMessage());
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testErrorIsRethrown() throws IOException {
+        Path root = makeCorpus(100);
+        try {
+            // A single worker and a tiny queue: the walk only finishes if the worker survives
+            CorpusLoader loader = new CorpusLoader(1, 1, uri -> {
+                throw new StackOverflowError();
+            }, null);
+            try {
+                loader.load(root);
+                fail("Expected DataExtractionException");
+            } catch (DataExtractionException ex) {
+                assertTrue(ex.getCause() instanceof StackOverflowError);
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testMissingFolder() throws IOException {
+        Path root = Files.createTempDirectory("test-corpus");
+        Files.delete(root);
+        try {
+            new CorpusLoader(2, 2, TestCorpusLoader::fakeLoad, null).load(root);
+            fail("Expected DataExtractionException");
+        } catch (DataExtractionException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testInvalidArguments() {
+        try {
+            new CorpusLoader(0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // All ok -- expected result
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package search;
+
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestIndexFileWatcher extends BaseSearchTest {
+    private static SearchEngine makeEngine(String word) {
+        return new SearchEngine(makeSinglePage(word));
+    }
+
+    private static int countResults(SearchEngineHolder engines, String word) {
+        try (SearchEngineHolder.Lease lease = engines.acquire()) {
+            return lease.getEngine().getTopKResults(strToIList(word), 10).size();
+        }
+    }
+
+    private static void waitForBuilds(AtomicInteger builds, int count) throws InterruptedException {
+        while (builds.get() < count) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testRebuildsWhenFileChanges() throws IOException, InterruptedException {
+        Path folder = Files.createTempDirectory("test-watcher");
+        Path path = folder.resolve("test.index");
+        Files.createFile(path);
+
+        SearchEngineHolder engines = new SearchEngineHolder(makeEngine("first"));
+        AtomicInteger builds = new AtomicInteger();
+        IndexFileWatcher watcher = new IndexFileWatcher(engines, path, 5, () -> {
+            SearchEngine engine = makeEngine("build" + builds.get());
+            builds.incrementAndGet();
+            return engine;
+        });
+        watcher.start();
+        try {
+            // Nothing changed yet
+            Thread.sleep(50);
+            assertEquals(0, builds.get());
+            assertEquals(1, countResults(engines, "first"));
+
+            // Replaced
+            Files.setLastModifiedTime(path, FileTime.fromMillis(0));
+            waitForBuilds(builds, 1);
+            while (countResults(engines, "build0") == 0) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, countResults(engines, "first"));
+
+            // Deleted
+            Files.delete(path);
+            waitForBuilds(builds, 2);
+            while (countResults(engines, "build1") == 0) {
+                Thread.sleep(5);
+            }
+
+            // Nothing changed since
+            Thread.sleep(50);
+            assertEquals(2, builds.get());
+        } finally {
+            watcher.stop();
+            Files.deleteIfExists(path);
+            Files.delete(folder);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testFailedRebuildKeepsEngine() throws IOException, InterruptedException {
+        Path folder = Files.createTempDirectory("test-watcher");
+        Path path = folder.resolve("test.index");
+
+        SearchEngineHolder engines = new SearchEngineHolder(makeEngine("first"));
+        AtomicInteger builds = new AtomicInteger();
+        IndexFileWatcher watcher = new IndexFileWatcher(engines, path, 5, () -> {
+            builds.incrementAndGet();
+            throw new IllegalStateException("Could not build");
+        });
+        watcher.start();
+        try {
+            Files.createFile(path);
+            waitForBuilds(builds, 1);
+            watcher.stop();
+            assertEquals(1, countResults(engines, "first"));
+            assertEquals(1, builds.get());
+        } finally {
+            watcher.stop();
+            Files.deleteIfExists(path);
+            Files.delete(folder);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testCannotStartTwice() throws IOException, InterruptedException {
+        Path folder = Files.createTempDirectory("test-watcher");
+        IndexFileWatcher watcher = new IndexFileWatcher(
+                new SearchEngineHolder(makeEngine("first")), folder.resolve("test.index"), 5, () -> null);
+        watcher.start();
+        try {
+            watcher.start();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ex) {
+            // All ok -- expected result
+        } finally {
+            watcher.stop();
+            Files.delete(folder);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package search;
+
+import static org.junit.Assert.assertTrue;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Test;
+import search.models.Result;
+import search.models.SearchQuery;
+import search.models.WebpageSummary;
+
+import java.net.URI;
+
+public class TestResultCache extends BaseTest {
+    private SearchQuery query(String input) {
+        return SearchQuery.parse(input);
+    }
+
+    private IList<Result> results(int count) {
+        IList<Result> output = new DoubleLinkedList<>();
+        for (int i = 0; i < count; i++) {
+            URI uri = URI.create("http://example.com/page-" + i + ".html");
+            output.add(new Result(new WebpageSummary(uri, "title", "blurb"), i));
+        }
+        return output;
+    }
+
+    @Test(timeout=SECOND)
+    public void testHitAndMiss() {
+        ResultCache cache = new ResultCache(10, 100);
+        IList<Result> results = this.results(3);
+
+        assertEquals(null, cache.get(query("a b"), 3));
+        cache.put(query("a b"), 3, results);
+
+        assertTrue(results == cache.get(query("a b"), 3));
+        assertEquals(null, cache.get(query("a b"), 4));
+        assertEquals(null, cache.get(query("b a"), 3));
+        assertEquals(null, cache.get(query("\"a b\""), 3));
+
+        assertEquals(1L, cache.getHits());
+        assertEquals(4L, cache.getMisses());
+    }
+
+    @Test(timeout=SECOND)
+    public void testEvictsLeastRecentlyUsedByCount() {
+        ResultCache cache = new ResultCache(2, 100);
+        cache.put(query("a"), 1, this.results(1));
+        cache.put(query("b"), 1, this.results(1));
+
+        // Touch 'a' so 'b' becomes the least recently used entry
+        cache.get(query("a"), 1);
+        cache.put(query("c"), 1, this.results(1));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get(query("a"), 1) != null);
+        assertTrue(cache.get(query("b"), 1) == null);
+        assertTrue(cache.get(query("c"), 1) != null);
+    }
+
+    @Test(timeout=SECOND)
+    public void testEvictsBySize() {
+        ResultCache cache = new ResultCache(10, 5);
+        cache.put(query("a"), 3, this.results(3));
+        cache.put(query("b"), 2, this.results(2));
+        assertEquals(5, cache.resultCount());
+
+        cache.put(query("c"), 2, this.results(2));
+        assertEquals(4, cache.resultCount());
+        assertTrue(cache.get(query("a"), 3) == null);
+
+        // Too big to ever fit
+        cache.put(query("d"), 6, this.results(6));
+        assertTrue(cache.get(query("d"), 6) == null);
+        assertEquals(4, cache.resultCount());
+    }
+}
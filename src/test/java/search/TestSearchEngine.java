@@ -0,0 +1,484 @@
+package search;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import misc.Searcher;
+import org.junit.Test;
+import search.analyzers.ScoringModel;
+import search.index.IndexFile;
+import search.index.IndexMode;
+import search.index.IndexWriter;
+import search.index.PostingsFormat;
+import search.misc.exceptions.IndexFormatException;
+import search.models.Result;
+import search.models.ResultPage;
+import search.models.SearchCursor;
+import search.models.SearchQuery;
+import search.models.Webpage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class TestSearchEngine extends BaseSearchTest {
+    private SearchEngine makeExampleEngine() {
+        return new SearchEngine(makeLinkedExamplePages());
+    }
+
+    @Test(timeout=SECOND)
+    public void testOnlyMatchingPagesReturned() {
+        SearchEngine engine = this.makeExampleEngine();
+        IList<Result> results = engine.getTopKResults(strToIList("dog"), 10);
+
+        assertEquals(2, results.size());
+        assertEquals(PAGE_C, results.get(0).getUri());
+        assertEquals(PAGE_B, results.get(1).getUri());
+    }
+
+    @Test(timeout=SECOND)
+    public void testScoresMatchComputeScore() {
+        SearchEngine engine = this.makeExampleEngine();
+        IList<String> query = strToIList("the cat ate 1 dog");
+        IList<Result> results = engine.getTopKResults(query, 10);
+
+        assertEquals(3, results.size());
+        for (Result result : results) {
+            assertEquals(engine.computeScore(query, result.getUri()), result.getScore(), DELTA);
+        }
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getScore() >= results.get(i).getScore());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testTopKLimitsResults() {
+        SearchEngine engine = this.makeExampleEngine();
+        IList<Result> results = engine.getTopKResults(strToIList("the dog"), 1);
+
+        assertEquals(1, results.size());
+        assertEquals(PAGE_C, results.get(0).getUri());
+    }
+
+    @Test(timeout=SECOND)
+    public void testScoringModelPerQuery() {
+        SearchEngine engine = this.makeExampleEngine();
+        assertEquals(ScoringModel.TF_IDF, engine.getScoringModel());
+        SearchQuery query = new SearchQuery(strToIList("dog"));
+
+        IList<Result> tfIdf = engine.getTopKResults(query, 10);
+        IList<Result> bm25 = engine.getTopKResults(query, 10, ScoringModel.BM25);
+        assertEquals(2, bm25.size());
+        assertEquals(PAGE_C, bm25.get(0).getUri());
+        assertEquals(PAGE_B, bm25.get(1).getUri());
+        assertTrue(Math.abs(tfIdf.get(0).getScore() - bm25.get(0).getScore()) > DELTA);
+
+        // Asking for another model once doesn't change the engine's default
+        assertEquals(ScoringModel.TF_IDF, engine.getScoringModel());
+        assertEquals(engine.computeScore(strToIList("dog"), PAGE_C), tfIdf.get(0).getScore(), DELTA);
+
+        engine.setScoringModel(ScoringModel.BM25);
+        assertEquals(bm25.get(0).getScore(), engine.computeScore(strToIList("dog"), PAGE_C), DELTA);
+    }
+
+    @Test(timeout=SECOND)
+    public void testOptions() {
+        SearchEngine.Options options = new SearchEngine.Options();
+        assertEquals(1, options.getQueryThreads());
+        assertEquals(IndexMode.DOCUMENT_ORDERED, options.getIndexMode());
+        assertEquals(PostingsFormat.ARRAYS, options.getPostingsFormat());
+        assertEquals(ScoringModel.TF_IDF, options.getScoringModel());
+        assertFalse(options.isInMemoryFallback());
+
+        // The engine keeps its own copy of the options
+        SearchEngine engine = new SearchEngine(makeLinkedExamplePages(), options.scoringModel(ScoringModel.BM25));
+        options.scoringModel(ScoringModel.TF_IDF);
+        assertEquals(ScoringModel.BM25, engine.getScoringModel());
+        SearchEngine copy = engine.withIndex(engine.toIndexFile());
+        assertEquals(ScoringModel.BM25, copy.getScoringModel());
+        assertEquals(
+                engine.computeScore(strToIList("dog"), PAGE_C),
+                copy.computeScore(strToIList("dog"), PAGE_C),
+                DELTA);
+
+        try {
+            options.queryThreads(0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testNoMatchingPages() {
+        SearchEngine engine = this.makeExampleEngine();
+        IList<Result> results = engine.getTopKResults(strToIList("fdfjkdsanenkfdsa"), 10);
+
+        assertTrue(results.isEmpty());
+    }
+
+    @Test(timeout=SECOND)
+    public void testPhraseOnlyMatchesWordsInOrder() {
+        SearchEngine engine = this.makeExampleEngine();
+
+        IList<Result> results = engine.getTopKResults(SearchQuery.parse("\"the lazy dog\""), 10);
+        assertEquals(1, results.size());
+        assertEquals(PAGE_B, results.get(0).getUri());
+
+        assertTrue(engine.getTopKResults(SearchQuery.parse("\"the dog\""), 10).isEmpty());
+        assertTrue(engine.getTopKResults(SearchQuery.parse("\"dog lazy\"~5"), 10).isEmpty());
+    }
+
+    @Test(timeout=SECOND)
+    public void testPhraseWithSlop() {
+        SearchEngine engine = this.makeExampleEngine();
+
+        // "the lazy dog" and "the hot dog" each have one extra word in between
+        IList<Result> results = engine.getTopKResults(SearchQuery.parse("\"the dog\"~1"), 10);
+        assertEquals(2, results.size());
+        assertTrue(engine.getTopKResults(SearchQuery.parse("\"fox dog\"~3"), 10).isEmpty());
+        assertEquals(1, engine.getTopKResults(SearchQuery.parse("\"fox dog\"~4"), 10).size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testParseQuery() {
+        SearchQuery query = SearchQuery.parse("Cat \"hot, DOG\"~2 fox \"a b");
+        assertWords("cat hot dog fox a b", query.getTerms());
+        assertEquals(2, query.getPhrases().size());
+        assertWords("hot dog", query.getPhrases().get(0).getWords());
+        assertEquals(2, query.getPhrases().get(0).getSlop());
+        assertWords("a b", query.getPhrases().get(1).getWords());
+        assertEquals(0, query.getPhrases().get(1).getSlop());
+
+        // A single quoted word is just a word
+        assertTrue(SearchQuery.parse("\"cat\" dog").getPhrases().isEmpty());
+    }
+
+    private void assertWords(String expected, IList<String> actual) {
+        assertEquals(expected, String.join(" ", actual));
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testPrunedResultsMatchExhaustiveScoring() {
+        this.checkAgainstExhaustiveScoring(1);
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testParallelResultsMatchExhaustiveScoring() {
+        this.checkAgainstExhaustiveScoring(4);
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testBm25ResultsMatchExhaustiveScoring() {
+        this.checkAgainstExhaustiveScoring(2, ScoringModel.BM25);
+    }
+
+    private void checkAgainstExhaustiveScoring(int queryThreads) {
+        this.checkAgainstExhaustiveScoring(queryThreads, ScoringModel.TF_IDF);
+    }
+
+    private void checkAgainstExhaustiveScoring(int queryThreads, ScoringModel model) {
+        Random rand = new Random(12);
+        ISet<Webpage> pages = this.makeRandomPages(rand, 300, 50);
+        SearchEngine engine = new SearchEngine(
+                pages, new SearchEngine.Options().queryThreads(queryThreads).scoringModel(model));
+
+        for (int trial = 0; trial < 100; trial++) {
+            IList<String> query = new DoubleLinkedList<>();
+            int numTerms = 1 + rand.nextInt(4);
+            for (int i = 0; i < numTerms; i++) {
+                query.add("word" + rand.nextInt(60));
+            }
+            int k = 1 + rand.nextInt(20);
+
+            IList<Double> expected = new DoubleLinkedList<>();
+            for (Webpage page : pages) {
+                double score = engine.computeScore(query, page.getUri());
+                if (score > 0.0) {
+                    expected.add(score);
+                }
+            }
+            expected = Searcher.topKSort(k, expected);
+
+            IList<Result> actual = engine.getTopKResults(query, k);
+            assertTrue(actual.size() >= expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                double expectedScore = expected.get(expected.size() - 1 - i);
+                assertEquals(expectedScore, actual.get(i).getScore(), DELTA);
+                assertEquals(expectedScore, engine.computeScore(query, actual.get(i).getUri()), DELTA);
+            }
+        }
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testImpactOrderedResultsMatchDocumentOrdered() {
+        Random rand = new Random(56);
+        ISet<Webpage> pages = this.makeRandomPages(rand, 300, 50);
+        SearchEngine documentOrdered = new SearchEngine(pages, new SearchEngine.Options());
+        SearchEngine impactOrdered = new SearchEngine(
+                pages, new SearchEngine.Options().indexMode(IndexMode.IMPACT_ORDERED));
+
+        for (int trial = 0; trial < 100; trial++) {
+            IList<String> query = new DoubleLinkedList<>();
+            int numTerms = 1 + rand.nextInt(3);
+            for (int i = 0; i < numTerms; i++) {
+                query.add("word" + rand.nextInt(60));
+            }
+            int k = 1 + rand.nextInt(trial % 10 == 0 ? 300 : 20);
+
+            IList<Result> expected = documentOrdered.getTopKResults(query, k);
+            IList<Result> actual = impactOrdered.getTopKResults(query, k);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getUri(), actual.get(i).getUri());
+                assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 0.0);
+            }
+        }
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testCompressedScoresMatchExactScores() {
+        Random rand = new Random(57);
+        ISet<Webpage> pages = this.makeRandomPages(rand, 300, 50);
+        SearchEngine engine = new SearchEngine(
+                pages, new SearchEngine.Options().queryThreads(2).postingsFormat(PostingsFormat.COMPRESSED_16_BIT));
+
+        for (int trial = 0; trial < 50; trial++) {
+            IList<String> query = new DoubleLinkedList<>();
+            int numTerms = 1 + rand.nextInt(4);
+            for (int i = 0; i < numTerms; i++) {
+                query.add("word" + rand.nextInt(60));
+            }
+            int k = 1 + rand.nextInt(20);
+
+            IList<Result> results = engine.getTopKResults(query, k);
+            for (Result result : results) {
+                double exact = engine.computeScore(query, result.getUri());
+                assertEquals(exact, result.getScore(), 1e-4 * exact + 1e-9);
+            }
+        }
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testQuantizedFormatsMostlyAgree() {
+        Random rand = new Random(59);
+        IndexFile index = new SearchEngine(this.makeRandomPages(rand, 300, 50)).toIndexFile();
+        SearchEngine exact = new SearchEngine(index, new SearchEngine.Options());
+        IList<IList<String>> queries = new DoubleLinkedList<>();
+        for (int trial = 0; trial < 100; trial++) {
+            queries.add(strToIList("word" + rand.nextInt(50) + " word" + rand.nextInt(50)));
+        }
+
+        SearchEngine floatEngine = new SearchEngine(
+                index, new SearchEngine.Options().postingsFormat(PostingsFormat.COMPRESSED_FLOAT));
+        SearchEngine byteEngine = new SearchEngine(
+                index, new SearchEngine.Options().postingsFormat(PostingsFormat.COMPRESSED_8_BIT));
+        double[] floats = WeightAgreementReport.measureAgreement(exact, floatEngine, queries, 10);
+        double[] bytes = WeightAgreementReport.measureAgreement(exact, byteEngine, queries, 10);
+        assertEquals(1.0, WeightAgreementReport.measureAgreement(exact, exact, queries, 10)[1], 0.0);
+        assertTrue(floats[0] >= 0.99);
+        assertTrue(bytes[0] >= 0.9);
+        assertTrue(bytes[0] <= floats[0]);
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testRefreshServesNewPages() {
+        Random rand = new Random(58);
+        SearchEngine engine = new SearchEngine(this.makeRandomPages(rand, 100, 50));
+        URI added = URI.create("http://example.com/added.html");
+        URI deleted = URI.create("http://example.com/random-page-3.html");
+
+        IndexWriter writer = engine.newIndexWriter();
+        writer.addOrUpdate(buildPage(added, "word0 unusual", new URI[0]));
+        writer.delete(deleted);
+        assertEquals(0, engine.getTopKResults(strToIList("unusual"), 10).size());
+
+        SearchEngine refreshed = engine.refresh(writer);
+        IList<Result> results = refreshed.getTopKResults(strToIList("unusual"), 10);
+        assertEquals(1, results.size());
+        assertEquals(added, results.get(0).getUri());
+        for (Result result : refreshed.getTopKResults(strToIList("word0"), 200)) {
+            assertTrue(!result.getUri().equals(deleted));
+        }
+        // The old engine still serves the old pages
+        assertEquals(0, engine.getTopKResults(strToIList("unusual"), 10).size());
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testPagesMatchTopKResults() {
+        Random rand = new Random(34);
+        SearchEngine engine = new SearchEngine(
+                this.makeRandomPages(rand, 300, 50), new SearchEngine.Options().queryThreads(2));
+
+        for (int trial = 0; trial < 20; trial++) {
+            IList<String> query = new DoubleLinkedList<>();
+            query.add("word" + rand.nextInt(10));
+            query.add("word" + rand.nextInt(50));
+            int pageSize = 1 + rand.nextInt(7);
+
+            IList<Result> all = engine.getTopKResults(query, 1000);
+            int seen = 0;
+            SearchCursor cursor = null;
+            do {
+                ResultPage page = engine.getResultsPage(query, cursor, pageSize);
+                assertTrue(page.getResults().size() <= pageSize);
+                for (Result result : page.getResults()) {
+                    assertEquals(all.get(seen).getUri(), result.getUri());
+                    assertEquals(all.get(seen).getScore(), result.getScore(), 0.0);
+                    seen++;
+                }
+                assertEquals(seen < all.size(), page.hasNext());
+                cursor = page.getNextCursor();
+                if (cursor != null) {
+                    cursor = SearchCursor.parse(cursor.toString());
+                }
+            } while (cursor != null);
+            assertEquals(all.size(), seen);
+        }
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testSavedIndexGivesSameResults() throws IOException {
+        Random rand = new Random(78);
+        SearchEngine original = new SearchEngine(this.makeRandomPages(rand, 200, 50));
+        Path path = Files.createTempFile("test-index", ".index");
+        try {
+            original.toIndexFile().write(path);
+            SearchEngine loaded = new SearchEngine(IndexFile.read(path), new SearchEngine.Options().queryThreads(2));
+
+            for (int trial = 0; trial < 50; trial++) {
+                String first = "word" + rand.nextInt(20);
+                String second = "word" + rand.nextInt(50);
+                SearchQuery query = SearchQuery.parse(trial % 2 == 0
+                        ? first + " " + second
+                        : "\"" + first + " " + second + "\"~3");
+
+                IList<Result> expected = original.getTopKResults(query, 10);
+                IList<Result> actual = loaded.getTopKResults(query, 10);
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getUri(), actual.get(i).getUri());
+                    assertEquals(expected.get(i).getTitle(), actual.get(i).getTitle());
+                    assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 0.0);
+                    assertEquals(
+                            original.computeScore(query.getTerms(), expected.get(i).getUri()),
+                            loaded.computeScore(query.getTerms(), actual.get(i).getUri()),
+                            0.0);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testCloseReleasesIndex() throws IOException {
+        Random rand = new Random(79);
+        Path path = Files.createTempFile("test-index", ".index");
+        try {
+            new SearchEngine(this.makeRandomPages(rand, 50, 20)).toIndexFile().write(path);
+            IndexFile index = IndexFile.read(path);
+            SearchEngine engine = new SearchEngine(index, new SearchEngine.Options().queryThreads(2));
+            IndexWriter writer = engine.newIndexWriter();
+            index.close();
+            engine.close();
+            engine.close();
+
+            try {
+                engine.getTopKResults(strToIList("word0"), 10);
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException ex) {
+                // All ok -- expected result
+            }
+            try {
+                engine.setScoringModel(ScoringModel.BM25);
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException ex) {
+                // All ok -- expected result
+            }
+
+            // The writer still holds the index until it is refreshed
+            writer.addOrUpdate(buildPage(URI.create("http://example.com/added.html"), "word0", new URI[0]));
+            IndexFile refreshed = writer.refresh();
+            assertEquals(51, refreshed.getRegistry().size());
+            try {
+                index.retain();
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException ex) {
+                // All ok -- expected result
+            }
+
+            // Closing the writer releases the last index it refreshed
+            writer.close();
+            try {
+                refreshed.retain();
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException ex) {
+                // All ok -- expected result
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testOpenFallsBackToMemoryOnlyWhenAsked() throws IOException {
+        Path folder = Files.createTempDirectory(Paths.get("data"), "test-open");
+        String name = folder.getFileName().toString();
+        // A non-empty folder where the index should be can neither be read nor replaced
+        Path indexPath = SearchEngine.getIndexPath(name);
+        Path blocker = indexPath.resolve("blocker");
+        Files.createDirectories(indexPath);
+        Files.createFile(blocker);
+        try {
+            try {
+                SearchEngine.open(name, new SearchEngine.Options());
+                fail("Expected UncheckedIOException");
+            } catch (UncheckedIOException ex) {
+                // All ok -- expected result
+            }
+
+            SearchEngine engine = SearchEngine.open(name, new SearchEngine.Options().inMemoryFallback(true));
+            assertEquals(0, engine.getTopKResults(strToIList("word"), 10).size());
+            engine.close();
+
+            // Only the folders we made are left
+            try (Stream<Path> files = Files.list(Paths.get("data"))) {
+                assertEquals(0L, files.filter(file -> file.getFileName().toString().startsWith(name)
+                        && !file.equals(folder) && !file.equals(indexPath)).count());
+            }
+        } finally {
+            Files.deleteIfExists(blocker);
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testCorruptedIndexIsRejected() throws IOException {
+        Path path = Files.createTempFile("test-index", ".index");
+        try {
+            this.makeExampleEngine().toIndexFile().write(path);
+            byte[] bytes = Files.readAllBytes(path);
+            // Damage the last section's checksum
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(path, bytes);
+
+            IndexFile.read(path);
+            fail("Expected IndexFormatException");
+        } catch (IndexFormatException ex) {
+            // All ok -- expected result
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package search;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.interfaces.ISet;
+import org.junit.Test;
+import search.models.Webpage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestSearchEngineHolder extends BaseSearchTest {
+    /**
+     * An engine that remembers how many times it was closed.
+     */
+    private static class TrackedEngine extends SearchEngine {
+        private AtomicInteger closes = new AtomicInteger();
+
+        public TrackedEngine(ISet<Webpage> pages) {
+            super(pages);
+        }
+
+        @Override
+        public void close() {
+            this.closes.incrementAndGet();
+            super.close();
+        }
+
+        public int getCloses() {
+            return this.closes.get();
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testOldEngineClosedAfterLastLease() {
+        TrackedEngine first = new TrackedEngine(makeSinglePage("first page"));
+        TrackedEngine second = new TrackedEngine(makeSinglePage("second page"));
+        SearchEngineHolder holder = new SearchEngineHolder(first);
+
+        SearchEngineHolder.Lease lease = holder.acquire();
+        assertEquals(first, lease.getEngine());
+        holder.publish(second);
+
+        // In-flight requests keep the old engine
+        assertEquals(0, first.getCloses());
+        assertEquals(first, lease.getEngine());
+        try (SearchEngineHolder.Lease newLease = holder.acquire()) {
+            assertEquals(second, newLease.getEngine());
+        }
+
+        lease.close();
+        lease.close();
+        assertEquals(1, first.getCloses());
+        assertEquals(0, second.getCloses());
+        try {
+            lease.getEngine();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testRebuildInBackground() throws InterruptedException, ExecutionException {
+        TrackedEngine first = new TrackedEngine(makeSinglePage("first page"));
+        SearchEngineHolder holder = new SearchEngineHolder(first);
+
+        CompletableFuture<SearchEngine> built =
+                holder.rebuildInBackground(() -> new TrackedEngine(makeSinglePage("second page")));
+        SearchEngine second = built.get();
+        try (SearchEngineHolder.Lease lease = holder.acquire()) {
+            assertEquals(second, lease.getEngine());
+            assertEquals(1, lease.getEngine().getTopKResults(strToIList("second"), 5).size());
+        }
+        assertEquals(1, first.getCloses());
+
+        CompletableFuture<SearchEngine> failed = holder.rebuildInBackground(() -> {
+            throw new IllegalStateException("no pages");
+        });
+        try {
+            failed.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException ex) {
+            // All ok -- expected result
+        }
+        try (SearchEngineHolder.Lease lease = holder.acquire()) {
+            assertEquals(second, lease.getEngine());
+        }
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testConcurrentSwaps() throws InterruptedException {
+        ISet<Webpage> pages = makeSinglePage("some page");
+        TrackedEngine[] engines = new TrackedEngine[50];
+        for (int i = 0; i < engines.length; i++) {
+            engines[i] = new TrackedEngine(pages);
+        }
+        SearchEngineHolder holder = new SearchEngineHolder(engines[0]);
+        AtomicBoolean usedClosedEngine = new AtomicBoolean(false);
+        AtomicBoolean done = new AtomicBoolean(false);
+
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                while (!done.get()) {
+                    try (SearchEngineHolder.Lease lease = holder.acquire()) {
+                        TrackedEngine engine = (TrackedEngine) lease.getEngine();
+                        engine.getTopKResults(strToIList("some"), 1);
+                        if (engine.getCloses() != 0) {
+                            usedClosedEngine.set(true);
+                        }
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        for (int i = 1; i < engines.length; i++) {
+            holder.publish(engines[i]);
+            Thread.sleep(2);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertFalse(usedClosedEngine.get());
+        for (int i = 0; i < engines.length - 1; i++) {
+            assertEquals(1, engines[i].getCloses());
+        }
+        assertEquals(0, engines[engines.length - 1].getCloses());
+        assertTrue(holder.acquire().getEngine() == engines[engines.length - 1]);
+    }
+}
@@ -0,0 +1,157 @@
+package search;
+
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import org.junit.Test;
+import search.analyzers.PreparedQuery;
+import search.analyzers.TfIdfAnalyzer;
+import search.index.DocumentRegistry;
+import search.index.MemoryInvertedIndex;
+import search.models.Webpage;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TestTfIdfAnalyzer extends BaseSearchTest {
+    /**
+     * Upper-cases half the random words, since the analyzer must treat words
+     * the same whatever their case.
+     */
+    @Override
+    protected String makeRandomWord(Random rand, int vocabularySize) {
+        String word = super.makeRandomWord(rand, vocabularySize);
+        return rand.nextBoolean() ? word : word.toUpperCase();
+    }
+
+    @Test(timeout=SECOND)
+    public void testPreparedQueryHasUniqueTerms() {
+        TfIdfAnalyzer analyzer = new TfIdfAnalyzer(makeExamplePages());
+        PreparedQuery query = analyzer.prepareQuery(strToIList("dog the dog unknownword"));
+
+        assertEquals(3, query.size());
+        assertEquals("dog", query.getTerm(0));
+        assertEquals("the", query.getTerm(1));
+        assertEquals("unknownword", query.getTerm(2));
+        assertEquals(0.0, query.getWeight(1), DELTA);
+        assertEquals(0.0, query.getWeight(2), DELTA);
+        assertEquals(query.getWeight(0), query.getNorm(), DELTA);
+    }
+
+    @Test(timeout=SECOND)
+    public void testPreparedQueryMatchesUnpreparedRelevance() {
+        TfIdfAnalyzer analyzer = new TfIdfAnalyzer(makeExamplePages());
+        IList<String> query = strToIList("the 1 cat dog dog");
+        PreparedQuery prepared = analyzer.prepareQuery(query);
+
+        for (URI uri : new URI[] {PAGE_A, PAGE_B, PAGE_C}) {
+            assertEquals(analyzer.computeRelevance(query, uri), analyzer.computeRelevance(prepared, uri), DELTA);
+        }
+        assertEquals(0.353553, analyzer.computeRelevance(analyzer.prepareQuery(strToIList("the 1 cat")), PAGE_A), DELTA);
+    }
+
+    @Test(timeout=SECOND)
+    public void testVectorsMatchPerTokenComputation() {
+        ISet<Webpage> pages = this.makeRandomPages(new Random(7), 40, 30);
+        DocumentRegistry registry = new DocumentRegistry(pages);
+        TfIdfAnalyzer analyzer = new TfIdfAnalyzer(pages, registry);
+
+        // Computes the vectors the way the analyzer used to: visiting every occurrence
+        // of every word, and recomputing its weight each time.
+        IDictionary<String, Double> documentFrequencies = new ChainedHashDictionary<>();
+        IDictionary<URI, IDictionary<String, Double>> termFrequencies = new ChainedHashDictionary<>();
+        for (Webpage page : pages) {
+            IDictionary<String, Double> counts = new ChainedHashDictionary<>();
+            for (String word : page.getWords()) {
+                counts.put(word.toLowerCase(), counts.getOrDefault(word.toLowerCase(), 0.0) + 1.0);
+            }
+            for (KVPair<String, Double> pair : counts) {
+                documentFrequencies.put(pair.getKey(), documentFrequencies.getOrDefault(pair.getKey(), 0.0) + 1.0);
+            }
+            termFrequencies.put(page.getUri(), counts);
+        }
+        for (Webpage page : pages) {
+            IDictionary<String, Double> expected = new ChainedHashDictionary<>();
+            for (String word : page.getWords()) {
+                String term = word.toLowerCase();
+                expected.put(term, Math.log(Math.pow(pages.size() / documentFrequencies.get(term),
+                        termFrequencies.get(page.getUri()).get(term) / page.getWords().size())));
+            }
+            // Norms are summed in term id order, which is alphabetical order
+            String[] terms = new String[expected.size()];
+            int count = 0;
+            for (KVPair<String, Double> pair : expected) {
+                terms[count] = pair.getKey();
+                count++;
+            }
+            Arrays.sort(terms);
+            double squaredNorm = 0.0;
+            for (String term : terms) {
+                squaredNorm += Math.pow(expected.get(term), 2);
+            }
+
+            int docId = registry.getId(page.getUri());
+            IDictionary<String, Double> actual = analyzer.getDocumentTfIdfVector(docId);
+            assertEquals(expected.size(), actual.size());
+            for (KVPair<String, Double> pair : expected) {
+                assertEquals(pair.getValue(), actual.get(pair.getKey()), 0.0);
+            }
+            assertEquals(Math.sqrt(squaredNorm), analyzer.getDocumentNorm(docId), 0.0);
+
+            int[] termIds = analyzer.getDocumentTermIds(docId);
+            double[] weights = analyzer.getDocumentWeights(docId);
+            assertEquals(terms.length, termIds.length);
+            for (int i = 0; i < termIds.length; i++) {
+                assertEquals(terms[i], analyzer.getTermDictionary().getTerm(termIds[i]));
+                assertEquals(expected.get(terms[i]), weights[i], 0.0);
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSameVectorsWhateverThreadCount() {
+        ISet<Webpage> pages = this.makeRandomPages(new Random(8), 300, 30);
+        DocumentRegistry registry = new DocumentRegistry(pages);
+        TfIdfAnalyzer expected = new TfIdfAnalyzer(pages, registry, 1);
+        for (int threads : new int[] {2, 3, 8}) {
+            TfIdfAnalyzer actual = new TfIdfAnalyzer(pages, registry, threads);
+            assertEquals(expected.getTermDictionary().size(), actual.getTermDictionary().size());
+            for (int termId = 0; termId < expected.getTermDictionary().size(); termId++) {
+                assertEquals(expected.getTermDictionary().getTerm(termId), actual.getTermDictionary().getTerm(termId));
+                assertEquals(expected.getTermDictionary().getDocumentFrequency(termId),
+                        actual.getTermDictionary().getDocumentFrequency(termId));
+            }
+            for (int docId = 0; docId < registry.size(); docId++) {
+                IDictionary<String, Double> vector = expected.getDocumentTfIdfVector(docId);
+                assertEquals(vector.size(), actual.getDocumentTfIdfVector(docId).size());
+                for (KVPair<String, Double> pair : vector) {
+                    assertEquals(pair.getValue(), actual.getDocumentTfIdfVector(docId).get(pair.getKey()), 0.0);
+                }
+                assertEquals(expected.getDocumentNorm(docId), actual.getDocumentNorm(docId), 0.0);
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRestoredAnalyzerMatches() {
+        ISet<Webpage> pages = this.makeRandomPages(new Random(9), 50, 30);
+        DocumentRegistry registry = new DocumentRegistry(pages);
+        TfIdfAnalyzer built = new TfIdfAnalyzer(pages, registry);
+        TfIdfAnalyzer restored = new TfIdfAnalyzer(
+                registry, pages.size(), new MemoryInvertedIndex(built, registry.size()));
+        PreparedQuery query = built.prepareQuery(strToIList("word3 word7 word7 missing word12"));
+
+        // Once reading postings, and once after rebuilding the sparse vectors
+        for (int round = 0; round < 2; round++) {
+            for (int docId = 0; docId < registry.size(); docId++) {
+                assertEquals(built.computeRelevance(query, docId), restored.computeRelevance(query, docId), 0.0);
+            }
+            for (int docId = 0; docId < registry.size(); docId++) {
+                assertEquals(built.getDocumentTermIds(docId).length, restored.getDocumentTermIds(docId).length);
+            }
+        }
+    }
+}
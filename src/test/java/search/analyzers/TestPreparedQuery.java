@@ -0,0 +1,36 @@
+package search.analyzers;
+
+import static org.junit.Assert.assertSame;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.index.TermDictionary;
+
+public class TestPreparedQuery extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testSortedIndexes() {
+        PreparedQuery query = new PreparedQuery(
+                new String[] {"cat", "apple", "dog", "banana"}, new double[] {1.0, 2.0, 3.0, 4.0});
+        int[] expected = {1, 3, 0, 2};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], query.getSortedIndex(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testTermIdsSkipUnknownWords() {
+        TermDictionary dictionary = new TermDictionary(
+                new String[] {"apple", "cat", "dog"}, new int[] {1, 1, 1}, new long[] {0, 1, 2});
+        PreparedQuery query = new PreparedQuery(
+                new String[] {"dog", "zebra", "apple"}, new double[] {1.0, 0.0, 2.0});
+        PreparedQuery.TermIds ids = query.getTermIds(dictionary);
+        assertEquals(2, ids.size());
+        assertEquals(0, ids.getId(0));
+        assertEquals(2, ids.getIndex(0));
+        assertEquals(2, ids.getId(1));
+        assertEquals(0, ids.getIndex(1));
+
+        // Looked up once per dictionary
+        assertSame(ids, query.getTermIds(dictionary));
+    }
+}
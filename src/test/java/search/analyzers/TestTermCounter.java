@@ -0,0 +1,75 @@
+package search.analyzers;
+
+import static org.junit.Assert.fail;
+
+import misc.BaseTest;
+import org.junit.Test;
+
+public class TestTermCounter extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testCountsInFirstOccurrenceOrder() {
+        TermCounter counter = new TermCounter();
+        for (String term : "b a b c a b".split(" ")) {
+            counter.add(term);
+        }
+        assertEquals(3, counter.size());
+        assertEquals(6, counter.getTotal());
+        assertEquals("b", counter.getTerm(0));
+        assertEquals(3, counter.getCount(0));
+        assertEquals("a", counter.getTerm(1));
+        assertEquals(2, counter.getCount(1));
+        assertEquals("c", counter.getTerm(2));
+        assertEquals(1, counter.getCount(2));
+    }
+
+    @Test(timeout=SECOND)
+    public void testGrowsAndClears() {
+        TermCounter counter = new TermCounter();
+        for (int round = 0; round < 3; round++) {
+            counter.clear();
+            assertEquals(0, counter.size());
+            int distinct = 1000 * (round + 1);
+            for (int i = 0; i < distinct; i++) {
+                counter.add("term" + i);
+                counter.add("term" + (i / 2));
+            }
+            assertEquals(distinct, counter.size());
+            assertEquals(2 * distinct, counter.getTotal());
+            for (int i = 0; i < distinct; i++) {
+                assertEquals("term" + i, counter.getTerm(i));
+                int expected = (i < distinct / 2 ? 2 : 0) + 1;
+                assertEquals(expected, counter.getCount(i));
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddCounts() {
+        TermCounter counter = new TermCounter();
+        counter.add("a", 3);
+        counter.add("b");
+        counter.add("a", 2);
+        assertEquals(2, counter.size());
+        assertEquals(6, counter.getTotal());
+        assertEquals(5, counter.getCount(0));
+        try {
+            counter.add("c", 0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testOutOfBounds() {
+        TermCounter counter = new TermCounter();
+        counter.add("a");
+        counter.clear();
+        try {
+            counter.getTerm(0);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+            // All ok -- expected result
+        }
+    }
+}
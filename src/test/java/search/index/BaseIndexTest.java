@@ -0,0 +1,136 @@
+package search.index;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import search.models.Webpage;
+
+import java.net.URI;
+import java.util.Random;
+
+/**
+ * Page generators and index comparisons shared by the tests of the classes
+ * that build, save and update indexes.
+ */
+public abstract class BaseIndexTest extends BaseTest {
+    protected static URI makeUri(int number) {
+        return URI.create("http://example.com/page-" + number + ".html");
+    }
+
+    /**
+     * Returns a page with between 1 and 30 words drawn from a vocabulary of
+     * about 80 words, some of them non-ASCII, and no links.
+     */
+    protected static Webpage makeRandomPage(Random rand, int number) {
+        return new Webpage(makeUri(number), new DoubleLinkedList<>(), makeRandomWords(rand),
+                "title " + number, "blurb " + number);
+    }
+
+    /**
+     * Returns the given number of pages, made like makeRandomPage(...), except
+     * that each links to a few random pages. Some links point at pages that
+     * don't exist.
+     */
+    protected static ISet<Webpage> makeRandomPages(Random rand, int numPages) {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < numPages; i++) {
+            IList<String> words = makeRandomWords(rand);
+            IList<URI> links = new DoubleLinkedList<>();
+            int numLinks = rand.nextInt(5);
+            for (int j = 0; j < numLinks; j++) {
+                links.add(rand.nextInt(8) == 0
+                        ? URI.create("http://example.com/missing-" + j + ".html")
+                        : makeUri(rand.nextInt(numPages)));
+            }
+            pages.add(new Webpage(makeUri(i), links, words, "title " + i, "blurb " + i));
+        }
+        return pages;
+    }
+
+    private static IList<String> makeRandomWords(Random rand) {
+        IList<String> words = new DoubleLinkedList<>();
+        int numWords = 1 + rand.nextInt(30);
+        for (int j = 0; j < numWords; j++) {
+            words.add("word" + rand.nextInt(40) + (rand.nextInt(10) == 0 ? "\u00e9" : ""));
+        }
+        return words;
+    }
+
+    /**
+     * Returns a page containing the words of the given text, and no links.
+     */
+    protected static Webpage makePage(int number, String text) {
+        IList<String> words = new DoubleLinkedList<>();
+        for (String word : text.split(" ")) {
+            words.add(word);
+        }
+        return new Webpage(makeUri(number), new DoubleLinkedList<>(), words, "title " + number, "blurb " + number);
+    }
+
+    /**
+     * Checks that both indexes are the same, down to their document ids. Norms
+     * and weights may differ by at most delta.
+     */
+    protected static void assertSameIndex(IndexFile expected, IndexFile actual, double delta) {
+        int documentCount = expected.getRegistry().size();
+        assertEquals(documentCount, actual.getRegistry().size());
+        for (int id = 0; id < documentCount; id++) {
+            assertEquals(expected.getRegistry().getSummary(id), actual.getRegistry().getSummary(id));
+            assertEquals(expected.getPageRanks()[id], actual.getPageRanks()[id], delta);
+        }
+        assertSameContents(expected, actual, delta);
+    }
+
+    /**
+     * Checks that both indexes contain the same pages, terms, weights and
+     * positions. Ids may differ, so we match documents by URI. Norms and weights
+     * may differ by at most delta.
+     */
+    protected static void assertSameContents(IndexFile expected, IndexFile actual, double delta) {
+        DocumentRegistry expectedRegistry = expected.getRegistry();
+        DocumentRegistry actualRegistry = actual.getRegistry();
+        assertEquals(expectedRegistry.size(), actualRegistry.size());
+        assertEquals(expected.getCorpusSize(), actual.getCorpusSize());
+
+        int[] actualIds = new int[expectedRegistry.size()];
+        for (int id = 0; id < actualIds.length; id++) {
+            actualIds[id] = actualRegistry.getId(expectedRegistry.getUri(id));
+            assertEquals(
+                    expected.getInvertedIndex().getDocumentNorm(id),
+                    actual.getInvertedIndex().getDocumentNorm(actualIds[id]),
+                    delta);
+        }
+
+        assertEquals(expected.getInvertedIndex().termCount(), actual.getInvertedIndex().termCount());
+        for (KVPair<String, PostingList> entry : expected.getInvertedIndex()) {
+            PostingList list = entry.getValue();
+            PostingList other = actual.getInvertedIndex().getPostings(entry.getKey());
+            assertEquals(list.size(), other.size());
+            for (int i = 0; i < list.size(); i++) {
+                int id = actualIds[list.getDocumentId(i)];
+                int position = other.advance(0, id);
+                assertEquals(id, other.getDocumentId(position));
+                assertEquals(list.getWeight(i), other.getWeight(position), delta);
+            }
+        }
+
+        assertEquals(expected.getPositionalIndex().termCount(), actual.getPositionalIndex().termCount());
+        for (KVPair<String, PositionalPostingList> entry : expected.getPositionalIndex()) {
+            PositionalPostingList list = entry.getValue();
+            PositionalPostingList other = actual.getPositionalIndex().getPostings(entry.getKey());
+            assertEquals(list.size(), other.size());
+            for (int i = 0; i < list.size(); i++) {
+                int id = actualIds[list.getDocumentId(i)];
+                int position = other.advance(0, id);
+                assertEquals(id, other.getDocumentId(position));
+                assertEquals(list.getFrequency(i), other.getFrequency(position));
+                for (int j = 0; j < list.getFrequency(i); j++) {
+                    assertEquals(list.getPosition(i, j), other.getPosition(position, j));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package search.index;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.interfaces.ISet;
+import org.junit.Test;
+import search.SearchEngine;
+import search.models.Webpage;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TestBackgroundMerger extends BaseIndexTest {
+    private IndexWriter makeWriter(int numPages) {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < numPages; i++) {
+            pages.add(makePage(i, "common page" + i));
+        }
+        return new IndexWriter(new SearchEngine(pages).toIndexFile(), 0.85);
+    }
+
+    @Test(timeout=SECOND)
+    public void testPolicy() {
+        MergePolicy policy = new MergePolicy(5, 0.1, 1000);
+        assertFalse(policy.shouldMerge(0, 100, 5000));
+        assertFalse(policy.shouldMerge(4, 10, 0));
+        assertTrue(policy.shouldMerge(5, 10, 0));
+        assertFalse(policy.shouldMerge(9, 100, 0));
+        assertTrue(policy.shouldMerge(10, 100, 0));
+        assertTrue(policy.shouldMerge(1, 100, 1000));
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testMergesInBackground() throws InterruptedException {
+        IndexWriter writer = this.makeWriter(20);
+        AtomicReference<IndexFile> published = new AtomicReference<>();
+        BackgroundMerger merger = new BackgroundMerger(
+                writer, new MergePolicy(2, 0.0, 60000), null, 5, published::set);
+        merger.start();
+        try {
+            writer.addOrUpdate(makePage(100, "common brand new"));
+            Thread.sleep(50);
+            // Not enough changes yet
+            assertEquals(null, published.get());
+
+            writer.delete(URI.create("http://example.com/page-0.html"));
+            while (published.get() == null) {
+                Thread.sleep(5);
+            }
+        } finally {
+            merger.stop();
+        }
+
+        IndexFile index = published.get();
+        assertEquals(20, index.getRegistry().size());
+        assertEquals(1, index.getInvertedIndex().getPostings("brand").size());
+        assertEquals(0, index.getInvertedIndex().getPostings("page0").size());
+        assertFalse(writer.hasPendingChanges());
+
+        MergeMetrics metrics = merger.getMetrics();
+        assertEquals(1L, metrics.getMerges());
+        assertEquals(1L, metrics.getDocumentsAdded());
+        assertEquals(1L, metrics.getDocumentsDropped());
+        assertEquals(0L, metrics.getFailures());
+        assertTrue(metrics.getPostingsCopied() > 0);
+
+        // The merger leaves the writer open, and closing it releases the merged index
+        writer.close();
+        try {
+            index.retain();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testStopWaitsForMergeInProgress() throws InterruptedException {
+        IndexWriter writer = this.makeWriter(100);
+        AtomicReference<IndexFile> published = new AtomicReference<>();
+        // There are 200 postings to copy, which takes about half a second
+        BackgroundMerger merger = new BackgroundMerger(
+                writer, new MergePolicy(1, 0.0, 60000), new RateLimiter(400.0), 5, published::set);
+        merger.start();
+        writer.addOrUpdate(makePage(100, "common brand new"));
+        Thread.sleep(150);
+        merger.stop();
+
+        assertTrue(published.get() != null);
+        assertEquals(1, published.get().getInvertedIndex().getPostings("brand").size());
+        assertFalse(writer.hasPendingChanges());
+        MergeMetrics metrics = merger.getMetrics();
+        assertEquals(1L, metrics.getMerges());
+        assertEquals(0L, metrics.getFailures());
+        assertTrue(metrics.getThrottledMillis() <= metrics.getMergeMillis());
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testThrottlesCopying() {
+        IndexWriter writer = this.makeWriter(50);
+        writer.addOrUpdate(makePage(100, "new"));
+        MergeMetrics metrics = new MergeMetrics();
+
+        // Every page has two words, so there are 100 postings to copy
+        long start = System.currentTimeMillis();
+        writer.refresh(new RateLimiter(1000.0), metrics);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(100L, metrics.getPostingsCopied());
+        assertTrue(elapsed >= 50);
+        assertTrue(metrics.getThrottledMillis() > 0);
+    }
+
+    @Test(timeout=SECOND)
+    public void testInterruptedLimiterReportsTimeSlept() {
+        RateLimiter limiter = new RateLimiter(10.0);
+        // Would sleep for a second if not interrupted
+        Thread.currentThread().interrupt();
+        long slept = limiter.acquire(10);
+        assertTrue(Thread.interrupted());
+        assertTrue(slept < 100);
+
+        limiter = new RateLimiter(10.0);
+        long start = System.nanoTime();
+        slept = limiter.acquire(2);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(slept > 0);
+        assertTrue(slept <= elapsed);
+    }
+
+    @Test(timeout=SECOND)
+    public void testChangesDuringRefreshArePreserved() {
+        IndexWriter writer = this.makeWriter(5);
+        writer.addOrUpdate(makePage(10, "first"));
+        writer.refresh();
+        writer.delete(URI.create("http://example.com/page-10.html"));
+        writer.addOrUpdate(makePage(10, "second"));
+        IndexFile index = writer.refresh();
+        assertEquals(0, index.getInvertedIndex().getPostings("first").size());
+        assertEquals(1, index.getInvertedIndex().getPostings("second").size());
+        assertEquals(6, index.getRegistry().size());
+    }
+}
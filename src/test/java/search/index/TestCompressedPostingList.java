@@ -0,0 +1,116 @@
+package search.index;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import misc.BaseTest;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestCompressedPostingList extends BaseTest {
+    private ArrayPostingList makeRandomList(Random rand, int size) {
+        ArrayPostingList list = new ArrayPostingList();
+        int id = rand.nextInt(1000);
+        for (int i = 0; i < size; i++) {
+            list.add(id, rand.nextDouble() * 5.0);
+            // Mix small gaps with ones that need several bytes
+            id += 1 + (rand.nextInt(4) == 0 ? rand.nextInt(1 << 21) : rand.nextInt(100));
+        }
+        return list;
+    }
+
+    private double getMaxWeight(PostingList list) {
+        double max = 0.0;
+        for (int i = 0; i < list.size(); i++) {
+            max = Math.max(max, list.getWeight(i));
+        }
+        return max;
+    }
+
+    /**
+     * Returns the largest error a weight stored in the given format may have.
+     */
+    private double getTolerance(PostingsFormat format, double maxWeight) {
+        if (format == PostingsFormat.COMPRESSED_FLOAT) {
+            return maxWeight * 1e-7;
+        }
+        return maxWeight / ((1L << (8 * format.getWeightBytes())) - 1);
+    }
+
+    private PostingList compress(PostingList list, PostingsFormat format) {
+        return new CompressedPostingList(new CompressedPostingList.Data(list, format));
+    }
+
+    @Test(timeout=SECOND)
+    public void testDecodesIdsExactlyAndWeightsApproximately() {
+        Random rand = new Random(13);
+        for (PostingsFormat format : new PostingsFormat[] {
+                PostingsFormat.COMPRESSED_FLOAT, PostingsFormat.COMPRESSED_16_BIT, PostingsFormat.COMPRESSED_8_BIT}) {
+            for (int size : new int[] {0, 1, 127, 128, 129, 1000}) {
+                this.checkDecodes(this.makeRandomList(rand, size), format);
+            }
+        }
+    }
+
+    private void checkDecodes(ArrayPostingList expected, PostingsFormat format) {
+        PostingList actual = this.compress(expected, format);
+        double tolerance = this.getTolerance(format, this.getMaxWeight(expected));
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getDocumentId(i), actual.getDocumentId(i));
+            assertEquals(expected.getWeight(i), actual.getWeight(i), tolerance);
+        }
+        // Reading backwards decodes every block again
+        for (int i = expected.size() - 1; i >= 0; i--) {
+            assertEquals(expected.getDocumentId(i), actual.getDocumentId(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testAdvanceMatchesUncompressed() {
+        Random rand = new Random(14);
+        ArrayPostingList expected = this.makeRandomList(rand, 2000);
+        PostingList actual = this.compress(expected, PostingsFormat.COMPRESSED_16_BIT);
+        int lastId = expected.getDocumentId(expected.size() - 1);
+
+        for (int trial = 0; trial < 2000; trial++) {
+            int from = rand.nextInt(expected.size() + 1);
+            int target = rand.nextInt(lastId + 10);
+            assertEquals(expected.advance(from, target), actual.advance(from, target));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testUsesLessSpace() {
+        ArrayPostingList expected = this.makeRandomList(new Random(15), 10000);
+        long floatBytes = new CompressedPostingList.Data(expected, PostingsFormat.COMPRESSED_FLOAT).bytesUsed();
+        long shortBytes = new CompressedPostingList.Data(expected, PostingsFormat.COMPRESSED_16_BIT).bytesUsed();
+        long byteBytes = new CompressedPostingList.Data(expected, PostingsFormat.COMPRESSED_8_BIT).bytesUsed();
+        assertTrue(floatBytes < 8L * expected.size());
+        assertTrue(shortBytes < 6L * expected.size());
+        assertEquals(floatBytes - 2L * expected.size(), shortBytes);
+        assertEquals(shortBytes - expected.size(), byteBytes);
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsUncompressedFormat() {
+        try {
+            new CompressedPostingList.Data(new ArrayPostingList(), PostingsFormat.ARRAYS);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testAllZeroWeights() {
+        ArrayPostingList expected = new ArrayPostingList();
+        expected.add(3, 0.0);
+        expected.add(4, 0.0);
+        PostingList actual = this.compress(expected, PostingsFormat.COMPRESSED_8_BIT);
+        assertEquals(0.0, actual.getWeight(0), 0.0);
+        assertEquals(4, actual.getDocumentId(1));
+    }
+}
@@ -0,0 +1,40 @@
+package search.index;
+
+import static org.junit.Assert.assertTrue;
+
+import misc.BaseTest;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestImpactOrderedIndex extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testSortKeepsEqualImpactsInOrder() {
+        double[] impacts = {0.5, 2.0, 0.5, 1.0, 2.0, 0.0, 0.5};
+        int[] order = {0, 1, 2, 3, 4, 5, 6};
+        ImpactOrderedIndex.sortByDecreasingImpact(order, impacts);
+        int[] expected = {1, 4, 3, 0, 2, 6, 5};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], order[i]);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSortRandom() {
+        Random rand = new Random(1);
+        for (int size = 0; size < 200; size++) {
+            double[] impacts = new double[size];
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                impacts[i] = rand.nextInt(10) / 4.0;
+                order[i] = i;
+            }
+            ImpactOrderedIndex.sortByDecreasingImpact(order, impacts);
+            for (int i = 1; i < size; i++) {
+                double previous = impacts[order[i - 1]];
+                double current = impacts[order[i]];
+                assertTrue(previous > current || (previous == current && order[i - 1] < order[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package search.index;
+
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import search.SearchEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class TestIndexFile extends BaseIndexTest {
+    @Test(timeout=SECOND)
+    public void testRoundTrip() throws IOException {
+        IndexFile index = new SearchEngine(makeRandomPages(new Random(1), 50)).toIndexFile();
+        Path path = Files.createTempFile("test-index", ".index");
+        try {
+            index.write(path);
+            assertSameIndex(index, IndexFile.read(path), 0.0);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testValuesSpanningRegions() throws IOException {
+        IndexFile index = new SearchEngine(makeRandomPages(new Random(2), 50)).toIndexFile();
+        Path path = Files.createTempFile("test-index", ".index");
+        try {
+            index.write(path);
+
+            // 64-byte regions, so almost every string and many values cross a boundary
+            assertSameIndex(index, IndexFile.read(path, 6), 0.0);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testMissingTerm() throws IOException {
+        IndexFile index = new SearchEngine(makeRandomPages(new Random(3), 10)).toIndexFile();
+        Path path = Files.createTempFile("test-index", ".index");
+        try {
+            index.write(path);
+            IndexFile mapped = IndexFile.read(path);
+            assertEquals(0, mapped.getInvertedIndex().getPostings("word").size());
+            assertEquals(0, mapped.getInvertedIndex().getPostings("word99").size());
+            assertEquals(0, mapped.getPositionalIndex().getPostings("zzz").size());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testFailedWriteLeavesNoTemporaryFile() throws IOException {
+        IndexFile index = new SearchEngine(makeRandomPages(new Random(4), 10)).toIndexFile();
+        Path folder = Files.createTempDirectory("test-index");
+        // A folder that isn't empty can't be replaced, so the final rename fails
+        Path path = folder.resolve("test.index");
+        Path blocker = Files.createFile(Files.createDirectory(path).resolve("blocker"));
+        try {
+            index.write(path);
+            fail("Expected IOException");
+        } catch (IOException ex) {
+            // All ok -- expected result
+        } finally {
+            try (Stream<Path> files = Files.list(folder)) {
+                assertEquals(1L, files.count());
+            }
+            Files.delete(blocker);
+            Files.delete(path);
+            Files.delete(folder);
+        }
+    }
+}
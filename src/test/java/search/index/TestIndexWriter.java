@@ -0,0 +1,176 @@
+package search.index;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.interfaces.ISet;
+import org.junit.Test;
+import search.SearchEngine;
+import search.models.Webpage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class TestIndexWriter extends BaseIndexTest {
+    private static final double PAGE_RANK_DECAY = 0.85;
+
+    private ISet<Webpage> copyOf(ISet<Webpage> pages) {
+        ISet<Webpage> copy = new ChainedHashSet<>();
+        for (Webpage page : pages) {
+            copy.add(page);
+        }
+        return copy;
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testRefreshMatchesRebuild() {
+        Random rand = new Random(31);
+        Webpage[] pages = new Webpage[60];
+        ISet<Webpage> initial = new ChainedHashSet<>();
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = makeRandomPage(rand, i);
+            if (i < 40) {
+                initial.add(pages[i]);
+            }
+        }
+        IndexWriter writer = new IndexWriter(new SearchEngine(initial).toIndexFile(), PAGE_RANK_DECAY);
+        ISet<Webpage> expected = this.copyOf(initial);
+
+        for (int i = 40; i < 60; i++) {
+            writer.addOrUpdate(pages[i]);
+            expected.add(pages[i]);
+        }
+        for (int i = 0; i < 5; i++) {
+            writer.delete(pages[i].getUri());
+            expected.remove(pages[i]);
+        }
+        for (int i = 5; i < 10; i++) {
+            Webpage updated = makeRandomPage(rand, i);
+            writer.addOrUpdate(updated);
+            expected.remove(pages[i]);
+            expected.add(updated);
+        }
+        // Deleting a page added since the last refresh discards it
+        writer.delete(pages[59].getUri());
+        expected.remove(pages[59]);
+
+        IndexFile refreshed = writer.refresh();
+        assertSameContents(new SearchEngine(expected).toIndexFile(), refreshed, 0.0);
+
+        // A second round of changes builds on the first
+        writer.delete(pages[20].getUri());
+        expected.remove(pages[20]);
+        writer.addOrUpdate(pages[59]);
+        expected.add(pages[59]);
+        assertSameContents(new SearchEngine(expected).toIndexFile(), writer.refresh(), 0.0);
+    }
+
+    @Test(timeout=SECOND)
+    public void testChangesInvisibleUntilRefresh() {
+        Random rand = new Random(32);
+        ISet<Webpage> initial = new ChainedHashSet<>();
+        for (int i = 0; i < 10; i++) {
+            initial.add(makeRandomPage(rand, i));
+        }
+        IndexFile base = new SearchEngine(initial).toIndexFile();
+        IndexWriter writer = new IndexWriter(base, PAGE_RANK_DECAY);
+        assertFalse(writer.hasPendingChanges());
+
+        writer.addOrUpdate(makeRandomPage(rand, 10));
+        writer.delete(URI.create("http://example.com/page-0.html"));
+        writer.delete(URI.create("http://example.com/no-such-page.html"));
+        assertTrue(writer.hasPendingChanges());
+        assertEquals(base, writer.getIndex());
+        assertEquals(10, base.getRegistry().size());
+
+        IndexFile refreshed = writer.refresh();
+        assertFalse(writer.hasPendingChanges());
+        assertEquals(10, refreshed.getRegistry().size());
+        assertFalse(refreshed.getRegistry().contains(URI.create("http://example.com/page-0.html")));
+        assertTrue(refreshed.getRegistry().contains(URI.create("http://example.com/page-10.html")));
+        for (double pageRank : refreshed.getPageRanks()) {
+            assertTrue(pageRank > 0.0);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRefreshIsMappedAndLeavesNoFiles() throws IOException {
+        Random rand = new Random(33);
+        ISet<Webpage> initial = new ChainedHashSet<>();
+        for (int i = 0; i < 20; i++) {
+            initial.add(makeRandomPage(rand, i));
+        }
+        Path folder = Files.createTempDirectory("test-index-writer");
+        try {
+            IndexWriter writer = new IndexWriter(new SearchEngine(initial).toIndexFile(), PAGE_RANK_DECAY, folder);
+            writer.addOrUpdate(makeRandomPage(rand, 20));
+            IndexFile refreshed = writer.refresh();
+            assertTrue(refreshed.getInvertedIndex() instanceof MappedInvertedIndex);
+            assertTrue(refreshed.getPositionalIndex() instanceof MappedPositionalIndex);
+            assertEquals(21, refreshed.getRegistry().size());
+            try (Stream<Path> files = Files.list(folder)) {
+                assertEquals(0L, files.count());
+            }
+        } finally {
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testCloseReleasesIndex() throws IOException {
+        Random rand = new Random(35);
+        ISet<Webpage> initial = new ChainedHashSet<>();
+        for (int i = 0; i < 5; i++) {
+            initial.add(makeRandomPage(rand, i));
+        }
+        IndexFile base = new SearchEngine(initial).toIndexFile();
+        IndexWriter writer = new IndexWriter(base, PAGE_RANK_DECAY);
+        base.close();
+        writer.addOrUpdate(makeRandomPage(rand, 5));
+        IndexFile refreshed = writer.refresh();
+        writer.close();
+        writer.close();
+
+        try {
+            refreshed.retain();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ex) {
+            // All ok -- expected result
+        }
+        try {
+            writer.refresh();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testFailedRefreshKeepsChanges() throws IOException {
+        Random rand = new Random(34);
+        ISet<Webpage> initial = new ChainedHashSet<>();
+        for (int i = 0; i < 5; i++) {
+            initial.add(makeRandomPage(rand, i));
+        }
+        Path folder = Files.createTempDirectory("test-index-writer");
+        Files.delete(folder);
+        IndexFile base = new SearchEngine(initial).toIndexFile();
+        IndexWriter writer = new IndexWriter(base, PAGE_RANK_DECAY, folder);
+        writer.addOrUpdate(makeRandomPage(rand, 5));
+        try {
+            writer.refresh();
+            fail("Expected UncheckedIOException");
+        } catch (UncheckedIOException ex) {
+            // All ok -- expected result
+        }
+        assertEquals(1, writer.getPendingChangeCount());
+        assertEquals(base, writer.getIndex());
+    }
+}
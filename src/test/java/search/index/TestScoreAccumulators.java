@@ -0,0 +1,57 @@
+package search.index;
+
+import static org.junit.Assert.fail;
+
+import misc.BaseTest;
+import org.junit.Test;
+
+public class TestScoreAccumulators extends BaseTest {
+    public static final double DELTA = 0.000001;
+
+    @Test(timeout=SECOND)
+    public void testSumsInFirstOccurrenceOrder() {
+        ScoreAccumulators accumulators = new ScoreAccumulators();
+        accumulators.add(7, 1.0);
+        accumulators.add(0, 0.5);
+        accumulators.add(7, 2.0);
+        accumulators.add(1000000, 0.25);
+        assertEquals(3, accumulators.size());
+        assertEquals(7, accumulators.getDocumentId(0));
+        assertEquals(3.0, accumulators.getScore(0), DELTA);
+        assertEquals(0, accumulators.getDocumentId(1));
+        assertEquals(0.5, accumulators.getScore(1), DELTA);
+        assertEquals(1000000, accumulators.getDocumentId(2));
+        assertEquals(0.25, accumulators.getScore(2), DELTA);
+    }
+
+    @Test(timeout=SECOND)
+    public void testGrows() {
+        ScoreAccumulators accumulators = new ScoreAccumulators();
+        for (int id = 0; id < 5000; id++) {
+            accumulators.add(id * 3, 1.0);
+            accumulators.add((id / 2) * 3, 1.0);
+        }
+        assertEquals(5000, accumulators.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i * 3, accumulators.getDocumentId(i));
+            assertEquals(i < 2500 ? 3.0 : 1.0, accumulators.getScore(i), DELTA);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testInvalidArguments() {
+        ScoreAccumulators accumulators = new ScoreAccumulators();
+        try {
+            accumulators.add(-1, 1.0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // All ok -- expected result
+        }
+        try {
+            accumulators.getScore(0);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+            // All ok -- expected result
+        }
+    }
+}
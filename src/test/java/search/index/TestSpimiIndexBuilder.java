@@ -0,0 +1,150 @@
+package search.index;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import org.junit.Test;
+import search.SearchEngine;
+import search.models.Result;
+import search.models.Webpage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class TestSpimiIndexBuilder extends BaseIndexTest {
+    public static final double DELTA = 0.000000001;
+
+    private IndexFile build(ISet<Webpage> pages, SpimiIndexBuilder builder) throws IOException {
+        for (Webpage page : pages) {
+            builder.add(page);
+        }
+        return builder.finish(
+                SearchEngine.PAGE_RANK_DECAY, SearchEngine.PAGE_RANK_EPSILON, SearchEngine.PAGE_RANK_ITERATION_LIMIT);
+    }
+
+    private long countFiles(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.count();
+        }
+    }
+
+    private void deleteFolder(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(folder);
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testManyRunsMatchInMemoryIndex() throws IOException {
+        ISet<Webpage> pages = makeRandomPages(new Random(1), 200);
+        IndexFile expected = new SearchEngine(pages).toIndexFile();
+
+        Path folder = Files.createTempDirectory("test-spimi");
+        Path path = folder.resolve("test.index");
+        try {
+            try (SpimiIndexBuilder builder = new SpimiIndexBuilder(folder, 2000)) {
+                IndexFile actual = this.build(pages, builder);
+                assertTrue(builder.getRunCount() > 10);
+                assertSameIndex(expected, actual, DELTA);
+                actual.write(path);
+            }
+            assertSameIndex(expected, IndexFile.read(path), DELTA);
+
+            // Only the index itself is left
+            assertEquals(1L, this.countFiles(folder));
+        } finally {
+            this.deleteFolder(folder);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testOneRunWhenEverythingFits() throws IOException {
+        ISet<Webpage> pages = makeRandomPages(new Random(2), 50);
+        IndexFile expected = new SearchEngine(pages).toIndexFile();
+
+        Path folder = Files.createTempDirectory("test-spimi");
+        try {
+            try (SpimiIndexBuilder builder = new SpimiIndexBuilder(folder, Long.MAX_VALUE)) {
+                IndexFile actual = this.build(pages, builder);
+                assertEquals(1, builder.getRunCount());
+                assertSameIndex(expected, actual, DELTA);
+            }
+            assertEquals(0L, this.countFiles(folder));
+        } finally {
+            this.deleteFolder(folder);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testDuplicatePagesIgnored() throws IOException {
+        ISet<Webpage> pages = makeRandomPages(new Random(3), 20);
+        IndexFile expected = new SearchEngine(pages).toIndexFile();
+
+        Path folder = Files.createTempDirectory("test-spimi");
+        try (SpimiIndexBuilder builder = new SpimiIndexBuilder(folder, 500)) {
+            for (Webpage page : pages) {
+                builder.add(page);
+            }
+            assertSameIndex(expected, this.build(pages, builder), DELTA);
+        } finally {
+            this.deleteFolder(folder);
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testServesQueriesBeforeWriting() throws IOException {
+        Random rand = new Random(6);
+        ISet<Webpage> pages = makeRandomPages(rand, 100);
+        SearchEngine expected = new SearchEngine(pages);
+
+        Path folder = Files.createTempDirectory("test-spimi");
+        try (SpimiIndexBuilder builder = new SpimiIndexBuilder(folder, 1000)) {
+            IndexFile index = this.build(pages, builder);
+            for (IndexMode mode : IndexMode.values()) {
+                SearchEngine actual = new SearchEngine(
+                        index, new SearchEngine.Options().queryThreads(2).indexMode(mode));
+                for (int trial = 0; trial < 20; trial++) {
+                    IList<String> query = new DoubleLinkedList<>();
+                    query.add("word" + rand.nextInt(40));
+                    query.add("word" + rand.nextInt(40));
+                    IList<Result> expectedResults = expected.getTopKResults(query, 10);
+                    IList<Result> actualResults = actual.getTopKResults(query, 10);
+                    assertEquals(expectedResults.size(), actualResults.size());
+                    for (int i = 0; i < expectedResults.size(); i++) {
+                        assertEquals(expectedResults.get(i).getUri(), actualResults.get(i).getUri());
+                        assertEquals(expectedResults.get(i).getScore(), actualResults.get(i).getScore(), DELTA);
+                    }
+                }
+                actual.close();
+            }
+        } finally {
+            this.deleteFolder(folder);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testCannotAddAfterFinish() throws IOException {
+        Path folder = Files.createTempDirectory("test-spimi");
+        try (SpimiIndexBuilder builder = new SpimiIndexBuilder(folder, 500)) {
+            IndexFile index = this.build(makeRandomPages(new Random(4), 5), builder);
+            assertEquals(5, index.getRegistry().size());
+            try {
+                builder.add(makeRandomPages(new Random(5), 1).iterator().next());
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException ex) {
+                // All ok -- expected result
+            }
+        } finally {
+            this.deleteFolder(folder);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package search.index;
+
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class TestTermDictionary extends BaseTest {
+    private String[] makeRandomTerms(Random rand, int count) {
+        ISet<String> terms = new ChainedHashSet<>();
+        while (terms.size() < count) {
+            // A small alphabet, so that many terms share prefixes
+            StringBuilder term = new StringBuilder();
+            int length = 1 + rand.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                term.append((char) ('a' + rand.nextInt(4)));
+            }
+            terms.add(term.toString());
+        }
+        String[] output = new String[count];
+        int i = 0;
+        for (String term : terms) {
+            output[i] = term;
+            i++;
+        }
+        Arrays.sort(output);
+        return output;
+    }
+
+    private TermDictionary makeDictionary(String[] terms) {
+        int[] frequencies = new int[terms.length];
+        long[] offsets = new long[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            frequencies[i] = i + 1;
+            offsets[i] = 1000L * i;
+        }
+        return new TermDictionary(terms, frequencies, offsets);
+    }
+
+    @Test(timeout=SECOND)
+    public void testFindsEveryTerm() {
+        String[] terms = this.makeRandomTerms(new Random(21), 500);
+        TermDictionary dictionary = this.makeDictionary(terms);
+
+        assertEquals(terms.length, dictionary.size());
+        for (int i = 0; i < terms.length; i++) {
+            assertEquals(i, dictionary.find(terms[i]));
+            assertEquals(i, dictionary.find(new StringBuilder(terms[i])));
+            assertEquals(terms[i], dictionary.getTerm(i));
+            assertEquals(i + 1, dictionary.getDocumentFrequency(i));
+            assertEquals(1000L * i, dictionary.getPostingsOffset(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testMissingTerms() {
+        Random rand = new Random(22);
+        String[] terms = this.makeRandomTerms(rand, 300);
+        TermDictionary dictionary = this.makeDictionary(terms);
+        ISet<String> present = new ChainedHashSet<>();
+        for (String term : terms) {
+            present.add(term);
+        }
+
+        for (String term : this.makeRandomTerms(rand, 600)) {
+            assertEquals(present.contains(term), dictionary.find(term) != -1);
+        }
+        assertEquals(-1, dictionary.find(""));
+        assertEquals(-1, dictionary.find("zzz"));
+        assertEquals(-1, dictionary.find(terms[0] + "z"));
+        assertEquals(-1, dictionary.find(terms[terms.length - 1] + "a"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testLongAndEmptyTerms() {
+        StringBuilder longTerm = new StringBuilder();
+        for (int i = 0; i < 40000; i++) {
+            longTerm.append('q');
+        }
+        String[] terms = {"", "a", longTerm.toString(), longTerm + "r", "r"};
+        TermDictionary dictionary = this.makeDictionary(terms);
+        for (int i = 0; i < terms.length; i++) {
+            assertEquals(i, dictionary.find(terms[i]));
+            assertEquals(terms[i], dictionary.getTerm(i));
+        }
+        assertEquals(-1, dictionary.find(longTerm + "a"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testEmptyDictionary() {
+        TermDictionary dictionary = this.makeDictionary(new String[0]);
+        assertEquals(0, dictionary.size());
+        assertEquals(-1, dictionary.find("a"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsUnsortedTerms() {
+        try {
+            this.makeDictionary(new String[] {"b", "a"});
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // All ok -- expected result
+        }
+
+        // Out of order across a block boundary
+        String[] terms = new String[TermDictionary.BLOCK_SIZE + 1];
+        for (int i = 0; i < TermDictionary.BLOCK_SIZE; i++) {
+            terms[i] = "b" + (char) ('a' + i);
+        }
+        terms[TermDictionary.BLOCK_SIZE] = "a";
+        try {
+            this.makeDictionary(terms);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // All ok -- expected result
+        }
+    }
+}
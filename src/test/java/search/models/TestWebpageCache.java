@@ -0,0 +1,136 @@
+package search.models;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Test;
+import search.misc.exceptions.DataExtractionException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TestWebpageCache extends BaseTest {
+    private Webpage makePage() {
+        IList<String> words = new DoubleLinkedList<>();
+        for (String word : "the cat sat on the mat the caf\u00e9 end".split(" ")) {
+            words.add(word);
+        }
+        IList<URI> links = new DoubleLinkedList<>();
+        links.add(URI.create("http://example.com/a.html"));
+        links.add(URI.create("http://example.com/b.html"));
+        return new Webpage(URI.create("http://example.com/page.html"), links, words,
+                "A title", "A blurb \u2014 with punctuation");
+    }
+
+    private void assertSamePage(Webpage expected, Webpage actual) {
+        assertEquals(expected.getUri(), actual.getUri());
+        assertEquals(expected.getSummary(), actual.getSummary());
+        assertEquals(expected.getSummary().getTitle(), actual.getSummary().getTitle());
+        assertEquals(expected.getSummary().getBlurb(), actual.getSummary().getBlurb());
+        assertEquals(expected.getWords().size(), actual.getWords().size());
+        for (int i = 0; i < expected.getWords().size(); i++) {
+            assertEquals(expected.getWords().get(i), actual.getWords().get(i));
+        }
+        assertEquals(expected.getLinks().size(), actual.getLinks().size());
+        for (int i = 0; i < expected.getLinks().size(); i++) {
+            assertEquals(expected.getLinks().get(i), actual.getLinks().get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRoundTrip() {
+        Webpage page = this.makePage();
+        byte[] contents = WebpageCache.encode(page);
+        assertTrue(WebpageCache.isBinary(contents));
+        this.assertSamePage(page, WebpageCache.decode(contents));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRepeatedWordsShareStrings() {
+        Webpage page = WebpageCache.decode(WebpageCache.encode(this.makePage()));
+        IList<String> words = page.getWords();
+        assertTrue(words.get(0) == words.get(4));
+        assertTrue(words.get(0) == words.get(6));
+    }
+
+    @Test(timeout=SECOND)
+    public void testEmptyPage() {
+        Webpage page = new Webpage(URI.create("http://example.com/"), new DoubleLinkedList<>(),
+                new DoubleLinkedList<>(), "", "");
+        this.assertSamePage(page, WebpageCache.decode(WebpageCache.encode(page)));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCorruptionIsDetected() {
+        byte[] contents = WebpageCache.encode(this.makePage());
+        for (int i = WebpageCache.MAGIC.length; i < contents.length; i++) {
+            byte[] corrupted = contents.clone();
+            corrupted[i] ^= 0x10;
+            try {
+                WebpageCache.decode(corrupted);
+                fail("Expected DataExtractionException after changing byte " + i);
+            } catch (DataExtractionException ex) {
+                // All ok -- expected result
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testTruncationIsDetected() {
+        byte[] contents = WebpageCache.encode(this.makePage());
+        for (int length = 0; length < contents.length; length++) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(contents, 0, truncated, 0, length);
+            try {
+                WebpageCache.decode(truncated);
+                fail("Expected DataExtractionException for " + length + " bytes");
+            } catch (DataExtractionException ex) {
+                // All ok -- expected result
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testDecodeOldFormat() {
+        String text = "http://example.com/page.html\n"
+                + "A title\n"
+                + "A blurb\n"
+                + "the cat sat \n"
+                + "http://example.com/a.html\n";
+        byte[] contents = text.getBytes(StandardCharsets.UTF_8);
+        assertFalse(WebpageCache.isBinary(contents));
+
+        Webpage page = WebpageCache.decodeText(contents);
+        assertEquals(URI.create("http://example.com/page.html"), page.getUri());
+        assertEquals("A title", page.getSummary().getTitle());
+        assertEquals(3, page.getWords().size());
+        assertEquals("sat", page.getWords().get(2));
+        assertEquals(1, page.getLinks().size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testLoadUpgradesOldFormat() throws IOException {
+        Path directory = Files.createTempDirectory("test-cache");
+        Path original = directory.resolve("page.html");
+        Path cache = directory.resolve("page.cache");
+        try {
+            String text = "http://example.com/page.html\nA title\nA blurb\nthe cat sat \n";
+            Files.write(cache, text.getBytes(StandardCharsets.UTF_8));
+
+            Webpage page = Webpage.load(original.toUri());
+            assertEquals(3, page.getWords().size());
+            assertTrue(WebpageCache.isBinary(Files.readAllBytes(cache)));
+            this.assertSamePage(page, Webpage.load(original.toUri()));
+        } finally {
+            Files.deleteIfExists(cache);
+            Files.deleteIfExists(directory);
+        }
+    }
+}